@@ -52,4 +52,9 @@ public class MediaButtonCallback extends MediaSessionCompat.Callback {
 	public void onPlayFromUri(Uri uri, Bundle extras) {
 		service.openFile(uri);
 	}
+
+	@Override
+	public void onPlayFromMediaId(String mediaId, Bundle extras) {
+		service.playFromMediaId(mediaId);
+	}
 }
\ No newline at end of file
@@ -25,16 +25,21 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.media.AudioManager;
 import android.media.AudioManager.OnAudioFocusChangeListener;
 import android.media.audiofx.AudioEffect;
 import android.net.Uri;
+import android.os.Binder;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Parcel;
+import android.os.Process;
+import android.os.RemoteException;
 import android.os.SystemClock;
 import android.provider.MediaStore.Audio.AudioColumns;
 import android.provider.MediaStore.Audio.Media;
@@ -44,29 +49,39 @@ import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
 import android.util.Log;
 
+import androidx.annotation.DimenRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.media.MediaBrowserServiceCompat;
 
+import com.andrew.apollo.cache.ArtworkHolder;
 import com.andrew.apollo.cache.ImageCache;
 import com.andrew.apollo.cache.ImageFetcher;
+import com.andrew.apollo.player.BrowseTree;
+import com.andrew.apollo.player.EventDispatcher;
 import com.andrew.apollo.player.MultiPlayer;
 import com.andrew.apollo.player.MusicPlayerHandler;
+import com.andrew.apollo.player.PartyShuffle;
+import com.andrew.apollo.player.PlayQueue;
+import com.andrew.apollo.player.PlaybackState;
+import com.andrew.apollo.player.ShuffleOrder;
 import com.andrew.apollo.provider.FavoritesStore;
-import com.andrew.apollo.provider.PopularStore;
-import com.andrew.apollo.provider.RecentStore;
+import com.andrew.apollo.provider.PlayStatsWriter;
+import com.andrew.apollo.provider.QueueStore;
+import com.andrew.apollo.provider.ResumeStore;
 import com.andrew.apollo.receiver.UnmountBroadcastReceiver;
 import com.andrew.apollo.receiver.WidgetBroadcastReceiver;
 import com.andrew.apollo.utils.CursorFactory;
-import com.andrew.apollo.utils.MusicUtils;
+import com.andrew.apollo.utils.LongIntMap;
 import com.andrew.apollo.utils.PreferenceUtils;
-import com.andrew.apollo.utils.Shuffler;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * A background {@link Service} used to keep music playing between activities
@@ -158,6 +173,10 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 *
 	 */
 	public static final String NOW_IN_FOREGROUND = "nowinforeground";
+	/**
+	 * extra containing a pending intent of this app to identify the sender of a command
+	 */
+	private static final String EXTRA_SENDER = APOLLO_PACKAGE_NAME + ".sender";
 	/**
 	 *
 	 */
@@ -268,31 +287,48 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 * command
 	 */
 	private static final long REWIND_INSTEAD_PREVIOUS_THRESHOLD = 3000;
+	/**
+	 * max number of tracks to try if the current track can't be opened
+	 */
+	private static final int MAX_OPEN_ATTEMPTS = 10;
+	/**
+	 * delay to collect queue changes before saving the queue
+	 */
+	private static final long SAVE_DELAY = 500;
 	/**
 	 * The max size allowed for the track history
 	 */
 	public static final int MAX_HISTORY_SIZE = 100;
 	/**
-	 * Used to shuffle the tracks
+	 * packages of the system allowed to browse the library
 	 */
-	private static Shuffler mShuffler = new Shuffler();
+	private static final String[] BROWSER_PACKAGES = {
+			"com.android.systemui",
+			"com.google.android.projection.gearhead",
+			"com.google.android.wearable.app",
+			"com.google.android.googlequicksearchbox"
+	};
+	/**
+	 * Used to select a random start position
+	 */
+	private static Random mRandom = new Random();
 	/**
 	 * Keeps a mapping of the track history
 	 */
-	private static List<Integer> mHistory = new LinkedList<>();
+	private static PlayQueue mHistory = new PlayQueue();
 	/**
 	 * current playlist containing track ID's
 	 */
-	private List<Long> mPlayList = new LinkedList<>();
+	private PlayQueue mPlayList = new PlayQueue();
 	/**
-	 * the values of this list points on indexes of {@link #mPlayList} which are randomly shuffled.
-	 * after finishing this list, the values will be shuffled again.
+	 * shuffle order of the indexes of {@link #mPlayList}.
+	 * after finishing this order, a new order will be created.
 	 */
-	private ArrayList<Integer> mNormalShuffleList = new ArrayList<>();
+	private ShuffleOrder mShuffleOrder = new ShuffleOrder();
 	/**
-	 * current shuffle list contaning track ID's
+	 * selects the tracks of the party shuffle
 	 */
-	private List<Long> mAutoShuffleList = new LinkedList<>();
+	private PartyShuffle mPartyShuffle = new PartyShuffle(MAX_HISTORY_SIZE);
 	/**
 	 * Service stub
 	 */
@@ -309,6 +345,10 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 * Broadcast receiver for widget actions
 	 */
 	private WidgetBroadcastReceiver mIntentReceiver;
+	/**
+	 * merges change events into single broadcasts and widget updates
+	 */
+	private EventDispatcher mEventDispatcher;
 	/**
 	 * broadcast listener for unmounting external storage
 	 */
@@ -330,25 +370,57 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 */
 	private MusicPlayerHandler mPlayerHandler;
 	/**
-	 * Image cache
+	 * artwork of the current album for the notification and the widgets
+	 */
+	private ArtworkHolder mArtwork;
+	/**
+	 * library tree of the media browser clients
 	 */
-	private ImageFetcher mImageFetcher;
+	private BrowseTree mBrowseTree;
 	/**
 	 * Used to build the notification
 	 */
 	private NotificationHelper mNotificationHelper;
 	/**
-	 * Recently listened database
+	 * writer for play counts and recently played albums
 	 */
-	private RecentStore mRecentsCache;
+	private PlayStatsWriter mPlayStats;
 	/**
 	 * Favorites database
 	 */
 	private FavoritesStore mFavoritesCache;
 	/**
-	 * most played tracks database
+	 * storage of the queue and track history
+	 */
+	private QueueStore mQueueStore;
+	/**
+	 * snapshot of the last playback state
+	 */
+	private ResumeStore mResumeStore;
+	/**
+	 * released after the queue was restored by {@link #mDeferredInit}
+	 */
+	private final CountDownLatch mInitLatch = new CountDownLatch(1);
+	/**
+	 * true after the queue was restored
+	 */
+	private volatile boolean mInitialized = false;
+	/**
+	 * true if a save of the queue is scheduled, guarded by the service lock
+	 */
+	private boolean mSavePending = false;
+	/**
+	 * true if the scheduled save should also save the queue and history, guarded by the service lock
 	 */
-	private PopularStore mPopularCache;
+	private boolean mSaveFull = false;
+	/**
+	 * card ID of the resume snapshot, verified with the MediaStore after startup
+	 */
+	private int mResumeCardId = -1;
+	/**
+	 * time the service was created, see {@link SystemClock#uptimeMillis()}
+	 */
+	private long mCreateTime;
 	/**
 	 * Alarm intent for removing the notification when nothing is playing
 	 * for some time
@@ -393,10 +465,91 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	private int mShuffleMode = SHUFFLE_NONE;
 	private int mRepeatMode = REPEAT_ALL;
 
-	private int mShuffleIndex = -1;
 	private int mPlayPos = -1;
 	private int mNextPlayPos = -1;
+	/**
+	 * queue positions of the tracks prepared ahead, starting with the next track
+	 */
+	private int[] mNextPlayPositions = {};
 	private int mMediaMountedCount = 0;
+	/**
+	 * version of the queue, increased on every queue change
+	 */
+	private int mQueueVersion = 0;
+	/**
+	 * current playback state, replaced on every state change and read without locking
+	 */
+	private volatile PlaybackState mState = PlaybackState.EMPTY;
+	/**
+	 * copy of the queue, replaced on every queue change
+	 */
+	private volatile long[] mQueueSnapshot = {};
+
+	/**
+	 * restores the queue and sets up the image cache. Runs on the player thread after {@link #onCreate()}
+	 */
+	private final Runnable mDeferredInit = new Runnable() {
+		@Override
+		public void run() {
+			long start = SystemClock.uptimeMillis();
+			// the queue is restored under the service lock, commands wait until it is finished
+			synchronized (MusicPlaybackService.this) {
+				// the card ID of the snapshot is verified later, the MediaStore is only queried if there is no snapshot
+				if (mResumeCardId != -1) {
+					mCardId = mResumeCardId;
+				} else {
+					getCardId();
+				}
+				reloadQueue();
+				mInitialized = true;
+			}
+			mInitLatch.countDown();
+			logStartup("queue", start);
+			start = SystemClock.uptimeMillis();
+			// the artwork is needed by the first widget and notification update, but not by the first command
+			ImageFetcher.getInstance(MusicPlaybackService.this).setImageCache(ImageCache.getInstance(MusicPlaybackService.this));
+			logStartup("image cache", start);
+			notifyChange(QUEUE_CHANGED);
+			notifyChange(META_CHANGED);
+			logStartup("total", mCreateTime);
+		}
+	};
+
+	/**
+	 * saves the queue on the player thread, see {@link #saveQueue(boolean)}
+	 */
+	private final Runnable mSaveTask = new Runnable() {
+		@Override
+		public void run() {
+			writeQueue(false);
+		}
+	};
+
+	/**
+	 * verifies the card of the restored queue. Runs on the player thread after {@link #mDeferredInit}
+	 */
+	private final Runnable mDeferredValidation = new Runnable() {
+		@Override
+		public void run() {
+			if (mResumeCardId != -1) {
+				long start = SystemClock.uptimeMillis();
+				getCardId();
+				if (mCardId != mResumeCardId) {
+					// the queue was saved for another storage
+					synchronized (MusicPlaybackService.this) {
+						stop(true);
+						mPlayList.clear();
+						mHistory.clear();
+						mPlayPos = -1;
+						reloadQueue();
+					}
+					notifyChange(QUEUE_CHANGED);
+					notifyChange(META_CHANGED);
+				}
+				logStartup("validation", start);
+			}
+		}
+	};
 
 
 	/**
@@ -404,6 +557,10 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 */
 	@Override
 	public IBinder onBind(Intent intent) {
+		// media browser clients like Android Auto bind with the browser service action
+		if (SERVICE_INTERFACE.equals(intent.getAction())) {
+			return super.onBind(intent);
+		}
 		cancelShutdown();
 		mServiceInUse = true;
 		return mBinder;
@@ -451,22 +608,26 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	@Override
 	public void onCreate() {
 		super.onCreate();
+		mCreateTime = SystemClock.uptimeMillis();
 
 		// Initialize the favorites and recents databases
-		mRecentsCache = RecentStore.getInstance(this);
 		mFavoritesCache = FavoritesStore.getInstance(this);
-		mPopularCache = PopularStore.getInstance(this);
+		mPlayStats = PlayStatsWriter.getInstance(this);
+		mQueueStore = QueueStore.getInstance(this);
+		mResumeStore = ResumeStore.getInstance(this);
 
 		// Initialize the notification helper
 		mNotificationHelper = new NotificationHelper(this);
 
-		// Initialize the image fetcher
-		mImageFetcher = ImageFetcher.getInstance(this);
-		// Initialize the image cache
-		mImageFetcher.setImageCache(ImageCache.getInstance(this));
+		// Initialize the image fetcher, the image cache is set up in the background
+		ImageFetcher imageFetcher = ImageFetcher.getInstance(this);
+		// Initialize the artwork of the notification and the widgets
+		mArtwork = new ArtworkHolder(this, imageFetcher, R.dimen.notification_big_icon_width, R.dimen.notification_expanded_height,
+				R.dimen.app_widget_small_artwork_size, R.dimen.app_widget_large_alternate_artwork_size);
 
 		// initialize broadcast receiver
 		mIntentReceiver = new WidgetBroadcastReceiver(this);
+		mEventDispatcher = new EventDispatcher(this, mIntentReceiver);
 		mUnmountReceiver = new UnmountBroadcastReceiver(this);
 
 		// Start up the thread running the service. Note that we create a
@@ -478,7 +639,8 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 
 		PlaybackStateCompat state = new PlaybackStateCompat.Builder().setActions(PlaybackStateCompat.ACTION_PLAY
 				| PlaybackStateCompat.ACTION_PLAY_PAUSE | PlaybackStateCompat.ACTION_PAUSE
-				| PlaybackStateCompat.ACTION_SKIP_TO_NEXT | PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS).build();
+				| PlaybackStateCompat.ACTION_SKIP_TO_NEXT | PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS
+				| PlaybackStateCompat.ACTION_PLAY_FROM_MEDIA_ID).build();
 
 		// Initialize the handler
 		mPlayerHandler = new MusicPlayerHandler(this, thread.getLooper());
@@ -486,12 +648,13 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		mSession.setCallback(new MediaButtonCallback(this), mPlayerHandler);
 		mSession.setPlaybackState(state);
 		mSession.setActive(true);
+		setSessionToken(mSession.getSessionToken());
+		mBrowseTree = new BrowseTree(getApplicationContext());
 
 		mAudio = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
 
 		// Initialize the preferences
 		settings = PreferenceUtils.getInstance(this);
-		getCardId();
 
 		// register external storage listener
 		IntentFilter filterStorage = new IntentFilter();
@@ -515,10 +678,12 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		// Initialize the delayed shutdown intent
 		Intent shutdownIntent = new Intent(this, MusicPlaybackService.class);
 		shutdownIntent.setAction(SHUTDOWN);
+		setSender(this, shutdownIntent);
 
 		// Initialize the media player
 		mPlayer = new MultiPlayer(this);
 		mPlayer.setHandler(mPlayerHandler);
+		mPlayer.setLookAhead(settings.getPreloadCount());
 
 		// Create notification channel on Android 8+
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -533,10 +698,54 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		// Listen for the idle state
 		scheduleDelayedShutdown();
 
-		// Bring the queue back
-		reloadQueue();
-		notifyChange(QUEUE_CHANGED);
-		notifyChange(META_CHANGED);
+		// show the last track until the queue is restored
+		ResumeStore.Resume resume = mResumeStore.load();
+		if (resume != null) {
+			mState = resume.getState();
+			mResumeCardId = resume.getCardId();
+		}
+		logStartup("critical", mCreateTime);
+
+		// Bring the queue back in the background, commands wait until the queue is restored
+		mPlayerHandler.post(mDeferredInit);
+		mPlayerHandler.post(mDeferredValidation);
+	}
+
+	/**
+	 * log the duration of a startup phase
+	 *
+	 * @param phase name of the phase
+	 * @param start start time of the phase, see {@link SystemClock#uptimeMillis()}
+	 */
+	private void logStartup(String phase, long start) {
+		Log.i(TAG, "startup " + phase + ": " + (SystemClock.uptimeMillis() - start) + "ms");
+	}
+
+	/**
+	 * wait until the queue is restored. Used by calls which may run before the startup is finished and need the queue or the player.
+	 * The calls must not change the queue while it is restored, so there is no timeout
+	 */
+	private void awaitInit() {
+		boolean interrupted = false;
+		while (!mInitialized) {
+			try {
+				mInitLatch.await();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+		// statistics of the player, shown by "adb shell dumpsys activity service MusicPlaybackService"
+		mPlayer.dump(writer);
 	}
 
 	/**
@@ -555,17 +764,31 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		mPlayer.release();
 		// release player callbacks
 		mSession.release();
+		// write a pending save of the queue before removing the callbacks
+		mPlayerHandler.removeCallbacks(mSaveTask);
+		boolean savePending;
+		synchronized (this) {
+			savePending = mSavePending;
+		}
+		if (savePending) {
+			writeQueue(false);
+		}
 		// Remove any callbacks from the handler
 		mPlayerHandler.removeCallbacksAndMessages(null);
 		// Close the cursor
 		closeCursor();
 		// Unregister the mount listener
 		unregisterReceiver(mIntentReceiver);
+		mEventDispatcher.release();
 		if (mUnmountReceiver != null) {
 			unregisterReceiver(mUnmountReceiver);
 			mUnmountReceiver = null;
 		}
 		mNotificationHelper.cancelNotification();
+		// write pending play statistics
+		mPlayStats.flush();
+		mArtwork.clear();
+		mBrowseTree.clear();
 		super.onDestroy();
 	}
 
@@ -575,7 +798,13 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	@Nullable
 	@Override
 	public BrowserRoot onGetRoot(@NonNull String clientPackageName, int clientUid, @Nullable Bundle rootHints) {
-		return null;
+		if (!isBrowserAllowed(clientPackageName, clientUid)) {
+			Log.w(TAG, "media browser not allowed: " + clientPackageName);
+			return null;
+		}
+		// start loading the categories, clients usually browse them right after connecting
+		mBrowseTree.preload();
+		return new BrowserRoot(BrowseTree.ROOT, null);
 	}
 
 	/**
@@ -583,6 +812,15 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 */
 	@Override
 	public void onLoadChildren(@NonNull String parentId, @NonNull Result<List<MediaBrowserCompat.MediaItem>> result) {
+		onLoadChildren(parentId, result, Bundle.EMPTY);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onLoadChildren(@NonNull String parentId, @NonNull Result<List<MediaBrowserCompat.MediaItem>> result, @NonNull Bundle options) {
+		mBrowseTree.loadChildren(parentId, options, result);
 	}
 
 	/**
@@ -599,7 +837,8 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	@Override
 	public int onStartCommand(Intent intent, int flags, int startId) {
 		mServiceStartId = startId;
-		if (intent != null) {
+		// the service is exported for media browser clients, commands of other apps are ignored
+		if (intent != null && isOwnIntent(intent)) {
 			String action = intent.getAction();
 			if (intent.hasExtra(NOW_IN_FOREGROUND)) {
 				boolean isForeground = intent.getBooleanExtra(NOW_IN_FOREGROUND, false);
@@ -623,10 +862,81 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		return START_STICKY;
 	}
 
+	/**
+	 * add the identity of this app to a command intent, the service only handles commands sent by this app
+	 *
+	 * @param context context of this app
+	 * @param intent  command intent for the service
+	 * @return the same intent
+	 */
+	@SuppressLint("InlinedApi")
+	public static Intent setSender(Context context, Intent intent) {
+		// the pending intent is never sent, it only contains the UID of its creator
+		Intent sender = new Intent(EXTRA_SENDER).setPackage(context.getPackageName());
+		return intent.putExtra(EXTRA_SENDER, PendingIntent.getBroadcast(context, 0, sender, PendingIntent.FLAG_IMMUTABLE));
+	}
+
+	/**
+	 * check if an intent was sent by this app, see {@link #setSender}
+	 *
+	 * @param intent intent used to start the service
+	 * @return true if the intent was sent by this app
+	 */
+	private boolean isOwnIntent(Intent intent) {
+		PendingIntent sender;
+		try {
+			sender = intent.getParcelableExtra(EXTRA_SENDER);
+		} catch (RuntimeException e) {
+			// malformed extras of another app
+			return false;
+		}
+		if (sender == null) {
+			return false;
+		}
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			return sender.getCreatorUid() == Process.myUid();
+		}
+		return getPackageName().equals(sender.getTargetPackage());
+	}
+
+	/**
+	 * check if a media browser client may browse the library.
+	 * Allowed are this app, the system, system UI, Android Auto, Wear OS and apps signed with the same key
+	 *
+	 * @param packageName package of the client, already verified to belong to the UID
+	 * @param uid         UID of the client
+	 * @return true if the client is allowed
+	 */
+	private boolean isBrowserAllowed(String packageName, int uid) {
+		if (uid == Process.myUid() || uid == Process.SYSTEM_UID) {
+			return true;
+		}
+		for (String browserPackage : BROWSER_PACKAGES) {
+			if (browserPackage.equals(packageName)) {
+				return true;
+			}
+		}
+		return getPackageManager().checkSignatures(Process.myUid(), uid) == PackageManager.SIGNATURE_MATCH;
+	}
+
 	/**
 	 * used by widgets or other intents to
 	 */
-	public void handleCommandIntent(Intent intent) {
+	public void handleCommandIntent(final Intent intent) {
+		if (!isOwnIntent(intent)) {
+			// commands are also received as broadcasts, which any app can send
+			return;
+		}
+		if (!mInitialized) {
+			// handle the command on the player thread after the queue is restored
+			mPlayerHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					handleCommandIntent(intent);
+				}
+			});
+			return;
+		}
 		String action = intent.getAction();
 		String command = SERVICECMD.equals(action) ? intent.getStringExtra(CMDNAME) : null;
 
@@ -675,11 +985,28 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	}
 
 	/**
+	 * @param sizeRes dimension of the image view showing the album art
 	 * @return The album art for the current album.
 	 */
-	public Bitmap getAlbumArt() {
+	@Nullable
+	public Bitmap getAlbumArt(@DimenRes int sizeRes) {
 		// Return the cached artwork
-		return mImageFetcher.getArtwork(getAlbumName(), getAlbumId(), getArtistName());
+		return mArtwork.getArtwork(getAlbumName(), getAlbumId(), getArtistName(), sizeRes);
+	}
+
+	/**
+	 * play a track selected by a media browser client within the list it was selected from
+	 *
+	 * @param mediaId media ID of the track
+	 */
+	public void playFromMediaId(String mediaId) {
+		mBrowseTree.loadQueue(mediaId, new BrowseTree.QueueCallback() {
+			@Override
+			public void onQueueLoaded(long[] list, int position) {
+				open(list, position);
+				play();
+			}
+		});
 	}
 
 	/**
@@ -693,8 +1020,10 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 *
 	 */
 	public void onEject() {
-		saveQueue(true);
+		// save now, the queue can't be saved after the storage was removed
+		writeQueue(true);
 		mQueueIsSaveable = false;
+		mQueueStore.setWritable(false);
 		stop(true);
 		notifyChange(QUEUE_CHANGED);
 		notifyChange(META_CHANGED);
@@ -706,6 +1035,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	public void onUnmount() {
 		mMediaMountedCount++;
 		getCardId();
+		mQueueStore.setWritable(true);
 		reloadQueue();
 		mQueueIsSaveable = true;
 		notifyChange(QUEUE_CHANGED);
@@ -735,14 +1065,8 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 *
 	 * @return The current song album Name
 	 */
-	@SuppressLint("InlinedApi")
 	public String getAlbumName() {
-		synchronized (this) {
-			if (mCursor != null && mCursor.moveToFirst()) {
-				return mCursor.getString(mCursor.getColumnIndexOrThrow(AudioColumns.ALBUM));
-			}
-			return "";
-		}
+		return mState.getAlbumName();
 	}
 
 	/**
@@ -751,12 +1075,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 * @return The current song name
 	 */
 	public String getTrackName() {
-		synchronized (this) {
-			if (mCursor != null && mCursor.moveToFirst()) {
-				return mCursor.getString(mCursor.getColumnIndexOrThrow(AudioColumns.TITLE));
-			}
-		}
-		return "";
+		return mState.getTrackName();
 	}
 
 	/**
@@ -764,14 +1083,8 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 *
 	 * @return The current song artist name
 	 */
-	@SuppressLint("InlinedApi")
 	public String getArtistName() {
-		synchronized (this) {
-			if (mCursor != null && mCursor.moveToFirst()) {
-				return mCursor.getString(mCursor.getColumnIndexOrThrow(AudioColumns.ARTIST));
-			}
-		}
-		return "";
+		return mState.getArtistName();
 	}
 
 	/**
@@ -780,12 +1093,16 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 * @return The current song album ID
 	 */
 	public long getAlbumId() {
-		synchronized (this) {
-			if (mCursor != null && mCursor.moveToFirst()) {
-				return mCursor.getLong(mCursor.getColumnIndexOrThrow(Media.ALBUM_ID));
-			}
-		}
-		return -1;
+		return mState.getAlbumId();
+	}
+
+	/**
+	 * Returns the current playback state. The state is immutable and replaced on every change
+	 *
+	 * @return current playback state
+	 */
+	public PlaybackState getPlaybackState() {
+		return mState;
 	}
 
 	/**
@@ -793,6 +1110,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 */
 	public void stop() {
 		stop(true);
+		publishState(false);
 	}
 
 	/**
@@ -933,9 +1251,28 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 
 	/**
 	 * notify if track chages
+	 *
+	 * @param skipped number of next tracks skipped because they couldn't be played
 	 */
-	public void onWentToNext() {
-		mPlayPos = mNextPlayPos;
+	public void onWentToNext(int skipped) {
+		synchronized (this) {
+			int[] positions = skipped < mNextPlayPositions.length ? Arrays.copyOf(mNextPlayPositions, skipped + 1) : new int[]{mNextPlayPos};
+			if (mShuffleMode == SHUFFLE_NORMAL && mRepeatMode != REPEAT_CURRENT) {
+				// move the shuffle order and the history behind the played and the skipped tracks like gotoNext
+				int last = mPlayPos;
+				for (int pos : positions) {
+					if (last >= 0) {
+						mHistory.add(last);
+					}
+					mShuffleOrder.next();
+					last = pos;
+				}
+				while (mHistory.size() > MAX_HISTORY_SIZE) {
+					mHistory.remove(0);
+				}
+			}
+			mPlayPos = positions[positions.length - 1];
+		}
 		if (mCursor != null) {
 			mCursor.close();
 		}
@@ -1063,7 +1400,8 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				mPlayPos -= last - first + 1;
 			}
 			// remove a range of tracks from playlist
-			mPlayList.subList(first, last + 1).clear();
+			mPlayList.removeRange(first, last);
+			mQueueStore.remove(first, last);
 			if (gotonext) {
 				if (mPlayList.isEmpty()) {
 					stop(true);
@@ -1101,9 +1439,8 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		if (position > mPlayList.size()) {
 			position = mPlayList.size();
 		}
-		for (long l : list) {
-			mPlayList.add(position++, l);
-		}
+		mPlayList.addAll(position, list);
+		mQueueStore.add(position, list);
 		if (mPlayList.isEmpty()) {
 			closeCursor();
 			notifyChange(META_CHANGED);
@@ -1149,7 +1486,10 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 *
 	 */
 	private void updateAlbumCursor() {
-		long albumId = getAlbumId();
+		long albumId = -1;
+		if (mCursor != null && mCursor.moveToFirst()) {
+			albumId = mCursor.getLong(mCursor.getColumnIndexOrThrow(Media.ALBUM_ID));
+		}
 		if (albumId >= 0) {
 			mAlbumCursor = CursorFactory.makeAlbumCursor(this, albumId);
 		} else {
@@ -1186,7 +1526,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 			if (mCursor != null && mCursor.moveToFirst()) {
 				long id = mCursor.getLong(mCursor.getColumnIndexOrThrow(Media._ID));
 				String path = Media.EXTERNAL_CONTENT_URI + "/" + id;
-				fileOpenFailed = !openFile(path);
+				fileOpenFailed = !mPlayer.isPlayable(path) || !openFile(path);
 			} else {
 				fileOpenFailed = true;
 			}
@@ -1195,20 +1535,23 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				// cursor now, because
 				// we're either going to create a new one next, or stop trying
 				if (mPlayList.size() > 1) {
-					for (int i = 0; i < 10; i++) { // retrying 10 times until failure
-						int pos = getNextPosition(false);
-						if (pos < 0) {
-							scheduleDelayedShutdown();
-							if (mIsSupposedToBePlaying) {
-								mIsSupposedToBePlaying = false;
-								notifyChange(PLAYSTATE_CHANGED);
-							}
-							return;
+					// try the next tracks, tracks already found unplayable by the player are skipped without opening
+					int attempts = 0;
+					for (int i = 0; i < mPlayList.size() && attempts < MAX_OPEN_ATTEMPTS; i++) {
+						int pos = getSkipPosition();
+						if (pos < 0 || pos == mPlayPos) {
+							break;
 						}
 						mPlayPos = pos;
 						stop(false);
-						mPlayPos = pos;
 						updateCursor(mPlayList.get(mPlayPos));
+						String path = Media.EXTERNAL_CONTENT_URI + "/" + mPlayList.get(mPlayPos);
+						if (mCursor != null && mCursor.moveToFirst() && mPlayer.isPlayable(path)) {
+							attempts++;
+							if (openFile(path)) {
+								return;
+							}
+						}
 					}
 				}
 				Log.w(TAG, "Failed to open file for playback");
@@ -1241,19 +1584,16 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				if (mHistory.size() > MAX_HISTORY_SIZE) {
 					mHistory.remove(0);
 				}
-				// reset shuffle list after reaching the end or refreshing
-				if (mShuffleIndex < 0 || mShuffleIndex >= mNormalShuffleList.size()
-						|| mNormalShuffleList.size() != mPlayList.size()) {
-					// create a new shuffle list. if fail, prevent playing
-					if (!makeNormalShuffleList())
-						return -1;
-					mShuffleIndex = 0;
+				// follow the size of the queue, the order is kept as long as the queue fits into it
+				if (mShuffleOrder.size() != mPlayList.size()) {
+					mShuffleOrder.setSize(mPlayList.size());
+				}
+				// create a new shuffle order after reaching the end. if fail, prevent playing
+				if (mShuffleOrder.isFinished() && !makeNormalShuffleList()) {
+					return -1;
 				}
 				// get index of the new track
-				int newPos = mNormalShuffleList.get(mShuffleIndex);
-				if (force)
-					mShuffleIndex++;
-				return newPos;
+				return force ? mShuffleOrder.next() : mShuffleOrder.peek();
 
 			// Party shuffle
 			case SHUFFLE_AUTO:
@@ -1281,13 +1621,64 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	private void setNextTrack() {
 		mNextPlayPos = getNextPosition(false);
 		if (mNextPlayPos >= 0) {
-			long id = mPlayList.get(mNextPlayPos);
-			mPlayer.setNextDataSource(Media.EXTERNAL_CONTENT_URI + "/" + id);
+			mNextPlayPositions = getUpcomingPositions(mNextPlayPos);
+			String[] paths = new String[mNextPlayPositions.length];
+			for (int i = 0; i < paths.length; i++) {
+				paths[i] = Media.EXTERNAL_CONTENT_URI + "/" + mPlayList.get(mNextPlayPositions[i]);
+			}
+			mPlayer.setNextDataSources(paths);
 		} else {
+			mNextPlayPositions = new int[0];
 			mPlayer.resetNextPlayer();
 		}
 	}
 
+	/**
+	 * get the queue positions of the tracks to prepare ahead, without changing the shuffle state
+	 *
+	 * @param next position of the next track
+	 * @return positions of the next track and the following tracks
+	 */
+	private int[] getUpcomingPositions(int next) {
+		int count = mRepeatMode == REPEAT_CURRENT ? 1 : Math.min(mPlayer.getLookAhead(), mPlayList.size());
+		int[] positions = new int[count];
+		positions[0] = next;
+		int n = 1;
+		for (; n < count; n++) {
+			int pos;
+			if (mShuffleMode == SHUFFLE_NORMAL) {
+				pos = mShuffleOrder.peek(n);
+				if (pos < 0) {
+					break;
+				}
+			} else {
+				pos = positions[n - 1] + 1;
+				if (pos >= mPlayList.size()) {
+					if (mShuffleMode == SHUFFLE_AUTO || mRepeatMode == REPEAT_NONE) {
+						break;
+					}
+					pos = 0;
+				}
+			}
+			positions[n] = pos;
+		}
+		return Arrays.copyOf(positions, n);
+	}
+
+	/**
+	 * get the next position to skip a track which can't be played
+	 *
+	 * @return next position or -1 if there is no next track
+	 */
+	private int getSkipPosition() {
+		int pos = getNextPosition(false);
+		// repeat mode and shuffle list may return the current track again
+		for (int i = 0; pos == mPlayPos && i < 2; i++) {
+			pos = getNextPosition(true);
+		}
+		return pos;
+	}
+
 	/**
 	 * Creates a shuffled playlist used for party mode
 	 */
@@ -1295,15 +1686,18 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		try {
 			Cursor cursor = CursorFactory.makeTrackCursor(this);
 			if (cursor != null) {
+				long[] ids = new long[cursor.getCount()];
+				int size = 0;
 				if (cursor.moveToFirst()) {
-					mAutoShuffleList.clear();
 					do {
-						long id = cursor.getLong(0);
-						mAutoShuffleList.add(id);
-					} while (cursor.moveToNext());
-					return true;
+						ids[size++] = cursor.getLong(0);
+					} while (cursor.moveToNext() && size < ids.length);
 				}
 				cursor.close();
+				if (size > 0) {
+					mPartyShuffle.setTracks(size < ids.length ? Arrays.copyOf(ids, size) : ids);
+					return true;
+				}
 			}
 		} catch (RuntimeException e) {
 			e.printStackTrace();
@@ -1318,12 +1712,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 */
 	private boolean makeNormalShuffleList() {
 		if (!mPlayList.isEmpty()) {
-			mNormalShuffleList.clear();
-			mNormalShuffleList.ensureCapacity(mPlayList.size());
-			for (int index = 0; index < mPlayList.size(); index++) {
-				mNormalShuffleList.add(index);
-			}
-			Collections.shuffle(mNormalShuffleList);
+			mShuffleOrder.reset(mPlayList.size());
 			return true;
 		}
 		return false;
@@ -1340,18 +1729,11 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		}
 		int toAdd = 7 - (mPlayList.size() - (mPlayPos < 0 ? -1 : mPlayPos));
 		for (int i = 0; i < toAdd; i++) {
-			int lookback = mHistory.size();
-			int idx;
-			do {
-				idx = mShuffler.nextInt(mAutoShuffleList.size() - 1);
-				lookback /= 2;
-			} while (wasRecentlyUsed(idx, lookback));
-
-			mHistory.add(idx);
-			if (mHistory.size() > MAX_HISTORY_SIZE) {
-				mHistory.remove(0);
-			}
-			mPlayList.add(mAutoShuffleList.get(idx));
+			long trackId = mPartyShuffle.next();
+			if (trackId == -1)
+				break;
+			mPlayList.add(trackId);
+			mQueueStore.add(mPlayList.size() - 1, trackId);
 			notify = true;
 		}
 		if (notify) {
@@ -1359,27 +1741,6 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		}
 	}
 
-	/**
-	 *
-	 */
-	private boolean wasRecentlyUsed(int idx, int lookbacksize) {
-		if (lookbacksize == 0) {
-			return false;
-		}
-		int histsize = mHistory.size();
-		if (histsize < lookbacksize) {
-			lookbacksize = histsize;
-		}
-		int maxidx = histsize - 1;
-		for (int i = 0; i < lookbacksize; i++) {
-			long entry = mHistory.get(maxidx - i);
-			if (entry == idx) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	/**
 	 *
 	 */
@@ -1399,39 +1760,19 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 * Notify the change-receivers that something has changed.
 	 */
 	private void notifyChange(String what) {
-
+		PlaybackState state = publishState(what.equals(QUEUE_CHANGED));
 		if (what.equals(POSITION_CHANGED)) {
 			return;
 		}
-		long audioId = getAudioId();
-		long albumId = getAlbumId();
-		String albumName = getAlbumName();
-		String artistName = getArtistName();
-		String trackName = getTrackName();
-
-		Intent intent = new Intent(what);
-		intent.putExtra("id", audioId);
-		intent.putExtra("artist", artistName);
-		intent.putExtra("album", albumName);
-		intent.putExtra("track", trackName);
-		intent.putExtra("playing", isPlaying());
-		intent.putExtra("isfavorite", isFavorite());
-		sendBroadcast(intent);
-
-		Intent musicIntent = new Intent(intent);
-		musicIntent.setAction(what.replace(APOLLO_PACKAGE_NAME, MUSIC_PACKAGE_NAME));
-		sendBroadcast(musicIntent);
+		// broadcasts and widget updates are merged with the following events
+		mEventDispatcher.dispatch(what);
 
 		if (what.equals(META_CHANGED)) {
-			// Increase the play count for favorite songs.
-			if (mFavoritesCache.exists(audioId)) {
-				mFavoritesCache.addSongId(audioId, trackName, albumName, artistName, getDurationMillis());
-			}
-			mPopularCache.addSongId(audioId, trackName, albumName, artistName, getDurationMillis());
-			// Add the track to the recently played list.
-			String songCount = MusicUtils.getSongCountForAlbum(this, albumId);
-			String release = MusicUtils.getReleaseDateForAlbum(this, albumId);
-			mRecentsCache.addAlbumId(albumId, albumName, artistName, songCount, release);
+			// Increase the play counts and add the album to the recently played list.
+			// The statistics are written in the background
+			mPlayStats.trackPlayed(state.getAudioId(), state.getTrackName(), state.getAlbumName(), state.getArtistName(), getDurationMillis(), state.getAlbumId());
+			// the notification reads the new snapshot, a skip while playing doesn't change the play state
+			mNotificationHelper.updateNotification();
 		} else if (what.equals(QUEUE_CHANGED)) {
 			saveQueue(true);
 			if (isPlaying()) {
@@ -1443,7 +1784,43 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				mNotificationHelper.updateNotification();
 			}
 		}
-		mIntentReceiver.updateWidgets(this, what);
+	}
+
+	/**
+	 * create a new snapshot of the playback state and publish it for the getters
+	 *
+	 * @param queueChanged true to update the queue copy
+	 * @return the new playback state
+	 */
+	@SuppressLint("InlinedApi")
+	private PlaybackState publishState(boolean queueChanged) {
+		// the favorites database is queried without holding the service lock
+		long favoriteId = getAudioId();
+		boolean favorite = mFavoritesCache != null && mFavoritesCache.exists(favoriteId);
+		synchronized (this) {
+			if (queueChanged) {
+				mQueueVersion++;
+				mQueueSnapshot = mPlayList.toArray();
+			}
+			String trackName = "", artistName = "", albumName = "", path = "";
+			long artistId = -1, albumId = -1;
+			if (mCursor != null && mCursor.moveToFirst()) {
+				trackName = mCursor.getString(mCursor.getColumnIndexOrThrow(AudioColumns.TITLE));
+				artistName = mCursor.getString(mCursor.getColumnIndexOrThrow(AudioColumns.ARTIST));
+				albumName = mCursor.getString(mCursor.getColumnIndexOrThrow(AudioColumns.ALBUM));
+				path = mCursor.getString(mCursor.getColumnIndexOrThrow(AudioColumns.DATA));
+				artistId = mCursor.getLong(mCursor.getColumnIndexOrThrow(AudioColumns.ARTIST_ID));
+				albumId = mCursor.getLong(mCursor.getColumnIndexOrThrow(Media.ALBUM_ID));
+			}
+			long audioId = getAudioId();
+			if (audioId != favoriteId) {
+				// the track has changed during the lookup, keep the flag of a state already published for the new track
+				favorite = mState.getAudioId() == audioId && mState.isFavorite();
+			}
+			mState = new PlaybackState(audioId, artistId, albumId, trackName, artistName, albumName, path, duration(), mPlayPos, mQueueVersion,
+					mIsSupposedToBePlaying, favorite, mShuffleMode, mRepeatMode, position(), SystemClock.elapsedRealtime());
+			return mState;
+		}
 	}
 
 	/**
@@ -1454,25 +1831,64 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	}
 
 	/**
-	 * Saves the queue
+	 * Saves the queue in the background. Saves called shortly after each other are merged
 	 *
 	 * @param full True if the queue is full
 	 */
 	private void saveQueue(boolean full) {
-		if (!mQueueIsSaveable) {
-			return;
+		synchronized (this) {
+			mSaveFull |= full;
+			if (mSavePending) {
+				return;
+			}
+			mSavePending = true;
 		}
-		if (full) {
-			settings.setPlayList(mPlayList, mCardId);
-			if (mShuffleMode != SHUFFLE_NONE) {
-				settings.setHistory(mHistory);
+		mPlayerHandler.postDelayed(mSaveTask, SAVE_DELAY);
+	}
+
+	/**
+	 * Saves the queue and the playback position now
+	 *
+	 * @param full True to save the queue and history, even if no save is pending
+	 */
+	private void writeQueue(boolean full) {
+		long[] tracks = null, positions = null;
+		int revision = 0;
+		PlaybackState state;
+		synchronized (this) {
+			full |= mSaveFull;
+			mSaveFull = false;
+			mSavePending = false;
+			// don't overwrite the saved queue before it was restored
+			if (!mQueueIsSaveable || !mInitialized) {
+				return;
 			}
+			if (full) {
+				// changes of the queue are already journaled, write a new snapshot only if required
+				if (mQueueStore.isJournalFull()) {
+					tracks = mPlayList.toArray();
+					positions = mHistory.toArray();
+					revision = mQueueStore.getRevision();
+				} else if (mShuffleMode != SHUFFLE_NONE) {
+					mQueueStore.setHistory(mHistory);
+				}
+			}
+			settings.setCursorPosition(mPlayPos);
+			if (mPlayer.isInitialized()) {
+				settings.setSeekPosition(mPlayer.position());
+			}
+			settings.setRepeatAndShuffleMode(mRepeatMode, mShuffleMode);
+			if (mShuffleMode == SHUFFLE_NORMAL) {
+				settings.setShuffleOrder(mShuffleOrder.getSeed(), mShuffleOrder.getBits(), mShuffleOrder.getCursor());
+			}
+			state = mState;
 		}
-		settings.setCursorPosition(mPlayPos);
-		if (mPlayer.isInitialized()) {
-			settings.setSeekPosition(mPlayer.position());
+		// write the snapshot without holding the service lock
+		if (tracks != null && !mQueueStore.save(tracks, positions, mCardId, revision)) {
+			// the queue has changed while writing, save it again
+			saveQueue(true);
 		}
-		settings.setRepeatAndShuffleMode(mRepeatMode, mShuffleMode);
+		mResumeStore.save(state, mCardId);
 	}
 
 	/**
@@ -1480,10 +1896,12 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 * Apollo
 	 */
 	private void reloadQueue() {
-		int id = settings.getCardId();
-		if (id == mCardId) {
-			mPlayList.clear();
-			mPlayList.addAll(settings.getPlaylist());
+		if (!mQueueStore.load(mPlayList, mHistory, mCardId) && !mQueueStore.exists() && settings.getCardId() == mCardId) {
+			// import queue saved by an older version
+			mPlayList.setAll(settings.getPlaylist());
+			mHistory.setAll(settings.getTrackHistory());
+			mQueueStore.save(mPlayList, mHistory, mCardId);
+			settings.removeLegacyQueue();
 		}
 		if (!mPlayList.isEmpty()) {
 			int pos = settings.getCursorPosition();
@@ -1515,14 +1933,15 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 			if (shufmode != SHUFFLE_AUTO && shufmode != SHUFFLE_NORMAL) {
 				shufmode = SHUFFLE_NONE;
 			}
-			if (shufmode != SHUFFLE_NONE) {
-				mHistory.clear();
-				mHistory.addAll(settings.getTrackHistory());
-			}
 			if (shufmode == SHUFFLE_AUTO) {
 				if (!makeAutoShuffleList()) {
 					shufmode = SHUFFLE_NONE;
 				}
+			} else if (shufmode == SHUFFLE_NORMAL) {
+				// continue the shuffle order where it was left
+				if (!mShuffleOrder.restore(mPlayList.size(), settings.getShuffleSeed(), settings.getShuffleBits(), settings.getShuffleCursor())) {
+					makeNormalShuffleList();
+				}
 			}
 			mShuffleMode = shufmode;
 		}
@@ -1593,6 +2012,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				if (mCursor != null && mCursor.moveToFirst()) {
 					id = mCursor.getLong(mCursor.getColumnIndexOrThrow(Media._ID));
 					mPlayList.add(0, id);
+					mQueueStore.add(0, id);
 					mPlayPos = 0;
 				}
 			}
@@ -1648,20 +2068,6 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		}
 	}
 
-	/**
-	 * Returns the path to current song
-	 *
-	 * @return The path to the current song
-	 */
-	private String getPath() {
-		synchronized (this) {
-			if (mCursor != null && mCursor.moveToFirst()) {
-				return mCursor.getString(mCursor.getColumnIndexOrThrow(AudioColumns.DATA));
-			}
-			return "";
-		}
-	}
-
 	/**
 	 * Sets the position of a track in the queue
 	 *
@@ -1680,31 +2086,6 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		}
 	}
 
-	/**
-	 * Returns the position in the queue
-	 *
-	 * @return the current position in the queue
-	 */
-	private int getQueuePosition() {
-		synchronized (this) {
-			return mPlayPos;
-		}
-	}
-
-	/**
-	 * Returns the artist ID
-	 *
-	 * @return The current song artist ID
-	 */
-	private long getArtistId() {
-		synchronized (this) {
-			if (mCursor != null && mCursor.moveToFirst()) {
-				return mCursor.getLong(mCursor.getColumnIndexOrThrow(AudioColumns.ARTIST_ID));
-			}
-		}
-		return -1;
-	}
-
 
 	@SuppressLint("InlinedApi")
 	private long getDurationMillis() {
@@ -1737,11 +2118,30 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	 * @return how many instances of the track were removed
 	 */
 	private int removeTrack(long id) {
+		return removeTracks(new long[]{id});
+	}
+
+	/**
+	 * Removes all instances of the tracks with the given IDs from the playlist.
+	 * Adjacent tracks are removed as a single range.
+	 *
+	 * @param ids The IDs to be removed
+	 * @return how many instances of the tracks were removed
+	 */
+	private int removeTracks(long[] ids) {
 		synchronized (this) {
+			LongIntMap removeIds = new LongIntMap(ids.length);
+			for (long id : ids) {
+				removeIds.put(id, 0);
+			}
 			int numremoved = 0;
-			for (int pos = 0; pos < mPlayList.size(); pos++) {
-				if (mPlayList.get(pos) == id) {
-					numremoved += removeTracksInternal(pos, pos);
+			for (int pos = mPlayList.size() - 1; pos >= 0; pos--) {
+				if (removeIds.containsKey(mPlayList.get(pos))) {
+					int last = pos;
+					while (pos > 0 && removeIds.containsKey(mPlayList.get(pos - 1))) {
+						pos--;
+					}
+					numremoved += removeTracksInternal(pos, last);
 				}
 			}
 			if (numremoved > 0) {
@@ -1778,29 +2178,10 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 	/**
 	 * Returns the queue
 	 *
-	 * @return The queue as a long[]
+	 * @return a copy of the queue, updated on every queue change
 	 */
 	private long[] getQueue() {
-		synchronized (this) {
-			int len = mPlayList.size();
-			long[] list = new long[len];
-			for (int i = 0; i < len; i++) {
-				list[i] = mPlayList.get(i);
-			}
-			return list;
-		}
-	}
-
-	/**
-	 * True if the current track is a "favorite", false otherwise
-	 */
-	private boolean isFavorite() {
-		synchronized (this) {
-			if (mFavoritesCache != null) {
-				return mFavoritesCache.exists(getAudioId());
-			}
-		}
-		return false;
+		return mQueueSnapshot;
 	}
 
 	/**
@@ -1829,22 +2210,16 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				mShuffleMode = SHUFFLE_NORMAL;
 			}
 			long oldId = getAudioId();
-			mPlayPos = position >= 0 ? position : mShuffler.nextInt(mPlayList.size() - 1);
-
-			boolean newlist = true;
-			if (mPlayList.size() == list.length) {
-				newlist = false;
-				for (int i = 0; i < list.length; i++) {
-					if (list[i] != mPlayList.get(i)) {
-						newlist = true;
-						break;
-					}
+			mPlayPos = position >= 0 || list.length == 0 ? position : mRandom.nextInt(list.length);
+
+			if (!mPlayList.contentEquals(list)) {
+				mPlayList.setAll(list);
+				// a new queue gets a new shuffle order
+				if (mShuffleMode == SHUFFLE_NORMAL) {
+					makeNormalShuffleList();
 				}
-			}
-			if (newlist) {
-				mPlayList.clear();
-				for (long track : list)
-					mPlayList.add(track);
+				// the journal can't describe a new queue, a new snapshot is saved in the background
+				mQueueStore.invalidate();
 				notifyChange(QUEUE_CHANGED);
 			}
 			mHistory.clear();
@@ -1866,7 +2241,9 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				if (histsize == 0) {
 					return;
 				}
-				mPlayPos = mHistory.remove(histsize - 1);
+				mPlayPos = (int) mHistory.remove(histsize - 1);
+				// play the track we came from again when moving forward
+				mShuffleOrder.previous();
 			} else {
 				if (mPlayPos > 0) {
 					mPlayPos--;
@@ -1896,6 +2273,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				}
 			}
 		}
+		publishState(false);
 	}
 
 	/**
@@ -1913,8 +2291,8 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				to = mPlayList.size() - 1;
 			}
 			// move track
-			long trackId = mPlayList.remove(from);
-			mPlayList.add(to, trackId);
+			mPlayList.move(from, to);
+			mQueueStore.move(from, to);
 			// set current play pos
 			if (mPlayPos == from) {
 				mPlayPos = to;
@@ -1974,8 +2352,35 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 * {@inheritDoc}
 		 */
 		@Override
-		public void openFile(Uri uri) {
+		public boolean onTransact(int code, @NonNull Parcel data, @Nullable Parcel reply, int flags) throws RemoteException {
+			// the service is exported for media browser clients, only the app itself may use this interface
+			if (Binder.getCallingUid() != Process.myUid()) {
+				throw new SecurityException("caller not allowed: " + Binder.getCallingUid());
+			}
+			return super.onTransact(code, data, reply, flags);
+		}
+
+		/**
+		 * get the service for calls which change the queue or the player.
+		 * Calls arriving during the startup wait for the restored queue, getters read the snapshot instead
+		 *
+		 * @return the service or null if destroyed
+		 */
+		@Nullable
+		private MusicPlaybackService getInitializedService() {
 			MusicPlaybackService service = mService.get();
+			if (service != null) {
+				service.awaitInit();
+			}
+			return service;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void openFile(Uri uri) {
+			MusicPlaybackService service = getInitializedService();
 			if (service != null && uri != null)
 				service.openFile(uri);
 		}
@@ -1985,8 +2390,8 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void open(long[] list, int position) {
-			MusicPlaybackService service = mService.get();
-			if (mService.get() != null && list != null)
+			MusicPlaybackService service = getInitializedService();
+			if (service != null && list != null)
 				service.open(list, position);
 		}
 
@@ -1995,7 +2400,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void stop() {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.stop();
 		}
@@ -2005,7 +2410,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void pause() {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.pause();
 		}
@@ -2015,7 +2420,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void play() {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.play();
 		}
@@ -2025,7 +2430,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void prev() {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.prev();
 		}
@@ -2035,7 +2440,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void goToNext() {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.gotoNext(true);
 		}
@@ -2045,7 +2450,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void goToPrev() {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.goToPrev();
 		}
@@ -2055,7 +2460,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void enqueue(long[] list, int action) {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null && list != null)
 				service.enqueue(list, action);
 		}
@@ -2065,7 +2470,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void moveQueueItem(int from, int to) {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.moveQueueItem(from, to);
 		}
@@ -2075,7 +2480,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void toggleFavorite() {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.toggleFavorite();
 		}
@@ -2097,7 +2502,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public boolean isFavorite() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.isFavorite();
+				return service.getPlaybackState().isFavorite();
 			return false;
 		}
 
@@ -2108,7 +2513,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public boolean isPlaying() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.isPlaying();
+				return service.getPlaybackState().isPlaying();
 			return false;
 		}
 
@@ -2130,7 +2535,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public long duration() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.duration();
+				return service.getPlaybackState().getDuration();
 			return 0;
 		}
 
@@ -2141,7 +2546,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public long position() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.position();
+				return service.getPlaybackState().getPosition();
 			return -1;
 		}
 
@@ -2150,7 +2555,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public long seek(long position) {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				return service.seek(position);
 			return 0;
@@ -2163,7 +2568,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public long getAudioId() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getAudioId();
+				return service.getPlaybackState().getAudioId();
 			return 0;
 		}
 
@@ -2174,7 +2579,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public long getArtistId() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getArtistId();
+				return service.getPlaybackState().getArtistId();
 			return 0;
 		}
 
@@ -2185,7 +2590,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public long getAlbumId() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getAlbumId();
+				return service.getPlaybackState().getAlbumId();
 			return 0;
 		}
 
@@ -2196,7 +2601,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public String getArtistName() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getArtistName();
+				return service.getPlaybackState().getArtistName();
 			return "";
 		}
 
@@ -2207,7 +2612,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public String getTrackName() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getTrackName();
+				return service.getPlaybackState().getTrackName();
 			return "";
 		}
 
@@ -2218,7 +2623,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public String getAlbumName() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getAlbumName();
+				return service.getPlaybackState().getAlbumName();
 			return "";
 		}
 
@@ -2229,7 +2634,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public String getPath() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getPath();
+				return service.getPlaybackState().getPath();
 			return "";
 		}
 
@@ -2240,7 +2645,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public int getQueuePosition() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getQueuePosition();
+				return service.getPlaybackState().getQueuePosition();
 			return -1;
 		}
 
@@ -2249,7 +2654,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void setQueuePosition(int index) {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.setQueuePosition(index);
 		}
@@ -2261,7 +2666,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public int getShuffleMode() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getShuffleMode();
+				return service.getPlaybackState().getShuffleMode();
 			return SHUFFLE_NONE;
 		}
 
@@ -2270,7 +2675,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void setShuffleMode(int shufflemode) {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.setShuffleMode(shufflemode);
 		}
@@ -2282,7 +2687,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		public int getRepeatMode() {
 			MusicPlaybackService service = mService.get();
 			if (service != null)
-				return service.getRepeatMode();
+				return service.getPlaybackState().getRepeatMode();
 			return REPEAT_NONE;
 		}
 
@@ -2291,7 +2696,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public void setRepeatMode(int repeatmode) {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				service.setRepeatMode(repeatmode);
 		}
@@ -2301,7 +2706,7 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public int removeTracks(int first, int last) {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				return service.removeTracks(first, last);
 			return 0;
@@ -2312,12 +2717,23 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 		 */
 		@Override
 		public int removeTrack(long id) {
-			MusicPlaybackService service = mService.get();
+			MusicPlaybackService service = getInitializedService();
 			if (service != null)
 				return service.removeTrack(id);
 			return 0;
 		}
 
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int removeTrackList(long[] ids) {
+			MusicPlaybackService service = getInitializedService();
+			if (service != null && ids != null)
+				return service.removeTracks(ids);
+			return 0;
+		}
+
 		/**
 		 * {@inheritDoc}
 		 */
@@ -2339,5 +2755,16 @@ public class MusicPlaybackService extends MediaBrowserServiceCompat implements O
 				return service.getAudioSessionId();
 			return 0;
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public PlaybackState getPlaybackState() {
+			MusicPlaybackService service = mService.get();
+			if (service != null)
+				return service.getPlaybackState();
+			return PlaybackState.EMPTY;
+		}
 	}
 }
\ No newline at end of file
@@ -194,16 +194,16 @@ public class NotificationHelper {
 		callbacks = new PendingIntent[4];
 		ComponentName serviceName = new ComponentName(mService, MusicPlaybackService.class);
 
-		Intent action = new Intent(MusicPlaybackService.TOGGLEPAUSE_ACTION).setComponent(serviceName);
+		Intent action = MusicPlaybackService.setSender(mService, new Intent(MusicPlaybackService.TOGGLEPAUSE_ACTION).setComponent(serviceName));
 		callbacks[0] = PendingIntent.getService(mService, 1, action, PendingIntent.FLAG_IMMUTABLE);
 
-		action = new Intent(MusicPlaybackService.NEXT_ACTION).setComponent(serviceName);
+		action = MusicPlaybackService.setSender(mService, new Intent(MusicPlaybackService.NEXT_ACTION).setComponent(serviceName));
 		callbacks[1] = PendingIntent.getService(mService, 2, action, PendingIntent.FLAG_IMMUTABLE);
 
-		action = new Intent(MusicPlaybackService.PREVIOUS_ACTION).setComponent(serviceName);
+		action = MusicPlaybackService.setSender(mService, new Intent(MusicPlaybackService.PREVIOUS_ACTION).setComponent(serviceName));
 		callbacks[2] = PendingIntent.getService(mService, 3, action, PendingIntent.FLAG_IMMUTABLE);
 
-		action = new Intent(MusicPlaybackService.STOP_ACTION).setComponent(serviceName);
+		action = MusicPlaybackService.setSender(mService, new Intent(MusicPlaybackService.STOP_ACTION).setComponent(serviceName));
 		callbacks[3] = PendingIntent.getService(mService, 4, action, PendingIntent.FLAG_IMMUTABLE);
 	}
 
@@ -216,7 +216,7 @@ public class NotificationHelper {
 		// Artist name (line two)
 		mSmallContent.setTextViewText(R.id.notification_base_line_two, mService.getArtistName());
 		// Album art
-		mSmallContent.setImageViewBitmap(R.id.notification_base_image, mService.getAlbumArt());
+		mSmallContent.setImageViewBitmap(R.id.notification_base_image, mService.getAlbumArt(R.dimen.notification_big_icon_width));
 	}
 
 	/**
@@ -231,6 +231,6 @@ public class NotificationHelper {
 		// Artist name (line three)
 		mExpandedView.setTextViewText(R.id.notification_expanded_base_line_three, mService.getArtistName());
 		// Album art
-		mExpandedView.setImageViewBitmap(R.id.notification_expanded_base_image, mService.getAlbumArt());
+		mExpandedView.setImageViewBitmap(R.id.notification_expanded_base_image, mService.getAlbumArt(R.dimen.notification_expanded_height));
 	}
 }
\ No newline at end of file
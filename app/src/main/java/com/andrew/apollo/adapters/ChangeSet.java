@@ -0,0 +1,242 @@
+package com.andrew.apollo.adapters;
+
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.ArrayAdapter;
+import android.widget.ListView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.andrew.apollo.model.Music;
+import com.andrew.apollo.utils.LongIntMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * difference between two versions of a list, matched by media ID.
+ * The difference is computed in the background and contains the rows to remove and to insert,
+ * so an adapter only needs to change the inserted, removed, moved and changed rows instead of being rebuilt.
+ * Rows which keep their order are found with the longest increasing subsequence of their old positions,
+ * all other common rows are moved. If most of the rows changed, the adapter is replaced at once.
+ */
+public class ChangeSet<T extends Music> {
+
+	/**
+	 * min number of rows to prefer single updates over a full replacement
+	 */
+	private static final int MIN_REPLACE_SIZE = 64;
+
+	/**
+	 * new items of the list
+	 */
+	private final List<T> mItems;
+
+	/**
+	 * positions of the old list to remove, in descending order
+	 */
+	private final int[] mRemovals;
+
+	/**
+	 * positions of the new list to insert, in ascending order
+	 */
+	private final int[] mInsertions;
+
+	/**
+	 * new position of every old row or -1 if the row was removed
+	 */
+	private final int[] mNewPositions;
+
+	/**
+	 * number of rows of the old list
+	 */
+	private final int mOldSize;
+
+	/**
+	 * true to replace all rows of the adapter
+	 */
+	private final boolean mReplace;
+
+	/**
+	 * compute the difference of two lists
+	 *
+	 * @param oldItems items currently shown by the adapter
+	 * @param newItems new items to show
+	 */
+	@WorkerThread
+	public ChangeSet(@NonNull List<T> oldItems, @NonNull List<T> newItems) {
+		mItems = newItems;
+		mOldSize = oldItems.size();
+		mNewPositions = new int[mOldSize];
+		int newSize = newItems.size();
+		// map IDs of the old rows to their positions
+		LongIntMap oldPositions = new LongIntMap(mOldSize);
+		boolean duplicates = false;
+		for (int i = 0; i < mOldSize; i++) {
+			long id = oldItems.get(i).getId();
+			duplicates |= oldPositions.containsKey(id);
+			oldPositions.put(id, i);
+			mNewPositions[i] = -1;
+		}
+		// old position of every new row or -1 if the row is new
+		int[] matches = new int[newSize];
+		LongIntMap newIds = new LongIntMap(newSize);
+		for (int i = 0; i < newSize; i++) {
+			long id = newItems.get(i).getId();
+			duplicates |= newIds.containsKey(id);
+			newIds.put(id, i);
+			matches[i] = oldPositions.get(id, -1);
+			if (matches[i] >= 0) {
+				mNewPositions[matches[i]] = i;
+			}
+		}
+		if (duplicates) {
+			// rows can't be matched by ID
+			mReplace = true;
+			mRemovals = new int[0];
+			mInsertions = new int[0];
+			return;
+		}
+		boolean[] keep = findUnmoved(matches);
+		// changed rows are replaced
+		for (int i = 0; i < newSize; i++) {
+			if (keep[i] && !oldItems.get(matches[i]).equals(newItems.get(i))) {
+				keep[i] = false;
+			}
+		}
+		// rows which are not kept at their place are removed and inserted again
+		boolean[] removeOld = new boolean[mOldSize];
+		int removeCount = mOldSize;
+		int insertCount = 0;
+		for (int i = 0; i < mOldSize; i++) {
+			removeOld[i] = true;
+		}
+		for (int i = 0; i < newSize; i++) {
+			if (keep[i]) {
+				removeOld[matches[i]] = false;
+				removeCount--;
+			} else {
+				insertCount++;
+			}
+		}
+		mRemovals = new int[removeCount];
+		for (int i = mOldSize - 1, n = 0; i >= 0; i--) {
+			if (removeOld[i]) {
+				mRemovals[n++] = i;
+			}
+		}
+		mInsertions = new int[insertCount];
+		for (int i = 0, n = 0; i < newSize; i++) {
+			if (!keep[i]) {
+				mInsertions[n++] = i;
+			}
+		}
+		// every single update moves the following rows, so replace everything if most of the rows changed
+		int updates = mRemovals.length + mInsertions.length;
+		mReplace = updates > MIN_REPLACE_SIZE && updates > Math.max(mOldSize, newSize) / 2;
+	}
+
+	/**
+	 * get a copy of the items of an adapter, used as the old list
+	 *
+	 * @param adapter adapter to copy the items from
+	 * @return list of items
+	 */
+	@MainThread
+	public static <T extends Music> List<T> getItems(@NonNull ArrayAdapter<T> adapter) {
+		List<T> result = new ArrayList<>(adapter.getCount());
+		for (int i = 0; i < adapter.getCount(); i++) {
+			result.add(adapter.getItem(i));
+		}
+		return result;
+	}
+
+	/**
+	 * update the rows of an adapter and keep the first visible row of the list at its place
+	 *
+	 * @param adapter adapter containing the items of the old list
+	 * @param list    list view showing the adapter
+	 */
+	@MainThread
+	public void apply(@NonNull ArrayAdapter<T> adapter, @NonNull AbsListView list) {
+		if (isEmpty() && adapter.getCount() == mOldSize) {
+			return;
+		}
+		// remember the first visible row
+		int first = list.getFirstVisiblePosition();
+		View child = list.getChildAt(0);
+		int top = child != null ? child.getTop() - list.getPaddingTop() : 0;
+		// notify the list only once after all updates
+		adapter.setNotifyOnChange(false);
+		if (mReplace || adapter.getCount() != mOldSize) {
+			// the adapter has changed since the old items were copied or most of the rows changed
+			adapter.clear();
+			adapter.addAll(mItems);
+		} else {
+			for (int position : mRemovals) {
+				adapter.remove(adapter.getItem(position));
+			}
+			for (int position : mInsertions) {
+				adapter.insert(mItems.get(position), position);
+			}
+		}
+		adapter.notifyDataSetChanged();
+		// move the first visible row to its new position
+		if (!mReplace && first > 0 && first < mOldSize && mNewPositions[first] >= 0 && mNewPositions[first] != first) {
+			if (list instanceof ListView) {
+				((ListView) list).setSelectionFromTop(mNewPositions[first], top);
+			} else {
+				list.setSelection(mNewPositions[first]);
+			}
+		}
+	}
+
+	/**
+	 * @return true if nothing has changed
+	 */
+	public boolean isEmpty() {
+		return !mReplace && mRemovals.length == 0 && mInsertions.length == 0;
+	}
+
+	/**
+	 * find the rows which keep their order by calculating the longest increasing subsequence of their old positions
+	 *
+	 * @param matches old position of every new row or -1 if the row is new
+	 * @return true for every new row which keeps its place
+	 */
+	private static boolean[] findUnmoved(int[] matches) {
+		// indexes of the smallest last element of every subsequence length
+		int[] tails = new int[matches.length];
+		// previous element of every element in its subsequence
+		int[] previous = new int[matches.length];
+		int length = 0;
+		for (int i = 0; i < matches.length; i++) {
+			if (matches[i] < 0) {
+				continue;
+			}
+			// binary search for the longest subsequence ending with a smaller old position
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (matches[tails[mid]] < matches[i]) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			previous[i] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = i;
+			if (low == length) {
+				length++;
+			}
+		}
+		boolean[] result = new boolean[matches.length];
+		for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+			result[i] = true;
+		}
+		return result;
+	}
+}
@@ -6,6 +6,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -21,7 +22,9 @@ import com.andrew.apollo.utils.ApolloUtils;
 import com.andrew.apollo.utils.MusicUtils;
 import com.andrew.apollo.utils.PrefixHighlighter;
 
+import java.util.IdentityHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Used to populate the list view with the search results.
@@ -53,6 +56,11 @@ public class SearchAdapter extends ArrayAdapter<Music> {
 	 */
 	private char[] mPrefix;
 
+	/**
+	 * positions of the matched parts of the item names
+	 */
+	private final Map<Music, int[]> mHighlights = new IdentityHashMap<>();
+
 	/**
 	 * Constructor for <code>SearchAdapter</code>
 	 *
@@ -96,7 +104,7 @@ public class SearchAdapter extends ArrayAdapter<Music> {
 			// Asynchronously load the artist image into the adapter
 			mImageFetcher.loadArtistImage(artist.getName(), holder.mImage);
 			// Highlight the query
-			mHighlighter.setText(holder.mLineOne, artist.getName(), mPrefix);
+			setHighlightedText(holder.mLineOne, music, artist.getName());
 		} else if (music instanceof Album) {
 			// set album information
 			Album album = (Album) music;
@@ -107,7 +115,7 @@ public class SearchAdapter extends ArrayAdapter<Music> {
 			// Asynchronously load the album images into the adapter
 			mImageFetcher.loadAlbumImage(album.getArtist(), album.getName(), album.getId(), holder.mImage);
 			// Highlight the query
-			mHighlighter.setText(holder.mLineOne, album.getName(), mPrefix);
+			setHighlightedText(holder.mLineOne, music, album.getName());
 		} else if (music instanceof Song) {
 			// set track information
 			Song song = (Song) music;
@@ -120,11 +128,31 @@ public class SearchAdapter extends ArrayAdapter<Music> {
 			// Get the artist name
 			holder.mLineThree.setText(song.getArtist());
 			// Highlight the query
-			mHighlighter.setText(holder.mLineOne, song.getName(), mPrefix);
+			setHighlightedText(holder.mLineOne, music, song.getName());
 		}
 		return convertView;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		mHighlights.clear();
+		super.clear();
+	}
+
+	/**
+	 * add a search result with the positions of the matched parts of its name
+	 *
+	 * @param music      search result
+	 * @param highlights start and end positions stored in pairs
+	 */
+	public void add(Music music, int[] highlights) {
+		mHighlights.put(music, highlights);
+		add(music);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -153,6 +181,18 @@ public class SearchAdapter extends ArrayAdapter<Music> {
 		}
 	}
 
+	/**
+	 * highlight the matched parts of a name, or the query prefix if there are no matches
+	 */
+	private void setHighlightedText(TextView view, Music music, String name) {
+		int[] highlights = mHighlights.get(music);
+		if (highlights != null && highlights.length > 0) {
+			mHighlighter.setText(view, name, highlights);
+		} else {
+			mHighlighter.setText(view, name, mPrefix);
+		}
+	}
+
 	/**
 	 * @param prefix The query to filter.
 	 */
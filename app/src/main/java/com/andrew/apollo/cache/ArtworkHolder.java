@@ -0,0 +1,154 @@
+package com.andrew.apollo.cache;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import androidx.annotation.DimenRes;
+import androidx.annotation.Nullable;
+
+/**
+ * Holds the artwork of the current album for the notification and the widgets.
+ * The artwork is decoded once per album, sampled down to the largest size used by any consumer,
+ * and every consumer size is scaled only once. The artwork is dropped when the album changes.
+ * If an album has no artwork yet, the default artwork is used and the album artwork is looked up again later,
+ * so downloaded artwork is shown without waiting for the next album.
+ */
+public class ArtworkHolder {
+
+	/**
+	 * min time in milliseconds between two lookups of a missing artwork
+	 */
+	private static final long RETRY_INTERVAL = 10000;
+
+	/**
+	 * used to load the artwork
+	 */
+	private final ImageFetcher mFetcher;
+
+	private final Resources mResources;
+
+	/**
+	 * size in pixels the artwork is decoded with
+	 */
+	private final int mDecodeSize;
+
+	/**
+	 * scaled artwork mapped by size in pixels
+	 */
+	private final SparseArray<Bitmap> mScaled = new SparseArray<>();
+
+	/**
+	 * scaled default artwork mapped by size in pixels, kept for all albums
+	 */
+	private final SparseArray<Bitmap> mDefaults = new SparseArray<>();
+
+	/**
+	 * decoded artwork of the current album
+	 */
+	@Nullable
+	private Bitmap mSource;
+
+	/**
+	 * key of the current album
+	 */
+	private String mAlbumName, mArtistName;
+	private long mAlbumId = -1;
+
+	/**
+	 * true if the artwork of the current album was looked up
+	 */
+	private boolean mLoaded = false;
+
+	/**
+	 * time of the last lookup, see {@link SystemClock#elapsedRealtime()}
+	 */
+	private long mLoadTime = 0;
+
+	/**
+	 * @param context  context used to resolve the artwork sizes
+	 * @param fetcher  fetcher used to load the artwork
+	 * @param sizeRess dimensions of all consumers, used to find the largest size to decode
+	 */
+	public ArtworkHolder(Context context, ImageFetcher fetcher, @DimenRes int... sizeRess) {
+		mFetcher = fetcher;
+		mResources = context.getResources();
+		int decodeSize = 0;
+		for (int sizeRes : sizeRess) {
+			decodeSize = Math.max(decodeSize, mResources.getDimensionPixelSize(sizeRes));
+		}
+		mDecodeSize = decodeSize;
+	}
+
+	/**
+	 * get the artwork of an album scaled to a consumer size
+	 *
+	 * @param albumName  name of the album
+	 * @param albumId    ID of the album
+	 * @param artistName album artist
+	 * @param sizeRes    dimension of the artwork
+	 * @return artwork or null if not available
+	 */
+	@Nullable
+	public synchronized Bitmap getArtwork(String albumName, long albumId, String artistName, @DimenRes int sizeRes) {
+		if (albumId != mAlbumId || !TextUtils.equals(albumName, mAlbumName) || !TextUtils.equals(artistName, mArtistName)) {
+			clear();
+			mAlbumName = albumName;
+			mArtistName = artistName;
+			mAlbumId = albumId;
+		}
+		int size = mResources.getDimensionPixelSize(sizeRes);
+		Bitmap artwork = mScaled.get(size);
+		if (artwork == null) {
+			long now = SystemClock.elapsedRealtime();
+			if (!mLoaded || (mSource == null && now - mLoadTime >= RETRY_INTERVAL)) {
+				mSource = mFetcher.getArtwork(albumName, albumId, artistName, Math.max(mDecodeSize, size));
+				mLoaded = true;
+				mLoadTime = now;
+			}
+			if (size > 0) {
+				if (mSource != null) {
+					artwork = Bitmap.createScaledBitmap(mSource, size, size, true);
+					mScaled.put(size, artwork);
+				} else {
+					artwork = getDefaultArtwork(size);
+				}
+			}
+		}
+		return artwork;
+	}
+
+	/**
+	 * get the default artwork scaled to a consumer size
+	 *
+	 * @param size size in pixels
+	 * @return default artwork or null if not available
+	 */
+	@Nullable
+	private Bitmap getDefaultArtwork(int size) {
+		Bitmap artwork = mDefaults.get(size);
+		if (artwork == null) {
+			Bitmap source = mFetcher.getDefaultArtwork();
+			if (source != null) {
+				artwork = Bitmap.createScaledBitmap(source, size, size, true);
+				mDefaults.put(size, artwork);
+			}
+		}
+		return artwork;
+	}
+
+	/**
+	 * drop the artwork of the current album
+	 */
+	public synchronized void clear() {
+		mScaled.clear();
+		mSource = null;
+		mLoaded = false;
+		mAlbumName = null;
+		mArtistName = null;
+		mAlbumId = -1;
+	}
+}
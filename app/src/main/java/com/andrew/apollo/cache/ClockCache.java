@@ -0,0 +1,347 @@
+package com.andrew.apollo.cache;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe memory cache with a size limit, replacement of a synchronized LRU cache.
+ * Reads are lock-free and only mark the entry as recently used. Entries are kept in
+ * several segments with their own lock, every segment evicts its entries with the CLOCK algorithm
+ * (second chance), so writers of different segments don't block each other.
+ * The size limit is shared by all segments, entries are evicted from the segments in turn.
+ */
+public class ClockCache<K, V> {
+
+	/**
+	 * number of segments, must be a power of two
+	 */
+	private static final int SEGMENT_COUNT = 8;
+
+	/**
+	 * entries mapped by key, used for lock-free reads. Entries of a key are only changed while holding the lock of its segment
+	 */
+	private final ConcurrentHashMap<K, Node<K, V>> mMap;
+
+	private final Segment<K, V>[] mSegments;
+
+	/**
+	 * next segment to evict from
+	 */
+	private final AtomicInteger mEvictCursor = new AtomicInteger();
+
+	/**
+	 * sum of the sizes of all entries
+	 */
+	private final AtomicInteger mSize = new AtomicInteger();
+
+	private final AtomicLong mHitCount = new AtomicLong();
+	private final AtomicLong mMissCount = new AtomicLong();
+	private final AtomicLong mEvictionCount = new AtomicLong();
+
+	private final int mMaxSize;
+
+	/**
+	 * @param maxSize for caches that do not override {@link #sizeOf}, this is
+	 *                the maximum number of entries in the cache. For all other
+	 *                caches, this is the maximum sum of the sizes of the entries in
+	 *                this cache.
+	 */
+	@SuppressWarnings("unchecked")
+	public ClockCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+		mMaxSize = maxSize;
+		mMap = new ConcurrentHashMap<>(16, 0.75f, SEGMENT_COUNT);
+		mSegments = new Segment[SEGMENT_COUNT];
+		for (int i = 0; i < SEGMENT_COUNT; i++) {
+			mSegments[i] = new Segment<>();
+		}
+	}
+
+	/**
+	 * Returns the value for {@code key} if it exists in the cache and marks it as recently used.
+	 * This doesn't block.
+	 */
+	public final V get(K key) {
+		if (key == null) {
+			throw new NullPointerException("key == null");
+		}
+		Node<K, V> node = mMap.get(key);
+		if (node != null) {
+			node.referenced = true;
+			mHitCount.incrementAndGet();
+			return node.value;
+		}
+		mMissCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Caches {@code value} for {@code key}. If the cache is full, entries which were not used recently are evicted.
+	 */
+	public void put(K key, V value) {
+		if (key == null || value == null) {
+			throw new NullPointerException("key == null || value == null");
+		}
+		Node<K, V> node = new Node<>(key, value, safeSizeOf(key, value));
+		Node<K, V> previous;
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			previous = mMap.put(key, node);
+			if (previous != null) {
+				segment.unlink(previous);
+				mSize.addAndGet(-previous.size);
+			}
+			segment.link(node);
+			mSize.addAndGet(node.size);
+		}
+		if (previous != null) {
+			entryRemoved(false, key, previous.value, value);
+		}
+		trimToSize(mMaxSize);
+	}
+
+	/**
+	 * Removes the entry for {@code key} if it exists.
+	 */
+	public void remove(K key) {
+		if (key == null) {
+			throw new NullPointerException("key == null");
+		}
+		Node<K, V> previous;
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			previous = mMap.remove(key);
+			if (previous != null) {
+				segment.unlink(previous);
+				mSize.addAndGet(-previous.size);
+			}
+		}
+		if (previous != null) {
+			entryRemoved(false, key, previous.value, null);
+		}
+	}
+
+	/**
+	 * evict entries until the size of the cache is not larger than {@code maxSize}
+	 *
+	 * @param maxSize the maximum size of the cache before returning. May be -1
+	 *                to evict even 0-sized elements.
+	 */
+	public void trimToSize(int maxSize) {
+		// stop if every segment is empty
+		for (int empty = 0; empty < SEGMENT_COUNT && mSize.get() > maxSize; ) {
+			Segment<K, V> segment = mSegments[mEvictCursor.getAndIncrement() & (SEGMENT_COUNT - 1)];
+			Node<K, V> victim;
+			synchronized (segment) {
+				victim = segment.evict();
+				if (victim != null) {
+					mMap.remove(victim.key, victim);
+					mSize.addAndGet(-victim.size);
+				}
+			}
+			if (victim != null) {
+				empty = 0;
+				mEvictionCount.incrementAndGet();
+				entryRemoved(true, victim.key, victim.value, null);
+			} else {
+				empty++;
+			}
+		}
+	}
+
+	/**
+	 * Called for entries that have been evicted or removed. This method is
+	 * invoked when a value is evicted to make space, removed by a call to
+	 * {@link #remove}, or replaced by a call to {@link #put}. The default
+	 * implementation does nothing. This is never called while holding a lock.
+	 *
+	 * @param evicted  true if the entry is being removed to make space, false
+	 *                 if the removal was caused by a {@link #put} or {@link #remove}.
+	 * @param newValue the new value for {@code key}, if it exists. If non-null,
+	 *                 this removal was caused by a {@link #put}. Otherwise it was caused by
+	 *                 an eviction or a {@link #remove}.
+	 */
+	protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+	}
+
+	/**
+	 * Returns the size of the entry for {@code key} and {@code value} in
+	 * user-defined units. The default implementation returns 1 so that size is
+	 * the number of entries and max size is the maximum number of entries.
+	 * <p>
+	 * An entry's size must not change while it is in the cache.
+	 */
+	protected int sizeOf(V value) {
+		return 1;
+	}
+
+	/**
+	 * remove all entries
+	 */
+	public void evictAll() {
+		trimToSize(-1); // -1 will evict 0-sized elements
+	}
+
+	/**
+	 * For caches that do not override {@link #sizeOf}, this returns the number
+	 * of entries in the cache. For all other caches, this returns the sum of
+	 * the sizes of the entries in this cache.
+	 */
+	public int size() {
+		return mSize.get();
+	}
+
+	/**
+	 * @return max size of this cache
+	 */
+	public int maxSize() {
+		return mMaxSize;
+	}
+
+	/**
+	 * @return number of reads returning a value
+	 */
+	public long hitCount() {
+		return mHitCount.get();
+	}
+
+	/**
+	 * @return number of reads not returning a value
+	 */
+	public long missCount() {
+		return mMissCount.get();
+	}
+
+	/**
+	 * @return number of entries evicted to free space
+	 */
+	public long evictionCount() {
+		return mEvictionCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@NonNull
+	@Override
+	public String toString() {
+		long hits = mHitCount.get();
+		long accesses = hits + mMissCount.get();
+		long hitPercent = accesses != 0 ? 100 * hits / accesses : 0;
+		return "ClockCache[maxSize=" + mMaxSize + ",size=" + mSize.get() + ",hits=" + hits + ",misses=" + mMissCount.get()
+				+ ",evictions=" + mEvictionCount.get() + ",hitRate=" + hitPercent + "%]";
+	}
+
+	/**
+	 * get the segment of a key
+	 */
+	private Segment<K, V> segmentFor(K key) {
+		int hash = key.hashCode();
+		// spread the bits, the low bits of the hash codes are often similar
+		hash ^= (hash >>> 16);
+		hash *= 0x45d9f3b;
+		hash ^= (hash >>> 16);
+		return mSegments[hash & (SEGMENT_COUNT - 1)];
+	}
+
+	private int safeSizeOf(K key, V value) {
+		int result = sizeOf(value);
+		if (result < 0) {
+			throw new IllegalStateException("Negative size: " + key + "=" + value);
+		}
+		return result;
+	}
+
+	/**
+	 * cache entry
+	 */
+	private static final class Node<K, V> {
+
+		final K key;
+		final V value;
+		final int size;
+
+		/**
+		 * set on every read, cleared by the clock hand
+		 */
+		volatile boolean referenced = false;
+
+		/**
+		 * neighbours in the clock ring of the segment, guarded by the segment lock
+		 */
+		Node<K, V> prev, next;
+
+		Node(K key, V value, int size) {
+			this.key = key;
+			this.value = value;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * segment of the cache with its own clock ring. All methods must be called while holding the segment lock
+	 */
+	private static final class Segment<K, V> {
+
+		/**
+		 * clock hand, the next entry to check for eviction or null if the segment is empty
+		 */
+		private Node<K, V> hand;
+
+		/**
+		 * insert a new entry behind the clock hand, so it is checked last
+		 */
+		void link(Node<K, V> node) {
+			if (hand == null) {
+				node.prev = node.next = node;
+				hand = node;
+			} else {
+				node.next = hand;
+				node.prev = hand.prev;
+				hand.prev.next = node;
+				hand.prev = node;
+			}
+		}
+
+		/**
+		 * remove an entry from the ring
+		 */
+		void unlink(Node<K, V> node) {
+			if (node.next == node) {
+				hand = null;
+			} else {
+				node.prev.next = node.next;
+				node.next.prev = node.prev;
+				if (hand == node) {
+					hand = node.next;
+				}
+			}
+			node.prev = node.next = null;
+		}
+
+		/**
+		 * move the clock hand to the next entry which wasn't used since the last round and remove it from the ring
+		 *
+		 * @return removed entry or null if the segment is empty
+		 */
+		Node<K, V> evict() {
+			while (hand != null) {
+				Node<K, V> node = hand;
+				if (node.referenced) {
+					// second chance
+					node.referenced = false;
+					hand = node.next;
+				} else {
+					unlink(node);
+					return node;
+				}
+			}
+			return null;
+		}
+	}
+}
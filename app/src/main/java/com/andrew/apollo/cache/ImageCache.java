@@ -29,8 +29,11 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.andrew.apollo.utils.BitmapUtils;
+
 import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -69,14 +72,47 @@ public final class ImageCache implements ComponentCallbacks2 {
 	private static final Uri mArtworkUri = Uri.parse("content://media/external/audio/albumart");
 
 	/**
-	 * Disk cache index to read from
+	 * Image compression quality
 	 */
-	private static final int DISK_CACHE_INDEX = 0;
+	private static final int COMPRESS_QUALITY = 90;
 
 	/**
-	 * Image compression quality
+	 * buffer size used to copy downloaded images into the disk cache
 	 */
-	private static final int COMPRESS_QUALITY = 90;
+	private static final int IO_BUFFER_SIZE = 8192;
+
+	/**
+	 * suffix of the cache keys of blurred images
+	 */
+	private static final String BLUR_KEY_SUFFIX = "#blur";
+
+	/**
+	 * size classes of the cached images. Every size class is stored as a separate value of the
+	 * same disk cache entry, smaller size classes are created on demand from a larger one
+	 */
+	public static final int SIZE_THUMBNAIL = 0;
+	public static final int SIZE_GRID = 1;
+	public static final int SIZE_FULL = 2;
+
+	/**
+	 * number of size classes, also used as the number of values of a disk cache entry
+	 */
+	private static final int SIZE_COUNT = 3;
+
+	/**
+	 * max width and height in dp of the thumbnail and the grid size class
+	 */
+	private static final int[] SIZE_LIMITS_DP = {128, 256};
+
+	/**
+	 * memory cache key suffixes of the size classes
+	 */
+	private static final String[] SIZE_KEY_SUFFIX = {"#thumb", "#grid", ""};
+
+	/**
+	 * version of the disk cache entry format, a different version clears the disk cache
+	 */
+	private static final int DISK_CACHE_VERSION = 2;
 
 	/**
 	 * singleton instance of this class
@@ -101,6 +137,10 @@ public final class ImageCache implements ComponentCallbacks2 {
 	 */
 	@Nullable
 	private DiskLruCache mDiskCache;
+	/**
+	 * max width and height in pixels of the thumbnail and the grid size class
+	 */
+	private final int[] mSizeLimits = new int[SIZE_FULL];
 
 	/**
 	 * Constructor of <code>ImageCache</code>
@@ -124,22 +164,6 @@ public final class ImageCache implements ComponentCallbacks2 {
 		return sInstance;
 	}
 
-	/**
-	 * Get a usable cache directory (external if available, internal otherwise)
-	 *
-	 * @param context    The {@link Context} to use
-	 * @param uniqueName A unique directory name to append to the cache
-	 *                   directory
-	 * @return The cache directory
-	 */
-	public static File getDiskCacheDir(Context context, String uniqueName) {
-		// getExternalCacheDir(context) returns null if external storage is not ready
-		File folder = context.getExternalCacheDir();
-		if (folder == null)
-			folder = context.getCacheDir();
-		return new File(folder, uniqueName);
-	}
-
 	/**
 	 * Check if space is available at a given path.
 	 *
@@ -227,6 +251,10 @@ public final class ImageCache implements ComponentCallbacks2 {
 	 * @param context The {@link Context} to use
 	 */
 	private void init(Context context) {
+		float density = context.getResources().getDisplayMetrics().density;
+		for (int i = 0; i < mSizeLimits.length; i++) {
+			mSizeLimits[i] = Math.round(SIZE_LIMITS_DP[i] * density);
+		}
 		File cacheFolder = context.getExternalCacheDir();
 		if (cacheFolder == null)
 			cacheFolder = context.getCacheDir();
@@ -261,7 +289,7 @@ public final class ImageCache implements ComponentCallbacks2 {
 			}
 			if (isSpaceAvailable(cacheFolder.getPath())) {
 				try {
-					mDiskCache = DiskLruCache.open(cacheFolder, 1, 1, DISK_CACHE_SIZE);
+					mDiskCache = DiskLruCache.open(cacheFolder, DISK_CACHE_VERSION, SIZE_COUNT, DISK_CACHE_SIZE);
 				} catch (IOException e) {
 					e.printStackTrace();
 				}
@@ -289,15 +317,27 @@ public final class ImageCache implements ComponentCallbacks2 {
 	 * @param bitmap The {@link Bitmap} to cache
 	 */
 	public void addBitmapToCache(String data, Bitmap bitmap) {
+		addBitmapToCache(data, bitmap, SIZE_FULL);
+	}
+
+	/**
+	 * Adds a new image of a size class to the memory cache. Full size images are also added to the disk cache,
+	 * smaller size classes are created from the disk cache when needed
+	 *
+	 * @param data      The key used to store the image
+	 * @param bitmap    The {@link Bitmap} to cache
+	 * @param sizeClass size class of the image, see {@link #getSizeClass(int, int)}
+	 */
+	public void addBitmapToCache(String data, Bitmap bitmap, int sizeClass) {
 		if (data == null || bitmap == null) {
 			return;
 		}
 
 		// Add to memory cache
-		addBitmapToMemCache(data, bitmap);
+		addBitmapToMemCache(getVariantKey(data, sizeClass), bitmap);
 
 		// Add to disk cache
-		if (mDiskCache != null) {
+		if (mDiskCache != null && sizeClass == SIZE_FULL) {
 			String key = hashKeyForDisk(data);
 			OutputStream out = null;
 			try {
@@ -305,14 +345,15 @@ public final class ImageCache implements ComponentCallbacks2 {
 				if (snapshot == null) {
 					DiskLruCache.Editor editor = mDiskCache.edit(key);
 					if (editor != null) {
-						out = editor.newOutputStream(DISK_CACHE_INDEX);
+						out = editor.newOutputStream(SIZE_FULL);
 						bitmap.compress(COMPRESS_FORMAT, COMPRESS_QUALITY, out);
+						clearVariants(editor);
 						editor.commit();
 						out.close();
 						flush();
 					}
 				} else {
-					snapshot.getInputStream(DISK_CACHE_INDEX).close();
+					snapshot.close();
 				}
 			} catch (IOException e) {
 				e.printStackTrace();
@@ -333,6 +374,44 @@ public final class ImageCache implements ComponentCallbacks2 {
 		}
 	}
 
+	/**
+	 * Writes an encoded image directly into the disk cache without decoding or re-encoding it
+	 *
+	 * @param data The key used to store the image
+	 * @param in   stream with the encoded image
+	 * @return true if the image was written to the disk cache, false if the disk cache
+	 * is not available. In this case the stream is not read.
+	 * @throws IOException if the stream could not be read
+	 */
+	public boolean addStreamToDiskCache(String data, InputStream in) throws IOException {
+		if (data == null || mDiskCache == null) {
+			return false;
+		}
+		DiskLruCache.Editor editor = mDiskCache.edit(hashKeyForDisk(data));
+		if (editor == null) {
+			// another thread is writing this entry
+			return false;
+		}
+		OutputStream out = editor.newOutputStream(SIZE_FULL);
+		try {
+			byte[] buffer = new byte[IO_BUFFER_SIZE];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			out.close();
+			// smaller size classes of a previous image are outdated
+			clearVariants(editor);
+			editor.commit();
+			flush();
+			return true;
+		} catch (IOException e) {
+			out.close();
+			editor.abort();
+			throw e;
+		}
+	}
+
 	/**
 	 * Called to add a new image to the memory cache
 	 *
@@ -365,6 +444,20 @@ public final class ImageCache implements ComponentCallbacks2 {
 		return null;
 	}
 
+	/**
+	 * Fetches a cached image of a size class from the memory cache
+	 *
+	 * @param data      Unique identifier for which item to get
+	 * @param sizeClass size class of the image, see {@link #getSizeClass(int, int)}
+	 * @return The {@link Bitmap} if found in cache, null otherwise
+	 */
+	public Bitmap getBitmapFromMemCache(String data, int sizeClass) {
+		if (data == null) {
+			return null;
+		}
+		return getBitmapFromMemCache(getVariantKey(data, sizeClass));
+	}
+
 	/**
 	 * Fetches a cached image from the disk cache
 	 *
@@ -381,36 +474,21 @@ public final class ImageCache implements ComponentCallbacks2 {
 		if (getBitmapFromMemCache(data) != null) {
 			return getBitmapFromMemCache(data);
 		}
+		return getVariantFromDiskCache(data, SIZE_FULL, 0, 0);
+	}
 
-		waitUntilUnpaused();
-		String key = hashKeyForDisk(data);
-		if (mDiskCache != null) {
-			InputStream inputStream = null;
-			try {
-				DiskLruCache.Snapshot snapshot = mDiskCache.get(key);
-				if (snapshot != null) {
-					inputStream = snapshot.getInputStream(DISK_CACHE_INDEX);
-					if (inputStream != null) {
-						Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-						if (bitmap != null) {
-							return bitmap;
-						}
-					}
-				}
-			} catch (IOException e) {
-				e.printStackTrace();
-				Log.e(TAG, "getBitmapFromDiskCache - " + e);
-			} finally {
-				try {
-					if (inputStream != null) {
-						inputStream.close();
-					}
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-		return null;
+	/**
+	 * Fetches a cached image from the disk cache and samples it down to the requested size.
+	 * The smallest size class satisfying the requested size is used, and created first if missing.
+	 *
+	 * @param data      Unique identifier for which item to get
+	 * @param reqWidth  The requested width of the resulting bitmap
+	 * @param reqHeight The requested height of the resulting bitmap
+	 * @return The {@link Bitmap} if found in cache, null otherwise
+	 */
+	@Nullable
+	public Bitmap getBitmapFromDiskCache(String data, int reqWidth, int reqHeight) {
+		return getVariantFromDiskCache(data, getSizeClass(reqWidth, reqHeight), reqWidth, reqHeight);
 	}
 
 	/**
@@ -421,15 +499,31 @@ public final class ImageCache implements ComponentCallbacks2 {
 	 * @return The {@link Bitmap} if found in cache, null otherwise
 	 */
 	public Bitmap getCachedBitmap(String data) {
+		return getCachedBitmap(data, SIZE_FULL);
+	}
+
+	/**
+	 * Tries to return a cached image of a size class from memory cache before fetching from the
+	 * disk cache
+	 *
+	 * @param data      Unique identifier for which item to get
+	 * @param sizeClass size class of the image, see {@link #getSizeClass(int, int)}
+	 * @return The {@link Bitmap} if found in cache, null otherwise
+	 */
+	public Bitmap getCachedBitmap(String data, int sizeClass) {
 		if (data == null) {
 			return null;
 		}
-		Bitmap cachedImage = getBitmapFromDiskCache(data);
-		if (cachedImage != null) {
-			addBitmapToMemCache(data, cachedImage);
-			return cachedImage;
+		String key = getVariantKey(data, sizeClass);
+		Bitmap cachedImage = getBitmapFromMemCache(key);
+		if (cachedImage == null) {
+			int limit = getSizeLimit(sizeClass);
+			cachedImage = getVariantFromDiskCache(data, sizeClass, limit, limit);
+			if (cachedImage != null) {
+				addBitmapToMemCache(key, cachedImage);
+			}
 		}
-		return null;
+		return cachedImage;
 	}
 
 	/**
@@ -442,18 +536,100 @@ public final class ImageCache implements ComponentCallbacks2 {
 	 * @return The artwork for an album
 	 */
 	public Bitmap getCachedArtwork(Context context, String data, long id) {
+		return getCachedArtwork(context, data, id, SIZE_FULL);
+	}
+
+	/**
+	 * Tries to return the album art of a size class from memory cache and disk cache, before
+	 * calling {@code #getArtworkFromFile(Context, String)} again
+	 *
+	 * @param context   The {@link Context} to use
+	 * @param data      The name of the album art
+	 * @param id        The ID of the album to find artwork for
+	 * @param sizeClass size class of the image, see {@link #getSizeClass(int, int)}
+	 * @return The artwork for an album
+	 */
+	public Bitmap getCachedArtwork(Context context, String data, long id, int sizeClass) {
 		if (context == null || data == null) {
 			return null;
 		}
-		Bitmap cachedImage = getCachedBitmap(data);
+		Bitmap cachedImage = getCachedBitmap(data, sizeClass);
 		if (cachedImage == null && id >= 0) {
-			cachedImage = getArtworkFromFile(context, id);
+			int limit = getSizeLimit(sizeClass);
+			cachedImage = getArtworkFromFile(context, id, limit, limit);
+			if (cachedImage != null) {
+				addBitmapToMemCache(getVariantKey(data, sizeClass), cachedImage);
+			}
 		}
-		if (cachedImage != null) {
-			addBitmapToMemCache(data, cachedImage);
-			return cachedImage;
+		return cachedImage;
+	}
+
+	/**
+	 * get the smallest size class containing an image size
+	 *
+	 * @param width  width of the image view in pixels or 0 if unknown
+	 * @param height height of the image view in pixels or 0 if unknown
+	 * @return one of {@link #SIZE_THUMBNAIL}, {@link #SIZE_GRID} or {@link #SIZE_FULL}
+	 */
+	public int getSizeClass(int width, int height) {
+		if (width > 0 && height > 0) {
+			int size = Math.max(width, height);
+			for (int i = 0; i < mSizeLimits.length; i++) {
+				if (size <= mSizeLimits[i]) {
+					return i;
+				}
+			}
 		}
-		return null;
+		return SIZE_FULL;
+	}
+
+	/**
+	 * get the max width and height of a size class
+	 *
+	 * @param sizeClass size class, see {@link #getSizeClass(int, int)}
+	 * @return max size in pixels or 0 if the size is not limited
+	 */
+	public int getSizeLimit(int sizeClass) {
+		if (sizeClass >= 0 && sizeClass < mSizeLimits.length) {
+			return mSizeLimits[sizeClass];
+		}
+		return 0;
+	}
+
+	/**
+	 * get the blurred version of a cached image. The blurred image is cached under its own key,
+	 * so it is only created once. This should not be called from the main thread
+	 *
+	 * @param data   The key of the original image
+	 * @param bitmap The original image, used if there is no blurred image in the cache
+	 * @return the blurred image or null if the original image is null
+	 */
+	@Nullable
+	public Bitmap getBlurredBitmap(String data, @Nullable Bitmap bitmap) {
+		if (data == null) {
+			return null;
+		}
+		String blurKey = getBlurKey(data);
+		Bitmap blur = getCachedBitmap(blurKey);
+		if (blur == null && bitmap != null) {
+			blur = BitmapUtils.createBlurredBitmap(bitmap);
+			addBitmapToCache(blurKey, blur);
+		}
+		return blur;
+	}
+
+	/**
+	 * get the blurred version of an image from the memory cache only
+	 *
+	 * @param data The key of the original image
+	 * @return the blurred image or null if not in the memory cache
+	 */
+	@Nullable
+	public Bitmap getBlurredBitmapFromMemCache(String data) {
+		if (data == null) {
+			return null;
+		}
+		return getBitmapFromMemCache(getBlurKey(data));
 	}
 
 	/**
@@ -464,6 +640,20 @@ public final class ImageCache implements ComponentCallbacks2 {
 	 */
 	@Nullable
 	public Bitmap getArtworkFromFile(Context context, long albumId) {
+		return getArtworkFromFile(context, albumId, 0, 0);
+	}
+
+	/**
+	 * Used to fetch the artwork for an album locally from the user's device
+	 * and sample it down to the requested size
+	 *
+	 * @param context   The {@link Context} to use
+	 * @param reqWidth  The requested width of the resulting bitmap or 0 to decode the full image
+	 * @param reqHeight The requested height of the resulting bitmap or 0 to decode the full image
+	 * @return The artwork for an album
+	 */
+	@Nullable
+	public Bitmap getArtworkFromFile(Context context, long albumId, int reqWidth, int reqHeight) {
 		if (albumId < 0) {
 			return null;
 		}
@@ -475,7 +665,7 @@ public final class ImageCache implements ComponentCallbacks2 {
 			ParcelFileDescriptor fileDescr = context.getContentResolver().openFileDescriptor(uri, "r");
 			if (fileDescr != null) {
 				FileDescriptor fileDescriptor = fileDescr.getFileDescriptor();
-				artwork = BitmapFactory.decodeFileDescriptor(fileDescriptor);
+				artwork = decodeFileDescriptor(fileDescriptor, reqWidth, reqHeight);
 				fileDescr.close();
 			}
 		} catch (OutOfMemoryError e) {
@@ -488,6 +678,33 @@ public final class ImageCache implements ComponentCallbacks2 {
 		return artwork;
 	}
 
+	/**
+	 * Decodes an image from a file descriptor.
+	 * The image size is read first, so only the sampled image is decoded.
+	 *
+	 * @param fileDescriptor The file descriptor of the image
+	 * @param reqWidth       The requested width of the resulting bitmap or 0 to decode the full image
+	 * @param reqHeight      The requested height of the resulting bitmap or 0 to decode the full image
+	 * @return The decoded {@link Bitmap} or null if the file is not an image
+	 */
+	@Nullable
+	public static Bitmap decodeFileDescriptor(FileDescriptor fileDescriptor, int reqWidth, int reqHeight) {
+		// First decode with inJustDecodeBounds=true to check dimensions
+		// the decoder restores the file offset after every decode
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+		if (options.outWidth <= 0 || options.outHeight <= 0) {
+			return null;
+		}
+		// decode bitmap with inSampleSize set
+		if (reqWidth > 0 && reqHeight > 0) {
+			options.inSampleSize = ImageFetcher.calculateInSampleSize(options, reqWidth, reqHeight);
+		}
+		options.inJustDecodeBounds = false;
+		return BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+	}
+
 	/**
 	 * flush() is called to synchronize up other methods that are accessing the
 	 * cache first
@@ -551,15 +768,20 @@ public final class ImageCache implements ComponentCallbacks2 {
 		if (key == null) {
 			return;
 		}
-		// Remove the Lru entry
+		String blurKey = getBlurKey(key);
+		// Remove the Lru entries of all size classes
 		if (mLruCache != null) {
-			mLruCache.remove(key);
+			for (int i = 0; i < SIZE_COUNT; i++) {
+				mLruCache.remove(getVariantKey(key, i));
+			}
+			mLruCache.remove(blurKey);
 		}
 
 		try {
-			// Remove the disk entry
+			// Remove the disk entries
 			if (mDiskCache != null) {
 				mDiskCache.remove(hashKeyForDisk(key));
+				mDiskCache.remove(hashKeyForDisk(blurKey));
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -568,6 +790,103 @@ public final class ImageCache implements ComponentCallbacks2 {
 		flush();
 	}
 
+	/**
+	 * get the memory cache key of a size class of an image
+	 */
+	static String getVariantKey(String key, int sizeClass) {
+		return key + SIZE_KEY_SUFFIX[sizeClass];
+	}
+
+	/**
+	 * read a size class of an image from the disk cache. If the size class doesn't exist yet,
+	 * it is created from the smallest larger size class and stored in the same entry
+	 */
+	@Nullable
+	private Bitmap getVariantFromDiskCache(String data, int sizeClass, int reqWidth, int reqHeight) {
+		DiskLruCache diskCache = mDiskCache;
+		if (data == null || diskCache == null) {
+			return null;
+		}
+		waitUntilUnpaused();
+		String key = hashKeyForDisk(data);
+		DiskLruCache.Snapshot snapshot = null;
+		try {
+			snapshot = diskCache.get(key);
+			if (snapshot != null) {
+				// empty values are size classes which are not created yet
+				for (int i = sizeClass; i < SIZE_COUNT; i++) {
+					FileInputStream in = (FileInputStream) snapshot.getInputStream(i);
+					if (in.getChannel().size() > 0) {
+						if (i == sizeClass) {
+							return decodeFileDescriptor(in.getFD(), reqWidth, reqHeight);
+						}
+						int limit = getSizeLimit(sizeClass);
+						Bitmap bitmap = decodeFileDescriptor(in.getFD(), limit, limit);
+						if (bitmap != null) {
+							writeVariant(diskCache, key, sizeClass, bitmap);
+						}
+						return bitmap;
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			Log.e(TAG, "getBitmapFromDiskCache - " + e);
+		} finally {
+			if (snapshot != null) {
+				snapshot.close();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * store a size class of an image in its existing disk cache entry
+	 */
+	private void writeVariant(DiskLruCache diskCache, String key, int sizeClass, Bitmap bitmap) {
+		try {
+			DiskLruCache.Editor editor = diskCache.edit(key);
+			// skip if another thread is writing this entry
+			if (editor != null) {
+				OutputStream out = null;
+				try {
+					out = editor.newOutputStream(sizeClass);
+				} finally {
+					if (out == null) {
+						editor.abort();
+					}
+				}
+				// the output stream doesn't throw, errors abort the edit on commit
+				bitmap.compress(COMPRESS_FORMAT, COMPRESS_QUALITY, out);
+				out.close();
+				editor.commit();
+				flush();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			Log.e(TAG, "writeVariant - " + e);
+		} catch (IllegalStateException e) {
+			// entry was removed in the meantime
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * write empty values for the smaller size classes of a new full size image, so they are created again when needed
+	 */
+	private static void clearVariants(DiskLruCache.Editor editor) throws IOException {
+		for (int i = 0; i < SIZE_FULL; i++) {
+			editor.newOutputStream(i).close();
+		}
+	}
+
+	/**
+	 * get the cache key of the blurred version of an image
+	 */
+	private static String getBlurKey(String key) {
+		return key + BLUR_KEY_SUFFIX;
+	}
+
 	/**
 	 * Used to temporarily pause the disk cache while the user is scrolling to
 	 * improve scrolling.
@@ -610,14 +929,14 @@ public final class ImageCache implements ComponentCallbacks2 {
 	}
 
 	/**
-	 * Used to cache images via {@link LruCache}.
+	 * Used to cache images via {@link ClockCache}.
 	 */
-	public static class MemoryCache extends LruCache<String, Bitmap> {
+	public static class MemoryCache extends ClockCache<String, Bitmap> {
 
 		/**
 		 * Constructor of <code>MemoryCache</code>
 		 *
-		 * @param maxSize The allowed size of the {@link LruCache}
+		 * @param maxSize The allowed size of the {@link ClockCache}
 		 */
 		public MemoryCache(int maxSize) {
 			super(maxSize);
@@ -627,6 +946,9 @@ public final class ImageCache implements ComponentCallbacks2 {
 		 * Get the size in bytes of a bitmap.
 		 */
 		public static int getBitmapSize(Bitmap bitmap) {
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+				return bitmap.getAllocationByteCount();
+			}
 			return bitmap.getByteCount();
 		}
 
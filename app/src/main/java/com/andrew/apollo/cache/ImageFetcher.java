@@ -27,29 +27,29 @@ import com.andrew.apollo.MusicPlaybackService;
 import com.andrew.apollo.R;
 import com.andrew.apollo.lastfm.Album;
 import com.andrew.apollo.lastfm.Artist;
+import com.andrew.apollo.lastfm.Caller;
 import com.andrew.apollo.lastfm.ImageSize;
 import com.andrew.apollo.lastfm.MusicEntry;
+import com.andrew.apollo.lastfm.ResponseCache;
 import com.andrew.apollo.utils.MusicUtils;
 import com.andrew.apollo.utils.PreferenceUtils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 
-import javax.net.ssl.HttpsURLConnection;
-
 /**
  * A subclass of {@link ImageWorker} that fetches images from a URL.
  */
 public class ImageFetcher extends ImageWorker {
 	/**
-	 *
+	 * buffer size used to read downloaded images
 	 */
-	public static final int IO_BUFFER_SIZE_BYTES = 1024;
+	private static final int IO_BUFFER_SIZE_BYTES = 8192;
 	/**
 	 *
 	 */
@@ -59,13 +59,9 @@ public class ImageFetcher extends ImageWorker {
 	 */
 	private static final int DEFAULT_MAX_IMAGE_WIDTH = 1024;
 	/**
-	 * size of the artist/album art of the notification image
+	 * folder name of the Last.fm response cache
 	 */
-	private static final int NOTIFICATION_SIZE = 200;
-	/**
-	 * location folder name of the image cache
-	 */
-	private static final String DEFAULT_CACHE_DIR = "download";
+	private static final String LASTFM_CACHE_DIR = "lastfm";
 
 	private static final ImageSize[] QUALITY = {
 			ImageSize.MEGA, ImageSize.EXTRALARGE, ImageSize.LARGE,
@@ -80,6 +76,8 @@ public class ImageFetcher extends ImageWorker {
 	 */
 	private ImageFetcher(Context context) {
 		super(context);
+		// cache Last.fm responses, so artists and albums are not looked up on every image load
+		Caller.getInstance().setCache(new ResponseCache(new File(context.getCacheDir(), LASTFM_CACHE_DIR)));
 	}
 
 	/**
@@ -107,48 +105,26 @@ public class ImageFetcher extends ImageWorker {
 	}
 
 	/**
-	 * Download a {@link Bitmap} from a URL, write it to a disk and return the
-	 * File pointer. This implementation uses a simple disk cache.
+	 * Decode and sample down a {@link Bitmap} from a file to the requested
+	 * width and height.
 	 *
-	 * @param context   The context to use
-	 * @param urlString The URL to fetch
-	 * @return A {@link File} pointing to the fetched bitmap
+	 * @param filename The full path of the file to decode
+	 * @return A {@link Bitmap} sampled down from the original with the same
+	 * aspect ratio and dimensions that are equal to or greater than the
+	 * requested width and height
 	 */
-	public static File downloadBitmapToFile(Context context, String urlString, String uniqueName) {
-		File cacheDir = ImageCache.getDiskCacheDir(context, uniqueName);
-
-		if (!cacheDir.exists()) {
-			cacheDir.mkdir();
-		}
-
-		HttpsURLConnection urlConnection = null;
-		BufferedOutputStream out = null;
-
+	@Nullable
+	public static Bitmap decodeSampledBitmapFromFile(String filename) {
+		FileInputStream in = null;
 		try {
-			File tempFile = File.createTempFile("bitmap", null, cacheDir); //$NON-NLS-1$
-
-			URL url = new URL(urlString);
-			urlConnection = (HttpsURLConnection) url.openConnection();
-			if (urlConnection.getResponseCode() != HttpsURLConnection.HTTP_OK) {
-				return null;
-			}
-			InputStream in = new BufferedInputStream(urlConnection.getInputStream(), IO_BUFFER_SIZE_BYTES);
-			out = new BufferedOutputStream(new FileOutputStream(tempFile), IO_BUFFER_SIZE_BYTES);
-
-			int oneByte;
-			while ((oneByte = in.read()) != -1) {
-				out.write(oneByte);
-			}
-			return tempFile;
+			in = new FileInputStream(filename);
+			return ImageCache.decodeFileDescriptor(in.getFD(), DEFAULT_MAX_IMAGE_WIDTH, DEFAULT_MAX_IMAGE_HEIGHT);
 		} catch (IOException e) {
 			e.printStackTrace();
 		} finally {
-			if (urlConnection != null) {
-				urlConnection.disconnect();
-			}
-			if (out != null) {
+			if (in != null) {
 				try {
-					out.close();
+					in.close();
 				} catch (IOException e) {
 					e.printStackTrace();
 				}
@@ -157,31 +133,6 @@ public class ImageFetcher extends ImageWorker {
 		return null;
 	}
 
-	/**
-	 * Decode and sample down a {@link Bitmap} from a file to the requested
-	 * width and height.
-	 *
-	 * @param filename The full path of the file to decode
-	 * @return A {@link Bitmap} sampled down from the original with the same
-	 * aspect ratio and dimensions that are equal to or greater than the
-	 * requested width and height
-	 */
-	public static Bitmap decodeSampledBitmapFromFile(String filename) {
-
-		// First decode with inJustDecodeBounds=true to check dimensions
-		BitmapFactory.Options options = new BitmapFactory.Options();
-		options.inJustDecodeBounds = true;
-		BitmapFactory.decodeFile(filename, options);
-
-		// Calculate inSampleSize
-		options.inSampleSize = calculateInSampleSize(options, DEFAULT_MAX_IMAGE_WIDTH,
-				DEFAULT_MAX_IMAGE_HEIGHT);
-
-		// Decode bitmap with inSampleSize set
-		options.inJustDecodeBounds = false;
-		return BitmapFactory.decodeFile(filename, options);
-	}
-
 	/**
 	 * Calculate an inSampleSize for use in a
 	 * {@link android.graphics.BitmapFactory.Options} object when decoding
@@ -249,18 +200,63 @@ public class ImageFetcher extends ImageWorker {
 
 	/**
 	 * {@inheritDoc}
+	 * The image is streamed directly into the disk cache and decoded from there,
+	 * so there is no temporary file and the image is not encoded again.
 	 */
 	@Override
-	public Bitmap processBitmap(String url) {
+	public Bitmap processBitmap(String key, String url, int sizeClass) {
 		if (url == null) {
 			return null;
 		}
-		File file = downloadBitmapToFile(mContext, url, DEFAULT_CACHE_DIR);
-		if (file != null) {
-			// Return a sampled down version
-			Bitmap bitmap = decodeSampledBitmapFromFile(file.toString());
-			file.delete();
-			return bitmap;
+		// decode the image only as large as the size class
+		int reqWidth = DEFAULT_MAX_IMAGE_WIDTH;
+		int reqHeight = DEFAULT_MAX_IMAGE_HEIGHT;
+		if (mImageCache != null && mImageCache.getSizeLimit(sizeClass) > 0) {
+			reqWidth = reqHeight = mImageCache.getSizeLimit(sizeClass);
+		}
+		HttpURLConnection connection = null;
+		InputStream in = null;
+		try {
+			connection = (HttpURLConnection) new URL(url).openConnection();
+			if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+				return null;
+			}
+			in = connection.getInputStream();
+			if (mImageCache != null && mImageCache.addStreamToDiskCache(key, in)) {
+				Bitmap bitmap = mImageCache.getBitmapFromDiskCache(key, reqWidth, reqHeight);
+				if (bitmap == null) {
+					// downloaded file is not an image
+					mImageCache.removeFromCache(key);
+				}
+				return bitmap;
+			}
+			// disk cache is not available, decode image from memory
+			ByteArrayOutputStream out = new ByteArrayOutputStream(IO_BUFFER_SIZE_BYTES);
+			byte[] buffer = new byte[IO_BUFFER_SIZE_BYTES];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			byte[] data = out.toByteArray();
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inJustDecodeBounds = true;
+			BitmapFactory.decodeByteArray(data, 0, data.length, options);
+			options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+			options.inJustDecodeBounds = false;
+			return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			if (connection != null) {
+				connection.disconnect();
+			}
 		}
 		return null;
 	}
@@ -353,48 +349,54 @@ public class ImageFetcher extends ImageWorker {
 	 * @param keyId     The key (album id) used to find the album art to return
 	 */
 	public Bitmap getCachedArtwork(String keyAlbum, String keyArtist, long keyId) {
+		return getCachedArtwork(keyAlbum, keyArtist, keyId, ImageCache.SIZE_FULL);
+	}
+
+	/**
+	 * @param keyAlbum  The key (album name) used to find the album art to return
+	 * @param keyArtist The key (artist name) used to find the album art to return
+	 * @param keyId     The key (album id) used to find the album art to return
+	 * @param sizeClass size class of the album art, see {@link ImageCache#getSizeClass(int, int)}
+	 */
+	public Bitmap getCachedArtwork(String keyAlbum, String keyArtist, long keyId, int sizeClass) {
 		if (mImageCache != null) {
 			String key = generateAlbumCacheKey(keyAlbum, keyArtist);
-			return mImageCache.getCachedArtwork(mContext, key, keyId);
+			return mImageCache.getCachedArtwork(mContext, key, keyId, sizeClass);
 		}
 		return getDefaultArtwork();
 	}
 
 	/**
-	 * Finds cached or downloads album art. Used in {@link MusicPlaybackService}
-	 * to set the current album art in the notification and lock screen
+	 * Finds cached album art. Used in {@link ArtworkHolder}
+	 * to set the current album art in the notification and widgets
 	 *
 	 * @param albumName  The name of the current album
 	 * @param albumId    The ID of the current album
-	 * @param artistName The album artist in case we should have to download
-	 *                   missing artwork
-	 * @return The album art as an {@link Bitmap}
+	 * @param artistName The album artist
+	 * @param size       The size in pixels the image is sampled down to
+	 * @return The album art as an {@link Bitmap} or null if there is no artwork yet
 	 */
 	@Nullable
-	public Bitmap getArtwork(String albumName, long albumId, String artistName) {
+	public Bitmap getArtwork(String albumName, long albumId, String artistName, int size) {
 		// Check the disk cache
 		Bitmap artwork = null;
 		if (mImageCache != null) {
 			if (albumName != null) {
-				artwork = mImageCache.getBitmapFromDiskCache(generateAlbumCacheKey(albumName, artistName));
+				artwork = mImageCache.getBitmapFromDiskCache(generateAlbumCacheKey(albumName, artistName), size, size);
 			}
 			if (artwork == null && albumId >= 0) {
 				// Check for local artwork
-				artwork = mImageCache.getArtworkFromFile(mContext, albumId);
+				artwork = mImageCache.getArtworkFromFile(mContext, albumId, size, size);
 			}
 		}
-		if (artwork == null) {
-			artwork = getDefaultArtwork();
-		}
-		if (artwork == null) {
-			return null;
-		}
-		// scale down image
-		return Bitmap.createScaledBitmap(artwork, NOTIFICATION_SIZE, NOTIFICATION_SIZE, false);
+		return artwork;
 	}
 
-
-	private Bitmap getDefaultArtwork() {
+	/**
+	 * @return artwork shown if an album has no artwork
+	 */
+	@Nullable
+	Bitmap getDefaultArtwork() {
 		Drawable bitmap = ResourcesCompat.getDrawable(mContext.getResources(), R.drawable.default_artwork, null);
 		if (bitmap != null)
 			return ((BitmapDrawable) bitmap).getBitmap();
@@ -0,0 +1,369 @@
+package com.andrew.apollo.cache;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import com.andrew.apollo.utils.ApolloUtils;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler used to load images into {@link android.widget.ImageView}s.
+ * Every request runs through separate thread pools ("lanes"): disk cache and local artwork,
+ * network download and image processing, so slow downloads don't block cached images.
+ * Waiting requests are executed last-in first-out, so the most recently bound views load first.
+ * If a lane queue is full, the oldest waiting request is dropped.
+ * Requests for the same key and blur are merged and requests without any remaining view are cancelled.
+ */
+public class ImageScheduler {
+
+	/**
+	 * number of threads loading images from the disk cache or the MediaStore
+	 */
+	private static final int DISK_THREADS = 2;
+
+	/**
+	 * number of threads downloading images
+	 */
+	private static final int NETWORK_THREADS = 2;
+
+	/**
+	 * number of threads processing loaded images
+	 */
+	private static final int PROCESS_THREADS = 1;
+
+	/**
+	 * max number of waiting requests per lane
+	 */
+	private static final int MAX_QUEUED = 48;
+
+	/**
+	 * time in seconds to keep idle threads
+	 */
+	private static final long KEEP_ALIVE = 10;
+
+	/**
+	 * request stages, every stage runs in its own lane
+	 */
+	private static final int STAGE_DISK = 0;
+	private static final int STAGE_NETWORK = 1;
+	private static final int STAGE_PROCESS = 2;
+
+	/**
+	 * suffix of the keys of requests which also blur the image
+	 */
+	private static final String BLUR_SUFFIX = "#blur";
+
+	/**
+	 * singleton instance
+	 */
+	private static ImageScheduler singleton;
+
+	private final ThreadPoolExecutor mDiskLane;
+	private final ThreadPoolExecutor mNetworkLane;
+	private final ThreadPoolExecutor mProcessLane;
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * requests in progress mapped by image key and size class, only used on the main thread
+	 */
+	private final Map<String, Request> mRequests = new HashMap<>();
+
+	/**
+	 *
+	 */
+	private ImageScheduler() {
+		mDiskLane = createLane("ImageDisk", DISK_THREADS);
+		mNetworkLane = createLane("ImageNetwork", NETWORK_THREADS);
+		mProcessLane = createLane("ImageProcess", PROCESS_THREADS);
+	}
+
+	/**
+	 * create singleton instance
+	 *
+	 * @return singleton instance of this class
+	 */
+	public static synchronized ImageScheduler getInstance() {
+		if (singleton == null) {
+			singleton = new ImageScheduler();
+		}
+		return singleton;
+	}
+
+	/**
+	 * start loading an image. If the same image is already loading, the tag is added to the running request
+	 *
+	 * @param tag        tag of the image views to update
+	 * @param worker     worker used to load the image
+	 * @param imageType  type of the image
+	 * @param artistName artist name used to download the image
+	 * @param albumName  album name used to download the image
+	 * @param albumId    album ID used to find local artwork
+	 */
+	@MainThread
+	void load(ImageAsyncTag tag, ImageWorker worker, ImageWorker.ImageType imageType, String artistName, String albumName, long albumId) {
+		// requests with and without blur are not merged, a running request may have already passed the blur step
+		Request request = mRequests.get(getRequestKey(tag));
+		if (request == null) {
+			request = new Request(worker, tag.getTag(), tag.getSizeClass(), tag.hasBlurLayer(), imageType, artistName, albumName, albumId);
+			mRequests.put(request.requestKey, request);
+			mDiskLane.execute(request);
+		}
+		request.targets.add(tag);
+	}
+
+	/**
+	 * remove a tag from its request. If no tag is left, the request is cancelled
+	 *
+	 * @param tag tag of the recycled image views
+	 */
+	@MainThread
+	void cancel(ImageAsyncTag tag) {
+		String requestKey = getRequestKey(tag);
+		Request request = mRequests.get(requestKey);
+		if (request != null && request.targets.remove(tag) && request.targets.isEmpty()) {
+			request.cancelled = true;
+			mRequests.remove(requestKey);
+			mDiskLane.remove(request);
+			mNetworkLane.remove(request);
+			mProcessLane.remove(request);
+		}
+	}
+
+	/**
+	 * get the key of the request of a tag
+	 */
+	private static String getRequestKey(ImageAsyncTag tag) {
+		String requestKey = ImageCache.getVariantKey(tag.getTag(), tag.getSizeClass());
+		if (tag.hasBlurLayer()) {
+			return requestKey + BLUR_SUFFIX;
+		}
+		return requestKey;
+	}
+
+	/**
+	 * run the current stage of a request
+	 */
+	private void runStage(Request request) {
+		ImageCache cache = request.worker.getImageCache();
+		switch (request.stage) {
+			case STAGE_DISK:
+				// First, check the disk cache for the image
+				Bitmap bitmap = null;
+				if (cache != null) {
+					bitmap = cache.getCachedBitmap(request.key, request.sizeClass);
+					// Second, if we're fetching artwork, check the device for the image
+					if (bitmap == null && request.albumId >= 0 && !request.cancelled) {
+						bitmap = cache.getCachedArtwork(request.worker.getContext(), request.key, request.albumId, request.sizeClass);
+					}
+				}
+				if (bitmap != null) {
+					request.bitmap = bitmap;
+					next(request, STAGE_PROCESS);
+				} else if (ApolloUtils.isOnline(request.worker.getContext())) {
+					next(request, STAGE_NETWORK);
+				} else {
+					finish(request);
+				}
+				break;
+
+			case STAGE_NETWORK:
+				// Third, by now we need to download the image
+				String albumName = request.albumName != null ? request.albumName : request.artistName;
+				String url = request.worker.processImageUrl(request.artistName, albumName, request.imageType);
+				if (url != null && !request.cancelled) {
+					request.bitmap = request.worker.processBitmap(request.key, url, request.sizeClass);
+				}
+				if (request.bitmap != null) {
+					next(request, STAGE_PROCESS);
+				} else {
+					finish(request);
+				}
+				break;
+
+			case STAGE_PROCESS:
+				// Fourth, add the new image to the cache, downloaded images are already in the disk cache
+				request.worker.addBitmapToCache(request.key, request.bitmap, request.sizeClass);
+				// blur the image only if a view needs it, blurred images are cached separately
+				if (request.blur && cache != null && !request.cancelled) {
+					request.blurBitmap = cache.getBlurredBitmap(request.key, request.bitmap);
+				}
+				finish(request);
+				break;
+		}
+	}
+
+	/**
+	 * move a request to the lane of the next stage
+	 */
+	private void next(Request request, int stage) {
+		request.stage = stage;
+		if (!request.cancelled) {
+			if (stage == STAGE_NETWORK) {
+				mNetworkLane.execute(request);
+			} else {
+				mProcessLane.execute(request);
+			}
+		}
+	}
+
+	/**
+	 * deliver the result of a request to all image views
+	 */
+	private void finish(final Request request) {
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (mRequests.get(request.requestKey) == request) {
+					mRequests.remove(request.requestKey);
+				}
+				if (!request.cancelled && request.bitmap != null) {
+					for (ImageAsyncTag tag : request.targets) {
+						tag.setImage(request.bitmap, request.blurBitmap);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * drop a waiting request because its lane is full
+	 */
+	private void drop(final Request request) {
+		request.cancelled = true;
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (mRequests.get(request.requestKey) == request) {
+					mRequests.remove(request.requestKey);
+				}
+				// allow the views to request the image again
+				for (ImageAsyncTag tag : request.targets) {
+					tag.reset();
+				}
+			}
+		});
+	}
+
+	/**
+	 * create a thread pool with a last-in first-out queue and background threads
+	 */
+	private ThreadPoolExecutor createLane(final String name, int threads) {
+		ThreadFactory factory = new ThreadFactory() {
+
+			private int count = 0;
+
+			@Override
+			public Thread newThread(@NonNull final Runnable runnable) {
+				return new Thread(new Runnable() {
+					@Override
+					public void run() {
+						Process.setThreadPriority(THREAD_PRIORITY_BACKGROUND);
+						runnable.run();
+					}
+				}, name + "-" + ++count);
+			}
+		};
+		ThreadPoolExecutor lane = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS, new LifoQueue(), factory);
+		lane.allowCoreThreadTimeOut(true);
+		return lane;
+	}
+
+	/**
+	 * bounded queue returning the newest request first. If the queue is full, the oldest request is dropped
+	 */
+	private final class LifoQueue extends LinkedBlockingDeque<Runnable> {
+
+		private static final long serialVersionUID = 1L;
+
+		LifoQueue() {
+			super(MAX_QUEUED);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean offer(@NonNull Runnable runnable) {
+			while (!offerFirst(runnable)) {
+				Runnable oldest = pollLast();
+				if (oldest instanceof Request) {
+					drop((Request) oldest);
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * image request running through the lanes
+	 */
+	private final class Request implements Runnable {
+
+		final ImageWorker worker;
+		final String key;
+		final int sizeClass;
+		final boolean blur;
+		/**
+		 * key of the request, the same image can be requested in different size classes, with or without blur
+		 */
+		final String requestKey;
+		final ImageWorker.ImageType imageType;
+		final String artistName;
+		final String albumName;
+		final long albumId;
+
+		/**
+		 * tags waiting for this image, only used on the main thread
+		 */
+		final List<ImageAsyncTag> targets = new LinkedList<>();
+
+		volatile int stage = STAGE_DISK;
+		volatile boolean cancelled = false;
+		volatile Bitmap bitmap;
+		volatile Bitmap blurBitmap;
+
+		Request(ImageWorker worker, String key, int sizeClass, boolean blur, ImageWorker.ImageType imageType, String artistName, String albumName, long albumId) {
+			this.worker = worker;
+			this.key = key;
+			this.sizeClass = sizeClass;
+			this.blur = blur;
+			String variantKey = ImageCache.getVariantKey(key, sizeClass);
+			this.requestKey = blur ? variantKey + BLUR_SUFFIX : variantKey;
+			this.imageType = imageType;
+			this.artistName = artistName;
+			this.albumName = albumName;
+			this.albumId = albumId;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			if (cancelled)
+				return;
+			try {
+				runStage(this);
+			} catch (Exception e) {
+				e.printStackTrace();
+				finish(this);
+			}
+		}
+	}
+}
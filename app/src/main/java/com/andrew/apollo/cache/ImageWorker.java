@@ -13,12 +13,14 @@ package com.andrew.apollo.cache;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.GridView;
 import android.widget.ImageView;
 
 import androidx.annotation.Nullable;
 
-import com.andrew.apollo.utils.BitmapUtils;
-
 /**
  * This class wraps up completing some arbitrary long running work when loading
  * a {@link Bitmap} to an {@link ImageView}. It handles things like using a
@@ -98,6 +100,18 @@ public abstract class ImageWorker {
 		}
 	}
 
+	/**
+	 * Adds a new image of a size class to the caches
+	 *
+	 * @param bitmap    The {@link Bitmap} to cache
+	 * @param sizeClass size class of the image, see {@link ImageCache#getSizeClass(int, int)}
+	 */
+	public void addBitmapToCache(String key, Bitmap bitmap, int sizeClass) {
+		if (mImageCache != null) {
+			mImageCache.addBitmapToCache(key, bitmap, sizeClass);
+		}
+	}
+
 	/**
 	 * @return reference to the image cache
 	 */
@@ -127,36 +141,79 @@ public abstract class ImageWorker {
 	@SuppressWarnings("SameParameterValue")
 	protected void loadImage(String key, String artistName, String albumName, long albumId, ImageType imageType, ImageView... imageviews) {
 		if (key != null && mImageCache != null && imageviews.length > 0) {
+			// use the smallest image size fitting into the image view
+			int sizeClass = getSizeClass(imageviews[0]);
 			// First, check the cache for the image
-			Bitmap lruBitmap = mImageCache.getBitmapFromMemCache(key);
-			if (lruBitmap != null) {
+			Bitmap lruBitmap = mImageCache.getBitmapFromMemCache(key, sizeClass);
+			// a blurred image for the second view is cached separately
+			Bitmap lruBlur = null;
+			if (lruBitmap != null && imageviews.length > 1) {
+				lruBlur = mImageCache.getBlurredBitmapFromMemCache(key);
+			}
+			if (lruBitmap != null && (imageviews.length == 1 || lruBlur != null)) {
+				// stop loading a previous image into this view
+				Object tag = imageviews[0].getTag();
+				if (tag instanceof ImageAsyncTag) {
+					((ImageAsyncTag) tag).cancel();
+					imageviews[0].setTag(null);
+				}
 				// Bitmap found in memory cache
 				imageviews[0].setImageBitmap(lruBitmap);
 				// add blurring to the second image if defined
-				if (imageviews.length > 1) {
-					Bitmap blur = BitmapUtils.createBlurredBitmap(lruBitmap);
-					imageviews[1].setImageBitmap(blur);
+				if (lruBlur != null) {
+					imageviews[1].setImageBitmap(lruBlur);
 				}
 			}
-			// check storage for image or download
+			// check storage for image or download, or create the blurred image in the background
 			else if (executePotentialWork(key, imageviews[0]) && !mImageCache.isDiskCachePaused()) {
+				if (lruBitmap != null) {
+					// show the image while the blurred image is loading
+					imageviews[0].setImageBitmap(lruBitmap);
+				}
 				// Otherwise run the worker task
-				ImageAsyncTag asyncTag = new ImageAsyncTag(this, key, imageType, imageviews);
+				ImageAsyncTag asyncTag = new ImageAsyncTag(this, key, imageType, sizeClass, imageviews);
 				imageviews[0].setTag(asyncTag);
 				asyncTag.run(artistName, albumName, albumId);
 			}
 		}
 	}
 
+	/**
+	 * get the size class of the images of an image view. If the view isn't laid out yet,
+	 * the fixed size of its layout or the column width of the parent grid is used
+	 */
+	private int getSizeClass(ImageView imageView) {
+		int width = imageView.getWidth();
+		int height = imageView.getHeight();
+		ViewGroup.LayoutParams params = imageView.getLayoutParams();
+		if ((width <= 0 || height <= 0) && params != null && params.width > 0 && params.height > 0) {
+			width = params.width;
+			height = params.height;
+		}
+		if (width <= 0 || height <= 0) {
+			// grid items are square and as wide as a column
+			for (ViewParent parent = imageView.getParent(); parent instanceof View; parent = parent.getParent()) {
+				if (parent instanceof GridView && ((GridView) parent).getWidth() > 0) {
+					GridView grid = (GridView) parent;
+					width = height = grid.getWidth() / Math.max(grid.getNumColumns(), 1);
+					break;
+				}
+			}
+		}
+		return mImageCache.getSizeClass(width, height);
+	}
+
 	/**
 	 * Subclasses should override this to define any processing or work that
 	 * must happen to produce the final {@link Bitmap}. This will be executed in
 	 * a background thread and be long running.
 	 *
-	 * @param key The key to identify which image to process, as provided by
+	 * @param key       The cache key of the image, used to store the image in the disk cache
+	 * @param url       The URL of the image to process
+	 * @param sizeClass size class of the image, see {@link ImageCache#getSizeClass(int, int)}
 	 * @return The processed {@link Bitmap}.
 	 */
-	public abstract Bitmap processBitmap(String key);
+	public abstract Bitmap processBitmap(String key, String url, int sizeClass);
 
 	/**
 	 * Subclasses should override this to define any processing or work that
@@ -0,0 +1,401 @@
+package com.andrew.apollo.cache;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.MessageQueue.IdleHandler;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+import com.andrew.apollo.cache.ImageWorker.ImageType;
+import com.andrew.apollo.model.Album;
+import com.andrew.apollo.model.Artist;
+import com.andrew.apollo.provider.LibraryIndex;
+import com.andrew.apollo.utils.ApolloUtils;
+import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.utils.MusicUtils;
+import com.andrew.apollo.utils.PreferenceUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * background prefetcher for artwork and library information of items which will likely be viewed next.
+ * Items are scored by frecency, using the upcoming tracks of the queue, the recently played albums and the
+ * most played tracks. The best items are loaded into the image caches and the library index while the app is idle.
+ * The size of the loaded images and the battery usage are limited by the settings, images are only downloaded while charging.
+ */
+public class Prefetcher {
+
+	/**
+	 * delay after the activity resumed before waiting for the main thread to become idle
+	 */
+	private static final long START_DELAY = 5000;
+
+	/**
+	 * min time between two prefetches (15 minutes)
+	 */
+	private static final long MIN_INTERVAL = 900000;
+
+	/**
+	 * number of upcoming tracks of the queue to use
+	 */
+	private static final int QUEUE_LOOKAHEAD = 8;
+
+	/**
+	 * max number of recent albums to use
+	 */
+	private static final int RECENT_LIMIT = 20;
+
+	/**
+	 * max number of most played tracks to use
+	 */
+	private static final int POPULAR_LIMIT = 100;
+
+	/**
+	 * max number of items to prefetch
+	 */
+	private static final int MAX_CANDIDATES = 40;
+
+	/**
+	 * time after the score of a recent album is halved (3 days)
+	 */
+	private static final double RECENT_HALF_LIFE = 259200000.0;
+
+	/**
+	 * max scores of the item sources
+	 */
+	private static final float WEIGHT_QUEUE = 100.0f;
+	private static final float WEIGHT_RECENT = 50.0f;
+	private static final float WEIGHT_POPULAR_ALBUM = 40.0f;
+	private static final float WEIGHT_POPULAR_ARTIST = 30.0f;
+
+	/**
+	 * singleton instance
+	 */
+	private static Prefetcher singleton;
+
+	private final Context mContext;
+
+	/**
+	 * handler of the background thread
+	 */
+	private final Handler mHandler;
+
+	/**
+	 * handler of the main thread
+	 */
+	private final Handler mMainHandler;
+
+	/**
+	 * true if a prefetch is scheduled or running
+	 */
+	private volatile boolean mScheduled = false;
+
+	/**
+	 * time of the last prefetch
+	 */
+	private volatile long mLastRun = -MIN_INTERVAL;
+
+	/**
+	 * starts the prefetch in the background
+	 */
+	private final Runnable mPrefetchTask = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				prefetch();
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				mLastRun = SystemClock.elapsedRealtime();
+				mScheduled = false;
+			}
+		}
+	};
+
+	/**
+	 * waits until the main thread has no more work to do, so the prefetch doesn't compete with the UI
+	 */
+	private final Runnable mIdleTask = new Runnable() {
+		@Override
+		public void run() {
+			Looper.myQueue().addIdleHandler(new IdleHandler() {
+				@Override
+				public boolean queueIdle() {
+					mHandler.post(mPrefetchTask);
+					return false;
+				}
+			});
+		}
+	};
+
+	/**
+	 *
+	 */
+	private Prefetcher(Context context) {
+		mContext = context;
+		HandlerThread thread = new HandlerThread("Prefetcher", THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		mHandler = new Handler(thread.getLooper());
+		mMainHandler = new Handler(Looper.getMainLooper());
+	}
+
+	/**
+	 * create singleton instance
+	 *
+	 * @return singleton instance of this class
+	 */
+	public static synchronized Prefetcher getInstance(Context context) {
+		if (singleton == null) {
+			singleton = new Prefetcher(context.getApplicationContext());
+		}
+		return singleton;
+	}
+
+	/**
+	 * schedule a prefetch when the app becomes idle. Does nothing if disabled
+	 * or if the last prefetch was shortly before. Must be called from the main thread
+	 */
+	public void schedule() {
+		if (!mScheduled && SystemClock.elapsedRealtime() - mLastRun >= MIN_INTERVAL
+				&& PreferenceUtils.getInstance(mContext).prefetchEnabled()) {
+			mScheduled = true;
+			mMainHandler.postDelayed(mIdleTask, START_DELAY);
+		}
+	}
+
+	/**
+	 * load the library information and images of the items with the highest scores until the budget is used
+	 */
+	private void prefetch() {
+		PreferenceUtils prefs = PreferenceUtils.getInstance(mContext);
+		if (!prefs.prefetchEnabled()) {
+			return;
+		}
+		// check battery state
+		boolean charging = false;
+		int batteryLevel = 100;
+		Intent battery = mContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+		if (battery != null) {
+			int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+			int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+			int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+			charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+			if (level >= 0 && scale > 0) {
+				batteryLevel = level * 100 / scale;
+			}
+		}
+		if (!charging) {
+			if (batteryLevel < prefs.getPrefetchMinBattery()) {
+				return;
+			}
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+				PowerManager powerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
+				if (powerManager != null && powerManager.isPowerSaveMode()) {
+					return;
+				}
+			}
+		}
+		ImageFetcher fetcher = ImageFetcher.getInstance(mContext);
+		ImageCache cache = fetcher.getImageCache();
+		if (cache == null) {
+			return;
+		}
+		// images are only downloaded while charging
+		boolean download = charging && ApolloUtils.isOnline(mContext);
+		LibraryIndex index = LibraryIndex.getInstance(mContext);
+		int albumSize = prefs.isSimpleLayout(PreferenceUtils.ALBUM_LAYOUT) ? ImageCache.SIZE_THUMBNAIL : ImageCache.SIZE_GRID;
+		int artistSize = prefs.isSimpleLayout(PreferenceUtils.ARTIST_LAYOUT) ? ImageCache.SIZE_THUMBNAIL : ImageCache.SIZE_GRID;
+		int budget = prefs.getPrefetchBudget();
+		int used = 0;
+
+		for (Candidate candidate : getCandidates(index)) {
+			// stop if the budget is used or if the user is scrolling
+			if (used >= budget || cache.isDiskCachePaused()) {
+				break;
+			}
+			int sizeClass;
+			// library information
+			if (candidate.albumName != null) {
+				index.getAlbumSongs(candidate.id);
+				sizeClass = albumSize;
+			} else {
+				index.getArtistAlbums(candidate.id);
+				sizeClass = artistSize;
+			}
+			// artwork
+			if (cache.getBitmapFromMemCache(candidate.key, sizeClass) != null) {
+				continue;
+			}
+			long albumId = candidate.albumName != null ? candidate.id : -1;
+			Bitmap bitmap = cache.getCachedArtwork(mContext, candidate.key, albumId, sizeClass);
+			if (bitmap == null && download) {
+				String url;
+				if (candidate.albumName != null) {
+					url = fetcher.processImageUrl(candidate.artistName, candidate.albumName, ImageType.ALBUM);
+				} else {
+					url = fetcher.processImageUrl(candidate.artistName, null, ImageType.ARTIST);
+					if (url == null) {
+						// same fallback as the image scheduler, use an album artwork named like the artist
+						url = fetcher.processImageUrl(candidate.artistName, candidate.artistName, ImageType.ALBUM);
+					}
+				}
+				bitmap = fetcher.processBitmap(candidate.key, url, sizeClass);
+				if (bitmap != null) {
+					cache.addBitmapToCache(candidate.key, bitmap, sizeClass);
+				}
+			}
+			if (bitmap != null) {
+				used += ImageCache.MemoryCache.getBitmapSize(bitmap);
+			}
+		}
+	}
+
+	/**
+	 * predict the items which will be viewed next
+	 *
+	 * @return albums and artists sorted by score
+	 */
+	private List<Candidate> getCandidates(LibraryIndex index) {
+		Map<String, Candidate> candidates = new HashMap<>();
+		// upcoming albums of the queue, the nearer the better
+		long[] queue = MusicUtils.getQueue();
+		int position = Math.max(MusicUtils.getQueuePosition(), 0);
+		for (int i = 0; i < QUEUE_LOOKAHEAD && position + i < queue.length; i++) {
+			Album album = index.getSongAlbum(queue[position + i]);
+			if (album != null) {
+				addAlbum(candidates, album.getId(), album.getName(), album.getArtist(), WEIGHT_QUEUE / (i + 1));
+			}
+		}
+		// recently played albums, score decreases with the time since the last play
+		Cursor cursor = CursorFactory.makeRecentCursor(mContext);
+		if (cursor != null) {
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < RECENT_LIMIT && cursor.moveToNext(); i++) {
+				long age = Math.max(now - cursor.getLong(5), 0);
+				float score = (float) (WEIGHT_RECENT * Math.pow(0.5, age / RECENT_HALF_LIFE));
+				addAlbum(candidates, cursor.getLong(0), cursor.getString(1), cursor.getString(2), score);
+			}
+			cursor.close();
+		}
+		// albums and artists of the most played tracks
+		cursor = CursorFactory.makePopularCursor(mContext);
+		if (cursor != null) {
+			Map<Album, Long> albumCounts = new HashMap<>();
+			Map<Artist, Long> artistCounts = new HashMap<>();
+			long maxAlbumCount = 1;
+			long maxArtistCount = 1;
+			for (int i = 0; i < POPULAR_LIMIT && cursor.moveToNext(); i++) {
+				long songId = cursor.getLong(0);
+				long playCount = cursor.getLong(4);
+				Album album = index.getSongAlbum(songId);
+				if (album != null) {
+					Long count = albumCounts.get(album);
+					count = count != null ? count + playCount : playCount;
+					albumCounts.put(album, count);
+					maxAlbumCount = Math.max(maxAlbumCount, count);
+				}
+				Artist artist = index.getSongArtist(songId);
+				if (artist != null) {
+					Long count = artistCounts.get(artist);
+					count = count != null ? count + playCount : playCount;
+					artistCounts.put(artist, count);
+					maxArtistCount = Math.max(maxArtistCount, count);
+				}
+			}
+			cursor.close();
+			for (Map.Entry<Album, Long> entry : albumCounts.entrySet()) {
+				Album album = entry.getKey();
+				float score = WEIGHT_POPULAR_ALBUM * entry.getValue() / maxAlbumCount;
+				addAlbum(candidates, album.getId(), album.getName(), album.getArtist(), score);
+			}
+			for (Map.Entry<Artist, Long> entry : artistCounts.entrySet()) {
+				Artist artist = entry.getKey();
+				float score = WEIGHT_POPULAR_ARTIST * entry.getValue() / maxArtistCount;
+				addCandidate(candidates, new Candidate(artist.getName(), artist.getId(), null, artist.getName(), score));
+			}
+		}
+		List<Candidate> result = new ArrayList<>(candidates.values());
+		Collections.sort(result, new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate c1, Candidate c2) {
+				return Float.compare(c2.score, c1.score);
+			}
+		});
+		if (result.size() > MAX_CANDIDATES) {
+			return result.subList(0, MAX_CANDIDATES);
+		}
+		return result;
+	}
+
+	/**
+	 * add the score of an album
+	 */
+	private static void addAlbum(Map<String, Candidate> candidates, long albumId, String albumName, String artistName, float score) {
+		String key = ImageFetcher.generateAlbumCacheKey(albumName, artistName);
+		if (key != null) {
+			addCandidate(candidates, new Candidate(key, albumId, albumName, artistName, score));
+		}
+	}
+
+	/**
+	 * add an item or add its score to an existing item with the same cache key
+	 */
+	private static void addCandidate(Map<String, Candidate> candidates, Candidate candidate) {
+		Candidate existing = candidates.get(candidate.key);
+		if (existing != null) {
+			existing.score += candidate.score;
+		} else {
+			candidates.put(candidate.key, candidate);
+		}
+	}
+
+	/**
+	 * album or artist to prefetch
+	 */
+	private static final class Candidate {
+
+		/**
+		 * image cache key
+		 */
+		final String key;
+
+		/**
+		 * album ID or artist ID
+		 */
+		final long id;
+
+		/**
+		 * album name or null if this is an artist
+		 */
+		final String albumName;
+		final String artistName;
+
+		/**
+		 * sum of the scores of all sources
+		 */
+		float score;
+
+		Candidate(String key, long id, String albumName, String artistName, float score) {
+			this.key = key;
+			this.id = id;
+			this.albumName = albumName;
+			this.artistName = artistName;
+			this.score = score;
+		}
+	}
+}
@@ -27,6 +27,8 @@ import static com.andrew.apollo.lastfm.StringUtilities.map;
 
 import android.annotation.SuppressLint;
 
+import androidx.annotation.Nullable;
+
 import com.andrew.apollo.lastfm.Result.Status;
 
 import org.w3c.dom.Document;
@@ -35,6 +37,8 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -42,6 +46,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.Proxy;
 import java.net.URL;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -89,6 +94,17 @@ public class Caller {
 	 */
 	private static final Caller mInstance = new Caller();
 
+	/**
+	 * calls currently running, mapped by cache key
+	 */
+	private final Map<String, PendingCall> mPendingCalls = new HashMap<>();
+
+	/**
+	 * cache for responses or null if not set
+	 */
+	@Nullable
+	private volatile ResponseCache mCache;
+
 
 	private Caller() {
 	}
@@ -110,13 +126,73 @@ public class Caller {
 	 * <code>non-null</code> then an authenticated call is made. If it's
 	 * <code>null</code> then an unauthenticated call is made.<br/>
 	 * The <code>apiKey</code> parameter is always required, even when a valid
-	 * session is passed to this method.
+	 * session is passed to this method.<br/>
+	 * Responses are taken from the response cache if set. Identical calls running
+	 * at the same time are collapsed into a single request.
 	 *
 	 * @param method The method to call
 	 * @param params Parameters
 	 * @return the result of the operation
 	 */
 	public Result call(String method, Map<String, String> params) {
+		ResponseCache cache = mCache;
+		if (cache == null) {
+			return callWeb(method, params, null, null);
+		}
+		String key = ResponseCache.createKey(method, params);
+		ResponseCache.Entry entry = cache.load(key);
+		if (entry != null) {
+			if (entry.body == null) {
+				return Result.createHttpErrorResult(entry.httpCode, entry.message);
+			}
+			try {
+				return createResultFromInputStream(new ByteArrayInputStream(entry.body));
+			} catch (IOException | SAXException e) {
+				// invalid entry, load from web
+				e.printStackTrace();
+			}
+		}
+		// wait for the result if the same call is already running
+		PendingCall pending;
+		synchronized (mPendingCalls) {
+			pending = mPendingCalls.get(key);
+			if (pending == null) {
+				mPendingCalls.put(key, new PendingCall());
+			}
+		}
+		if (pending != null) {
+			return pending.getResult();
+		}
+		Result result = null;
+		try {
+			result = callWeb(method, params, cache, key);
+		} finally {
+			synchronized (mPendingCalls) {
+				pending = mPendingCalls.remove(key);
+			}
+			// result is null if the call failed with an unexpected exception
+			pending.setResult(result != null ? result : Result.createHttpErrorResult(-1, null));
+		}
+		return result;
+	}
+
+	/**
+	 * set the cache used to store responses
+	 *
+	 * @param cache response cache or null to disable caching
+	 */
+	public void setCache(ResponseCache cache) {
+		mCache = cache;
+	}
+
+	/**
+	 * send a call to last.fm and store the response in the cache
+	 *
+	 * @param cache cache to store the response or null to skip caching
+	 * @param key   cache key of the call
+	 * @return the result of the operation
+	 */
+	private Result callWeb(String method, Map<String, String> params, @Nullable ResponseCache cache, String key) {
 		params = new WeakHashMap<>(params);
 		InputStream inputStream;
 
@@ -131,22 +207,34 @@ public class Caller {
 
 			if (inputStream == null) {
 				lastResult = Result.createHttpErrorResult(urlConnection.getResponseCode(), urlConnection.getResponseMessage());
+				if (cache != null) {
+					cache.storeError(key, urlConnection.getResponseCode(), urlConnection.getResponseMessage());
+				}
 				return lastResult;
 			}
 		} catch (IOException ioEx) {
 			lastResult = Result.createHttpErrorResult(503, ioEx.getLocalizedMessage());
+			if (cache != null) {
+				cache.storeError(key, 503, ioEx.getLocalizedMessage());
+			}
 			return lastResult;
 		}
 		try {
-			lastResult = createResultFromInputStream(inputStream);
+			byte[] body = readResponse(inputStream);
+			lastResult = createResultFromInputStream(new ByteArrayInputStream(body));
+			if (cache != null) {
+				// cache "not found" responses shorter than results
+				cache.storeBody(key, body, lastResult.isSuccessful() ? ResponseCache.TTL_OK : ResponseCache.TTL_MISS);
+			}
 		} catch (IOException ioEx) {
 			ioEx.printStackTrace();
 			lastResult = new Result(ioEx.getLocalizedMessage());
-			ioEx.printStackTrace();
 		} catch (SAXException saxEx) {
 			saxEx.printStackTrace();
 			lastResult = new Result(saxEx.getLocalizedMessage());
-			saxEx.printStackTrace();
+			if (cache != null) {
+				cache.storeError(key, -1, saxEx.getLocalizedMessage());
+			}
 		}
 		return lastResult;
 	}
@@ -194,6 +282,24 @@ public class Caller {
 	}
 
 
+	/**
+	 * read the complete response of a connection
+	 */
+	private byte[] readResponse(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		try {
+			while ((count = inputStream.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+		} finally {
+			inputStream.close();
+		}
+		return out.toByteArray();
+	}
+
+
 	@SuppressLint("NewApi")
 	private Result createResultFromInputStream(InputStream inputStream) throws SAXException, IOException {
 		InputSource input = new InputSource(new InputStreamReader(inputStream));
@@ -252,4 +358,39 @@ public class Caller {
 		}
 		return builder.toString();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * result holder of a running call, used by other threads to wait for the result
+	 */
+	private static final class PendingCall {
+
+		private Result result;
+		private boolean done = false;
+
+		/**
+		 * wait until the call is finished
+		 *
+		 * @return result of the call
+		 */
+		synchronized Result getResult() {
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return Result.createHttpErrorResult(503, e.getLocalizedMessage());
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * set the result and wake up waiting threads
+		 */
+		synchronized void setResult(Result result) {
+			this.result = result;
+			done = true;
+			notifyAll();
+		}
+	}
+}
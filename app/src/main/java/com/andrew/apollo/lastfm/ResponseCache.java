@@ -0,0 +1,225 @@
+package com.andrew.apollo.lastfm;
+
+import androidx.annotation.Nullable;
+
+import com.andrew.apollo.cache.DiskLruCache;
+import com.andrew.apollo.cache.ImageCache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Disk cache for Last.fm responses, based on {@link DiskLruCache}.
+ * Every entry has an expiration time. Successful responses are kept longer than
+ * "not found" responses and errors, so missing artists or albums are not requested again
+ * on every image load. The cache is opened on first use, so it can be created on any thread.
+ */
+public class ResponseCache {
+
+	/**
+	 * time to keep a successful response (7 days)
+	 */
+	static final long TTL_OK = 7L * 24 * 60 * 60 * 1000;
+
+	/**
+	 * time to keep a Last.fm error response like "artist not found" (1 day)
+	 */
+	static final long TTL_MISS = 24L * 60 * 60 * 1000;
+
+	/**
+	 * time to keep a HTTP or connection error (5 minutes)
+	 */
+	static final long TTL_ERROR = 5L * 60 * 1000;
+
+	/**
+	 * max size of the cache folder (2 MB)
+	 */
+	private static final int MAX_SIZE = 2 * 1024 * 1024;
+
+	/**
+	 * version of the entry format
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * entry type of a response body
+	 */
+	private static final int TYPE_BODY = 0;
+
+	/**
+	 * entry type of a HTTP error without body
+	 */
+	private static final int TYPE_HTTP_ERROR = 1;
+
+	private final File mFolder;
+
+	@Nullable
+	private DiskLruCache mDiskCache;
+
+	/**
+	 * @param folder cache folder
+	 */
+	public ResponseCache(File folder) {
+		mFolder = folder;
+	}
+
+	/**
+	 * create a cache key of a method call
+	 *
+	 * @param method Last.fm method name
+	 * @param params method parameters
+	 * @return cache key
+	 */
+	static String createKey(String method, Map<String, String> params) {
+		StringBuilder builder = new StringBuilder(method);
+		// sort parameters, so the key doesn't depend on the map order
+		for (Map.Entry<String, String> entry : new TreeMap<>(params).entrySet()) {
+			builder.append('&').append(entry.getKey()).append('=').append(entry.getValue());
+		}
+		return ImageCache.hashKeyForDisk(builder.toString());
+	}
+
+	/**
+	 * load a cached response
+	 *
+	 * @param key cache key
+	 * @return cached entry or null if there is no valid entry
+	 */
+	@Nullable
+	synchronized Entry load(String key) {
+		DiskLruCache cache = open();
+		if (cache == null)
+			return null;
+		DiskLruCache.Snapshot snapshot = null;
+		try {
+			snapshot = cache.get(key);
+			if (snapshot != null) {
+				DataInputStream in = new DataInputStream(snapshot.getInputStream(0));
+				if (in.readInt() == VERSION && in.readLong() > System.currentTimeMillis()) {
+					int type = in.readInt();
+					int httpCode = in.readInt();
+					String message = in.readUTF();
+					byte[] body = new byte[in.readInt()];
+					in.readFully(body);
+					return new Entry(type == TYPE_BODY ? body : null, httpCode, message);
+				}
+				// expired or old format
+				snapshot.close();
+				snapshot = null;
+				cache.remove(key);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			if (snapshot != null) {
+				snapshot.close();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * store a response body
+	 *
+	 * @param key  cache key
+	 * @param body response body
+	 * @param ttl  time to keep the entry in milliseconds
+	 */
+	synchronized void storeBody(String key, byte[] body, long ttl) {
+		store(key, TYPE_BODY, -1, "", body, ttl);
+	}
+
+	/**
+	 * store a HTTP error
+	 *
+	 * @param key      cache key
+	 * @param httpCode HTTP status code
+	 * @param message  error message
+	 */
+	synchronized void storeError(String key, int httpCode, String message) {
+		store(key, TYPE_HTTP_ERROR, httpCode, message != null ? message : "", new byte[0], TTL_ERROR);
+	}
+
+	/**
+	 *
+	 */
+	private void store(String key, int type, int httpCode, String message, byte[] body, long ttl) {
+		DiskLruCache cache = open();
+		if (cache == null)
+			return;
+		DiskLruCache.Editor editor = null;
+		try {
+			editor = cache.edit(key);
+			if (editor != null) {
+				OutputStream out = editor.newOutputStream(0);
+				DataOutputStream data = new DataOutputStream(out);
+				data.writeInt(VERSION);
+				data.writeLong(System.currentTimeMillis() + ttl);
+				data.writeInt(type);
+				data.writeInt(httpCode);
+				data.writeUTF(message);
+				data.writeInt(body.length);
+				data.write(body);
+				data.close();
+				editor.commit();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			if (editor != null) {
+				// release the entry, so it can be edited again
+				try {
+					editor.abort();
+				} catch (IOException | IllegalStateException exception) {
+					// already completed by a failed commit
+					exception.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * open disk cache if not done yet
+	 *
+	 * @return disk cache or null if the cache could not be opened
+	 */
+	@Nullable
+	private DiskLruCache open() {
+		if (mDiskCache == null || mDiskCache.isClosed()) {
+			try {
+				if (!mFolder.exists()) {
+					mFolder.mkdirs();
+				}
+				mDiskCache = DiskLruCache.open(mFolder, VERSION, 1, MAX_SIZE);
+			} catch (IOException e) {
+				e.printStackTrace();
+				mDiskCache = null;
+			}
+		}
+		return mDiskCache;
+	}
+
+	/**
+	 * cached response
+	 */
+	static final class Entry {
+
+		/**
+		 * response body or null if the entry is a HTTP error
+		 */
+		@Nullable
+		final byte[] body;
+		final int httpCode;
+		final String message;
+
+		Entry(@Nullable byte[] body, int httpCode, String message) {
+			this.body = body;
+			this.httpCode = httpCode;
+			this.message = message;
+		}
+	}
+}
@@ -12,12 +12,10 @@
 package com.andrew.apollo.loaders;
 
 import android.content.Context;
-import android.database.Cursor;
 
 import com.andrew.apollo.model.Album;
-import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.provider.LibraryIndex;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -48,31 +46,6 @@ public class ArtistAlbumLoader extends WrappedAsyncTaskLoader<List<Album>> {
 	 */
 	@Override
 	public List<Album> loadInBackground() {
-		List<Album> result = new LinkedList<>();
-		// Create the Cursor
-		Cursor mCursor = CursorFactory.makeArtistAlbumCursor(getContext(), mArtistID);
-		// Gather the dataS
-		if (mCursor != null) {
-			if (mCursor.moveToFirst()) {
-				do {
-					// Copy the album id
-					long id = mCursor.getLong(0);
-					// Copy the album name
-					String albumName = mCursor.getString(1);
-					// Copy the artist name
-					String artist = mCursor.getString(2);
-					// Copy the number of songs
-					int songCount = mCursor.getInt(3);
-					// Copy the release year
-					String year = mCursor.getString(4);
-					// Create a new album
-					Album album = new Album(id, albumName, artist, songCount, year);
-					// Add everything up
-					result.add(album);
-				} while (mCursor.moveToNext());
-			}
-			mCursor.close();
-		}
-		return result;
+		return LibraryIndex.getInstance(getContext()).getArtistAlbums(mArtistID);
 	}
 }
\ No newline at end of file
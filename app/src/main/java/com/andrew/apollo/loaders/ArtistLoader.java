@@ -12,12 +12,10 @@
 package com.andrew.apollo.loaders;
 
 import android.content.Context;
-import android.database.Cursor;
 
 import com.andrew.apollo.model.Artist;
-import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.provider.LibraryIndex;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -41,29 +39,6 @@ public class ArtistLoader extends WrappedAsyncTaskLoader<List<Artist>> {
 	 */
 	@Override
 	public List<Artist> loadInBackground() {
-		List<Artist> result = new LinkedList<>();
-		// Create the Cursor
-		Cursor mCursor = CursorFactory.makeArtistCursor(getContext());
-		// Gather the data
-		if (mCursor != null) {
-			if (mCursor.moveToFirst()) {
-				do {
-					// Copy the artist id
-					long id = mCursor.getLong(0);
-					// Copy the artist name
-					String artistName = mCursor.getString(1);
-					// Copy the number of albums
-					int albumCount = mCursor.getInt(2);
-					// Copy the number of songs
-					int songCount = mCursor.getInt(3);
-					// Create a new artist
-					Artist artist = new Artist(id, artistName, songCount, albumCount);
-					// Add everything up
-					result.add(artist);
-				} while (mCursor.moveToNext());
-			}
-			mCursor.close();
-		}
-		return result;
+		return LibraryIndex.getInstance(getContext()).getArtists();
 	}
 }
\ No newline at end of file
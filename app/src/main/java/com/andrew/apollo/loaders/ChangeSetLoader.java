@@ -0,0 +1,44 @@
+package com.andrew.apollo.loaders;
+
+import android.content.Context;
+
+import com.andrew.apollo.adapters.ChangeSet;
+import com.andrew.apollo.model.Music;
+
+import java.util.List;
+
+/**
+ * loader returning the difference between the items currently shown and the items of another loader,
+ * so the adapter only needs to update the changed rows. Items and difference are both loaded in the background.
+ */
+public class ChangeSetLoader<T extends Music> extends WrappedAsyncTaskLoader<ChangeSet<T>> {
+
+	/**
+	 * loader of the new items
+	 */
+	private final WrappedAsyncTaskLoader<List<T>> mLoader;
+
+	/**
+	 * items currently shown
+	 */
+	private final List<T> mOldItems;
+
+	/**
+	 * @param context  The {@link Context} to use
+	 * @param loader   loader of the new items
+	 * @param oldItems items currently shown, see {@link ChangeSet#getItems}
+	 */
+	public ChangeSetLoader(Context context, WrappedAsyncTaskLoader<List<T>> loader, List<T> oldItems) {
+		super(context);
+		mLoader = loader;
+		mOldItems = oldItems;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ChangeSet<T> loadInBackground() {
+		return new ChangeSet<>(mOldItems, mLoader.loadInBackground());
+	}
+}
@@ -1,9 +1,8 @@
 package com.andrew.apollo.loaders;
 
 import android.content.Context;
-import android.database.Cursor;
 
-import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.provider.LibraryIndex;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -41,16 +40,8 @@ public class FolderLoader extends WrappedAsyncTaskLoader<List<File>> {
 		// init tree set to sort folder by name
 		TreeSet<File> tree = new TreeSet<>(COMPARATOR);
 
-		Cursor cursor = CursorFactory.makeFolderCursor(getContext());
-		if (cursor != null) {
-			if (cursor.moveToFirst()) {
-				do {
-					String pathName = cursor.getString(0);
-					File folder = new File(pathName).getAbsoluteFile().getParentFile();
-					tree.add(folder);
-				} while (cursor.moveToNext());
-			}
-			cursor.close();
+		for (String folder : LibraryIndex.getInstance(getContext()).getFolders()) {
+			tree.add(new File(folder));
 		}
 		return new ArrayList<>(tree);
 	}
@@ -1,12 +1,10 @@
 package com.andrew.apollo.loaders;
 
 import android.content.Context;
-import android.database.Cursor;
 
 import com.andrew.apollo.model.Song;
-import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.provider.LibraryIndex;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -32,28 +30,6 @@ public class FolderSongLoader extends WrappedAsyncTaskLoader<List<Song>> {
 
 	@Override
 	public List<Song> loadInBackground() {
-		List<Song> result = new LinkedList<>();
-		Cursor cursor = CursorFactory.makeFolderSongCursor(getContext(), folderName);
-		if (cursor != null) {
-			if (cursor.moveToFirst()) {
-				int idxName = folderName.length() + 1;
-				do {
-					String filename = cursor.getString(5);
-					// fetch only music files from the current folder
-					// sub folders will be skipped
-					if (filename.indexOf('/', idxName) < 0) {
-						long id = cursor.getLong(0);
-						String songTitle = cursor.getString(1);
-						String artistName = cursor.getString(2);
-						String albumTitle = cursor.getString(3);
-						long duration = cursor.getLong(4);
-						Song song = new Song(id, songTitle, artistName, albumTitle, duration);
-						result.add(song);
-					}
-				} while (cursor.moveToNext());
-			}
-			cursor.close();
-		}
-		return result;
+		return LibraryIndex.getInstance(getContext()).getFolderSongs(folderName);
 	}
 }
\ No newline at end of file
@@ -12,18 +12,11 @@
 package com.andrew.apollo.loaders;
 
 import android.content.Context;
-import android.database.Cursor;
 
 import com.andrew.apollo.model.Genre;
-import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.provider.LibraryIndex;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeSet;
-import java.util.regex.Pattern;
 
 /**
  * Used to return the genres on a user's device.
@@ -32,11 +25,6 @@ import java.util.regex.Pattern;
  */
 public class GenreLoader extends WrappedAsyncTaskLoader<List<Genre>> {
 
-	/**
-	 * regex pattern to split genre group separated by
-	 */
-	private static final Pattern SEPARATOR = Pattern.compile("\\s*[,;|]\\s*");
-
 	/**
 	 * Constructor of <code>GenreLoader</code>
 	 *
@@ -51,40 +39,6 @@ public class GenreLoader extends WrappedAsyncTaskLoader<List<Genre>> {
 	 */
 	@Override
 	public List<Genre> loadInBackground() {
-		TreeSet<Genre> result = new TreeSet<>();
-		// Create the Cursor
-		Cursor mCursor = CursorFactory.makeGenreCursor(getContext());
-		// Gather the data
-		if (mCursor != null) {
-			if (mCursor.moveToFirst()) {
-				HashMap<String, List<Long>> group = new HashMap<>();
-				do {
-					// get Column information
-					long id = mCursor.getLong(0);
-					String name = mCursor.getString(1);
-
-					// Split genre groups into single genre names
-					String[] genres = SEPARATOR.split(name);
-
-					// solve conflicts. add multiple genre IDs for the same genre name.
-					for (String genre : genres) {
-						List<Long> ids = group.get(genre);
-						if (ids == null) {
-							ids = new LinkedList<>();
-							group.put(genre, ids);
-						}
-						ids.add(id);
-					}
-				} while (mCursor.moveToNext());
-
-				// add all elements to sorted list
-				for (Map.Entry<String, List<Long>> entry : group.entrySet()) {
-					Genre genre = new Genre(entry.getValue(), entry.getKey());
-					result.add(genre);
-				}
-			}
-			mCursor.close();
-		}
-		return new ArrayList<>(result);
+		return LibraryIndex.getInstance(getContext()).getGenres();
 	}
 }
\ No newline at end of file
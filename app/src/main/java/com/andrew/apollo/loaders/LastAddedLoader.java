@@ -12,12 +12,10 @@
 package com.andrew.apollo.loaders;
 
 import android.content.Context;
-import android.database.Cursor;
 
 import com.andrew.apollo.model.Song;
-import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.provider.LibraryIndex;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -41,31 +39,6 @@ public class LastAddedLoader extends WrappedAsyncTaskLoader<List<Song>> {
 	 */
 	@Override
 	public List<Song> loadInBackground() {
-		List<Song> result = new LinkedList<>();
-		// Create the Cursor
-		Cursor mCursor = CursorFactory.makeLastAddedCursor(getContext());
-		// Gather the data
-		if (mCursor != null) {
-			if (mCursor.moveToFirst()) {
-				do {
-					// Copy the song Id
-					long id = mCursor.getLong(0);
-					// Copy the song name
-					String songName = mCursor.getString(1);
-					// Copy the artist name
-					String artist = mCursor.getString(2);
-					// Copy the album name
-					String album = mCursor.getString(3);
-					// Copy the duration
-					long duration = mCursor.getLong(4);
-					// Create a new song
-					Song song = new Song(id, songName, artist, album, duration);
-					// Add everything up
-					result.add(song);
-				} while (mCursor.moveToNext());
-			}
-			mCursor.close();
-		}
-		return result;
+		return LibraryIndex.getInstance(getContext()).getLastAddedSongs();
 	}
 }
\ No newline at end of file
@@ -1,17 +1,11 @@
 package com.andrew.apollo.loaders;
 
 import android.content.Context;
-import android.database.Cursor;
 
 import androidx.annotation.Nullable;
 
-import com.andrew.apollo.model.Album;
-import com.andrew.apollo.model.Artist;
-import com.andrew.apollo.model.Music;
-import com.andrew.apollo.model.Song;
-import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.provider.SearchIndex;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -19,8 +13,12 @@ import java.util.List;
  *
  * @author nuclearfog
  */
-public class MusicSearchLoader extends WrappedAsyncTaskLoader<List<Music>> {
+public class MusicSearchLoader extends WrappedAsyncTaskLoader<List<SearchIndex.Match>> {
 
+	/**
+	 * max number of search results
+	 */
+	private static final int LIMIT = 200;
 
 	/**
 	 * search string as argument
@@ -36,59 +34,7 @@ public class MusicSearchLoader extends WrappedAsyncTaskLoader<List<Music>> {
 
 	@Nullable
 	@Override
-	public List<Music> loadInBackground() {
-		List<Music> result = new LinkedList<>();
-		//
-		Cursor cursor = CursorFactory.makeArtistSearchCursor(getContext(), search);
-		if (cursor != null) {
-			if (cursor.moveToFirst()) {
-				do {
-					long id = cursor.getLong(0);
-					String artistName = cursor.getString(1);
-					int albumCount = cursor.getInt(2);
-					int songCount = cursor.getInt(3);
-					Artist artist = new Artist(id, artistName, songCount, albumCount);
-					result.add(artist);
-				} while (cursor.moveToNext());
-			}
-			cursor.close();
-		}
-		// search for Albums
-		cursor = CursorFactory.makeAlbumSearchCursor(getContext(), search);
-		if (cursor != null) {
-			if (cursor.moveToFirst()) {
-				do {
-					long id = cursor.getLong(0);
-					String albumName = cursor.getString(1);
-					String artist = cursor.getString(2);
-					int songCount = cursor.getInt(3);
-					String year = cursor.getString(4);
-					Album album = new Album(id, albumName, artist, songCount, year);
-					result.add(album);
-				} while (cursor.moveToNext());
-			}
-			cursor.close();
-		}
-		// Search for tracks
-		cursor = CursorFactory.makeTrackSearchCursor(getContext(), search);
-		if (cursor != null) {
-			if (cursor.moveToFirst()) {
-				do {
-					String mime = cursor.getString(6);
-					if (mime.startsWith("audio/") || mime.equals("application/ogg")
-							|| mime.equals("application/x-ogg")) {
-						long id = cursor.getLong(0);
-						String songName = cursor.getString(1);
-						String artist = cursor.getString(2);
-						String album = cursor.getString(3);
-						long duration = cursor.getLong(4);
-						Song song = new Song(id, songName, artist, album, duration);
-						result.add(song);
-					}
-				} while (cursor.moveToNext());
-			}
-			cursor.close();
-		}
-		return result;
+	public List<SearchIndex.Match> loadInBackground() {
+		return SearchIndex.getInstance(getContext()).search(search, LIMIT);
 	}
 }
\ No newline at end of file
@@ -7,13 +7,11 @@ import android.content.Context;
 import android.database.AbstractCursor;
 import android.database.Cursor;
 
+import com.andrew.apollo.player.PlayQueue;
 import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.utils.LongIntMap;
 import com.andrew.apollo.utils.MusicUtils;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * A custom {@link Cursor} used to return the queue and allow for easy dragging
  * and dropping of the items in it.
@@ -23,9 +21,15 @@ public class NowPlayingCursor extends AbstractCursor {
 
 	private Context mContext;
 
-	private final ArrayList<Long> mNowPlaying = new ArrayList<>();
+	/**
+	 * track IDs of the queue
+	 */
+	private final PlayQueue mNowPlaying = new PlayQueue();
 
-	private final List<Long> mCursorIndexes = new LinkedList<>();
+	/**
+	 * maps track IDs to the row of {@link #cursor}
+	 */
+	private LongIntMap mCursorIndexes = new LongIntMap(0);
 
 	private int mCurPos;
 
@@ -61,7 +65,7 @@ public class NowPlayingCursor extends AbstractCursor {
 			return false;
 		}
 		long id = mNowPlaying.get(newPosition);
-		int cursorIndex = mCursorIndexes.indexOf(id);
+		int cursorIndex = mCursorIndexes.get(id, -1);
 		if (cursorIndex < 0)
 			return false;
 		cursor.moveToPosition(cursorIndex);
@@ -192,27 +196,35 @@ public class NowPlayingCursor extends AbstractCursor {
 	 * Actually makes the queue
 	 */
 	private void makeNowPlayingCursor() {
+		if (cursor != null) {
+			cursor.close();
+			cursor = null;
+		}
 		getQueue();
 		if (mNowPlaying.isEmpty()) {
-			cursor = null;
 			return;
 		}
-		mCursorIndexes.clear();
-		cursor = CursorFactory.makeNowPlayingCursor(mContext, mNowPlaying);
+		cursor = CursorFactory.makeNowPlayingCursor(mContext, mNowPlaying.toArray());
+		mCursorIndexes = new LongIntMap(cursor != null ? cursor.getCount() : 0);
 		if (cursor != null && cursor.moveToFirst()) {
 			do {
 				long id = cursor.getLong(0);
-				mCursorIndexes.add(id);
+				mCursorIndexes.put(id, cursor.getPosition());
 			} while (cursor.moveToNext());
 		}
 		mCurPos = -1;
-		int removed = 0;
-		for (long trackId : mNowPlaying) {
-			int cursorIndex = mCursorIndexes.indexOf(trackId);
-			if (cursorIndex < 0) {
-				removed += MusicUtils.removeTrack(trackId);
+		// collect tracks which don't exist anymore and remove them with a single call
+		PlayQueue missing = new PlayQueue();
+		for (int i = 0; i < mNowPlaying.size(); i++) {
+			long trackId = mNowPlaying.get(i);
+			if (!mCursorIndexes.containsKey(trackId)) {
+				missing.add(trackId);
 			}
 		}
+		int removed = 0;
+		if (!missing.isEmpty()) {
+			removed = MusicUtils.removeTracks(missing.toArray());
+		}
 		if (removed > 0) {
 			getQueue();
 			if (mNowPlaying.isEmpty()) {
@@ -235,11 +247,6 @@ public class NowPlayingCursor extends AbstractCursor {
 	 * get queue from MusicUtils
 	 */
 	private void getQueue() {
-		long[] ids = MusicUtils.getQueue();
-		mNowPlaying.clear();
-		mNowPlaying.ensureCapacity(ids.length);
-		for (long id : ids) {
-			mNowPlaying.add(id);
-		}
+		mNowPlaying.setAll(MusicUtils.getQueue());
 	}
 }
\ No newline at end of file
@@ -15,6 +15,7 @@ import android.app.Dialog;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
 import android.os.Bundle;
+import android.view.View;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
@@ -24,6 +25,7 @@ import com.andrew.apollo.R;
 import com.andrew.apollo.cache.ImageFetcher;
 import com.andrew.apollo.utils.ApolloUtils;
 import com.andrew.apollo.utils.MusicUtils;
+import com.andrew.apollo.utils.TrackDeleter;
 
 /**
  * Alert dialog used to delete tracks.
@@ -32,7 +34,7 @@ import com.andrew.apollo.utils.MusicUtils;
  *
  * @author Andrew Neal (andrewdneal@gmail.com)
  */
-public class DeleteDialog extends DialogFragment implements OnClickListener {
+public class DeleteDialog extends DialogFragment implements OnClickListener, DialogInterface.OnShowListener, View.OnClickListener, TrackDeleter.Callback {
 
 	/**
 	 * The item(s) to delete
@@ -42,6 +44,10 @@ public class DeleteDialog extends DialogFragment implements OnClickListener {
 	 * The image cache
 	 */
 	private ImageFetcher mFetcher;
+	/**
+	 * running delete task or null if not started
+	 */
+	private TrackDeleter mDeleter;
 
 	private String key = "";
 	private String title = "";
@@ -79,26 +85,85 @@ public class DeleteDialog extends DialogFragment implements OnClickListener {
 		// Initialize the image cache
 		mFetcher = ApolloUtils.getImageFetcher(requireActivity());
 		// Build the dialog
-		return new AlertDialog.Builder(requireContext()).setTitle(dialogTitle)
+		AlertDialog dialog = new AlertDialog.Builder(requireContext()).setTitle(dialogTitle)
 				.setMessage(R.string.cannot_be_undone)
 				.setPositiveButton(delete, this)
 				.setNegativeButton(R.string.cancel, this)
 				.create();
+		dialog.setOnShowListener(this);
+		return dialog;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onShow(DialogInterface dialog) {
+		// keep the dialog open while deleting to show the progress
+		((AlertDialog) dialog).getButton(DialogInterface.BUTTON_POSITIVE).setOnClickListener(this);
+	}
 
+	/**
+	 * {@inheritDoc}
+	 */
 	@Override
-	public void onClick(DialogInterface dialog, int which) {
-		if (which == DialogInterface.BUTTON_POSITIVE) {
+	public void onClick(View v) {
+		if (mDeleter == null) {
 			// Remove the items from the image cache
 			mFetcher.removeFromCache(key);
-			// Delete the selected item(s)
-			MusicUtils.deleteTracks(requireActivity(), mItemList);
+			// Delete the selected item(s) in the background
+			mDeleter = MusicUtils.deleteTracks(requireActivity(), mItemList, this);
+			v.setEnabled(false);
+			onProgress(0, mItemList.length);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onProgress(int deleted, int total) {
+		AlertDialog dialog = (AlertDialog) getDialog();
+		if (dialog != null) {
+			dialog.setMessage(getString(R.string.delete_progress, deleted, total));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onFinished(int deleted) {
+		if (getActivity() != null) {
+			MusicUtils.onPostDelete(getActivity(), deleted);
 			if (getActivity() instanceof DeleteDialogCallback) {
 				((DeleteDialogCallback) getActivity()).onDelete();
 			}
-			dialog.dismiss();
-		} else if (which == DialogInterface.BUTTON_NEGATIVE) {
+		}
+		if (getDialog() != null) {
+			dismissAllowingStateLoss();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onCancel(@NonNull DialogInterface dialog) {
+		super.onCancel(dialog);
+		if (mDeleter != null) {
+			mDeleter.cancel();
+		}
+	}
+
+
+	@Override
+	public void onClick(DialogInterface dialog, int which) {
+		if (which == DialogInterface.BUTTON_NEGATIVE) {
+			// stop deleting, already deleted tracks are still cleaned up
+			if (mDeleter != null) {
+				mDeleter.cancel();
+			}
 			dialog.dismiss();
 		}
 	}
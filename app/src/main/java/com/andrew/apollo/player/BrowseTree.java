@@ -0,0 +1,481 @@
+package com.andrew.apollo.player;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import android.support.v4.media.MediaDescriptionCompat;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media.MediaBrowserServiceCompat.Result;
+
+import com.andrew.apollo.R;
+import com.andrew.apollo.model.Album;
+import com.andrew.apollo.model.Artist;
+import com.andrew.apollo.model.Genre;
+import com.andrew.apollo.model.Song;
+import com.andrew.apollo.provider.LibraryIndex;
+import com.andrew.apollo.utils.CursorFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Library tree served to media browser clients like Android Auto or Wear OS.
+ * Children of a node are loaded in the background and cached until the library index changes,
+ * so clients can page through large nodes without querying the MediaStore again.
+ * <p>
+ * Media IDs of browsable nodes have the format "type/value", playable tracks use "parentId|trackId",
+ * so a track can be played within the list it was selected from.
+ */
+public class BrowseTree {
+
+	/**
+	 * media ID of the root node
+	 */
+	public static final String ROOT = "root";
+
+	/**
+	 * media IDs of the categories
+	 */
+	private static final String ARTISTS = "artists";
+	private static final String ALBUMS = "albums";
+	private static final String GENRES = "genres";
+	private static final String FOLDERS = "folders";
+	private static final String PLAYLISTS = "playlists";
+	private static final String RECENT = "recent";
+
+	/**
+	 * media ID prefixes of the browsable nodes
+	 */
+	private static final String ARTIST = "artist";
+	private static final String ALBUM = "album";
+	private static final String GENRE = "genre";
+	private static final String FOLDER = "folder";
+	private static final String PLAYLIST = "playlist";
+
+	/**
+	 * separator between node type and value
+	 */
+	private static final char TYPE_SEPARATOR = '/';
+
+	/**
+	 * separator between the parent node and the track ID of a playable item
+	 */
+	private static final char TRACK_SEPARATOR = '|';
+
+	/**
+	 * max number of cached nodes
+	 */
+	private static final int MAX_NODES = 32;
+
+	/**
+	 * max age of cached nodes, which are not part of the library index (playlists, recent albums)
+	 */
+	private static final long MAX_AGE = 30000;
+
+	/**
+	 * time in seconds to keep the idle loader thread
+	 */
+	private static final long KEEP_ALIVE = 60;
+
+	private final Context mContext;
+	private final LibraryIndex mLibrary;
+
+	/**
+	 * loads nodes in the background, one node at a time
+	 */
+	private final ThreadPoolExecutor mLoader = new ThreadPoolExecutor(0, 1, KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+	/**
+	 * cached nodes mapped by media ID, least recently used nodes are removed first
+	 */
+	private final Map<String, Node> mNodes = new LinkedHashMap<String, Node>(MAX_NODES, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+			return size() > MAX_NODES;
+		}
+	};
+
+	/**
+	 * callback used to return the tracks of a played media item
+	 */
+	public interface QueueCallback {
+
+		/**
+		 * called when the tracks of the parent node are loaded
+		 *
+		 * @param list     track IDs of the parent node
+		 * @param position position of the selected track
+		 */
+		void onQueueLoaded(long[] list, int position);
+	}
+
+	/**
+	 * @param context application context
+	 */
+	public BrowseTree(Context context) {
+		mContext = context;
+		mLibrary = LibraryIndex.getInstance(context);
+	}
+
+	/**
+	 * load the categories in the background, so the first browse request can be served from the cache
+	 */
+	public void preload() {
+		mLoader.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (String mediaId : new String[]{ARTISTS, ALBUMS, GENRES, FOLDERS, PLAYLISTS, RECENT}) {
+					getNode(mediaId);
+				}
+			}
+		});
+	}
+
+	/**
+	 * send the children of a node. Cached nodes are sent directly, other nodes are loaded in the background
+	 *
+	 * @param parentId media ID of the node
+	 * @param options  browse options containing the page and page size
+	 * @param result   result used to send the children
+	 */
+	public void loadChildren(@NonNull final String parentId, @NonNull final Bundle options, @NonNull final Result<List<MediaItem>> result) {
+		Node node = getCachedNode(parentId);
+		if (node != null) {
+			result.sendResult(getPage(node.items, options));
+		} else {
+			result.detach();
+			mLoader.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Node node = getNode(parentId);
+						result.sendResult(node != null ? getPage(node.items, options) : null);
+					} catch (Exception e) {
+						e.printStackTrace();
+						result.sendResult(null);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * load the tracks of the node a playable item belongs to
+	 *
+	 * @param mediaId  media ID of the playable item
+	 * @param callback callback called in the background with the loaded tracks
+	 */
+	public void loadQueue(@NonNull final String mediaId, @NonNull final QueueCallback callback) {
+		final int separator = mediaId.lastIndexOf(TRACK_SEPARATOR);
+		if (separator < 0)
+			return;
+		mLoader.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Node node = getNode(mediaId.substring(0, separator));
+					long trackId = Long.parseLong(mediaId.substring(separator + 1));
+					if (node != null && node.tracks != null) {
+						for (int i = 0; i < node.tracks.length; i++) {
+							if (node.tracks[i] == trackId) {
+								callback.onQueueLoaded(node.tracks, i);
+								return;
+							}
+						}
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * remove all cached nodes
+	 */
+	public void clear() {
+		synchronized (mNodes) {
+			mNodes.clear();
+		}
+	}
+
+	/**
+	 * get a node from the cache
+	 *
+	 * @param mediaId media ID of the node
+	 * @return cached node or null if the node isn't cached or out of date
+	 */
+	@Nullable
+	private Node getCachedNode(String mediaId) {
+		if (mediaId.equals(ROOT)) {
+			return getRoot();
+		}
+		synchronized (mNodes) {
+			Node node = mNodes.get(mediaId);
+			if (node != null && isValid(node)) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * get a node from the cache or load the node. Must not be called on the main thread
+	 *
+	 * @param mediaId media ID of the node
+	 * @return node or null if the media ID is invalid
+	 */
+	@Nullable
+	private Node getNode(String mediaId) {
+		Node node = getCachedNode(mediaId);
+		if (node == null) {
+			node = load(mediaId);
+			if (node != null && (node.generation >= 0 || node.expires > 0)) {
+				synchronized (mNodes) {
+					mNodes.put(mediaId, node);
+				}
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * check if a cached node is up to date
+	 */
+	private boolean isValid(Node node) {
+		if (node.expires > 0) {
+			return SystemClock.elapsedRealtime() < node.expires;
+		}
+		return node.generation >= 0 && node.generation == mLibrary.getGeneration();
+	}
+
+	/**
+	 * create the root node with all categories
+	 */
+	private Node getRoot() {
+		List<MediaItem> items = new ArrayList<>(6);
+		items.add(createBrowsable(ARTISTS, mContext.getString(R.string.page_artists), null));
+		items.add(createBrowsable(ALBUMS, mContext.getString(R.string.page_albums), null));
+		items.add(createBrowsable(GENRES, mContext.getString(R.string.page_genres), null));
+		items.add(createBrowsable(FOLDERS, mContext.getString(R.string.page_folders), null));
+		items.add(createBrowsable(PLAYLISTS, mContext.getString(R.string.page_playlists), null));
+		items.add(createBrowsable(RECENT, mContext.getString(R.string.page_recent), null));
+		return new Node(items, null, -1, 0);
+	}
+
+	/**
+	 * load the children of a node from the library index or the MediaStore.
+	 * The generation is read after loading, if the library changes while loading, the node isn't cached
+	 *
+	 * @param mediaId media ID of the node
+	 * @return loaded node or null if the media ID is invalid
+	 */
+	@Nullable
+	private Node load(String mediaId) {
+		List<MediaItem> items = new LinkedList<>();
+		switch (mediaId) {
+			case ARTISTS:
+				for (Artist artist : mLibrary.getArtists()) {
+					items.add(createBrowsable(ARTIST + TYPE_SEPARATOR + artist.getId(), artist.getName(), null));
+				}
+				return new Node(items, null, mLibrary.getGeneration(), 0);
+
+			case ALBUMS:
+				for (Album album : mLibrary.getAlbums()) {
+					items.add(createBrowsable(ALBUM + TYPE_SEPARATOR + album.getId(), album.getName(), album.getArtist()));
+				}
+				return new Node(items, null, mLibrary.getGeneration(), 0);
+
+			case GENRES:
+				for (Genre genre : mLibrary.getGenres()) {
+					StringBuilder ids = new StringBuilder();
+					for (long id : genre.getGenreIds()) {
+						if (ids.length() > 0)
+							ids.append(',');
+						ids.append(id);
+					}
+					items.add(createBrowsable(GENRE + TYPE_SEPARATOR + ids, genre.getName(), null));
+				}
+				return new Node(items, null, mLibrary.getGeneration(), 0);
+
+			case FOLDERS:
+				for (String folder : mLibrary.getFolders()) {
+					items.add(createBrowsable(FOLDER + TYPE_SEPARATOR + folder, new File(folder).getName(), null));
+				}
+				return new Node(items, null, mLibrary.getGeneration(), 0);
+
+			case PLAYLISTS:
+				Cursor cursor = CursorFactory.makePlaylistCursor(mContext);
+				if (cursor != null) {
+					if (cursor.moveToFirst()) {
+						do {
+							items.add(createBrowsable(PLAYLIST + TYPE_SEPARATOR + cursor.getLong(0), cursor.getString(1), null));
+						} while (cursor.moveToNext());
+					}
+					cursor.close();
+				}
+				return new Node(items, null, -1, SystemClock.elapsedRealtime() + MAX_AGE);
+
+			case RECENT:
+				cursor = CursorFactory.makeRecentCursor(mContext);
+				if (cursor != null) {
+					if (cursor.moveToFirst()) {
+						do {
+							items.add(createBrowsable(ALBUM + TYPE_SEPARATOR + cursor.getLong(0), cursor.getString(1), cursor.getString(2)));
+						} while (cursor.moveToNext());
+					}
+					cursor.close();
+				}
+				return new Node(items, null, -1, SystemClock.elapsedRealtime() + MAX_AGE);
+		}
+		int separator = mediaId.indexOf(TYPE_SEPARATOR);
+		if (separator < 0)
+			return null;
+		String type = mediaId.substring(0, separator);
+		String value = mediaId.substring(separator + 1);
+		try {
+			switch (type) {
+				case ARTIST:
+					return createTrackNode(mediaId, mLibrary.getArtistSongs(Long.parseLong(value)), mLibrary.getGeneration(), 0);
+
+				case ALBUM:
+					return createTrackNode(mediaId, mLibrary.getAlbumSongs(Long.parseLong(value)), mLibrary.getGeneration(), 0);
+
+				case GENRE:
+					String[] values = value.split(",");
+					long[] ids = new long[values.length];
+					for (int i = 0; i < values.length; i++) {
+						ids[i] = Long.parseLong(values[i]);
+					}
+					return createTrackNode(mediaId, mLibrary.getGenreSongs(ids), mLibrary.getGeneration(), 0);
+
+				case FOLDER:
+					return createTrackNode(mediaId, mLibrary.getFolderSongs(value), mLibrary.getGeneration(), 0);
+
+				case PLAYLIST:
+					List<Song> songs = new LinkedList<>();
+					Cursor cursor = CursorFactory.makePlaylistSongCursor(mContext, Long.parseLong(value));
+					if (cursor != null) {
+						if (cursor.moveToFirst()) {
+							do {
+								songs.add(new Song(cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getString(3), cursor.getLong(4)));
+							} while (cursor.moveToNext());
+						}
+						cursor.close();
+					}
+					return createTrackNode(mediaId, songs, -1, SystemClock.elapsedRealtime() + MAX_AGE);
+			}
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * create a node with playable tracks
+	 *
+	 * @param parentId   media ID of the node
+	 * @param songs      tracks of the node
+	 * @param generation generation of the library index used to load the tracks or -1
+	 * @param expires    time the node expires or 0
+	 */
+	private Node createTrackNode(String parentId, List<Song> songs, int generation, long expires) {
+		List<MediaItem> items = new ArrayList<>(songs.size());
+		long[] tracks = new long[songs.size()];
+		int i = 0;
+		for (Song song : songs) {
+			MediaDescriptionCompat description = new MediaDescriptionCompat.Builder()
+					.setMediaId(parentId + TRACK_SEPARATOR + song.getId())
+					.setTitle(song.getName())
+					.setSubtitle(song.getArtist())
+					.setDescription(song.getAlbum())
+					.build();
+			items.add(new MediaItem(description, MediaItem.FLAG_PLAYABLE));
+			tracks[i++] = song.getId();
+		}
+		return new Node(items, tracks, generation, expires);
+	}
+
+	/**
+	 * create a browsable media item
+	 */
+	private MediaItem createBrowsable(String mediaId, String title, @Nullable String subtitle) {
+		MediaDescriptionCompat description = new MediaDescriptionCompat.Builder()
+				.setMediaId(mediaId)
+				.setTitle(title)
+				.setSubtitle(subtitle)
+				.build();
+		return new MediaItem(description, MediaItem.FLAG_BROWSABLE);
+	}
+
+	/**
+	 * get the requested page of a node
+	 *
+	 * @param items   all children of the node
+	 * @param options browse options containing the page and page size
+	 * @return children of the page or all children if no page is requested
+	 */
+	private static List<MediaItem> getPage(List<MediaItem> items, Bundle options) {
+		int page = options.getInt(MediaBrowserCompat.EXTRA_PAGE, -1);
+		int pageSize = options.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, -1);
+		if (page < 0 || pageSize < 1) {
+			return new ArrayList<>(items);
+		}
+		long start = (long) page * pageSize;
+		if (start >= items.size()) {
+			return Collections.emptyList();
+		}
+		int end = (int) Math.min(start + pageSize, items.size());
+		return new ArrayList<>(items.subList((int) start, end));
+	}
+
+	/**
+	 * cached children of a node
+	 */
+	private static final class Node {
+
+		/**
+		 * media items of the children
+		 */
+		final List<MediaItem> items;
+
+		/**
+		 * track IDs of the playable children or null if the children are browsable
+		 */
+		@Nullable
+		final long[] tracks;
+
+		/**
+		 * generation of the library index the node was loaded from or -1
+		 */
+		final int generation;
+
+		/**
+		 * time the node expires, used for nodes not stored in the library index, or 0
+		 */
+		final long expires;
+
+		Node(List<MediaItem> items, @Nullable long[] tracks, int generation, long expires) {
+			this.items = items;
+			this.tracks = tracks;
+			this.generation = generation;
+			this.expires = expires;
+		}
+	}
+}
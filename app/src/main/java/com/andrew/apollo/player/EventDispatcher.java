@@ -0,0 +1,221 @@
+package com.andrew.apollo.player;
+
+import static com.andrew.apollo.MusicPlaybackService.APOLLO_PACKAGE_NAME;
+import static com.andrew.apollo.MusicPlaybackService.META_CHANGED;
+import static com.andrew.apollo.MusicPlaybackService.MUSIC_PACKAGE_NAME;
+import static com.andrew.apollo.MusicPlaybackService.PLAYSTATE_CHANGED;
+import static com.andrew.apollo.MusicPlaybackService.QUEUE_CHANGED;
+import static com.andrew.apollo.MusicPlaybackService.REFRESH;
+import static com.andrew.apollo.MusicPlaybackService.REPEATMODE_CHANGED;
+import static com.andrew.apollo.MusicPlaybackService.SHUFFLEMODE_CHANGED;
+
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.andrew.apollo.MusicPlaybackService;
+import com.andrew.apollo.receiver.WidgetBroadcastReceiver;
+import com.andrew.apollo.widgets.AppWidgetBase;
+
+/**
+ * Collects the change events of the playback service and dispatches them after a short delay.
+ * Events arriving within the delay are merged into a single broadcast containing all changes,
+ * widgets are only updated with the information that has really changed since the last dispatch.
+ */
+public class EventDispatcher {
+
+	/**
+	 * extra of the merged broadcast containing all changed actions sorted by priority
+	 */
+	public static final String EXTRA_CHANGES = "changes";
+
+	/**
+	 * time in milliseconds to wait for more events after the last event
+	 */
+	private static final long DELAY = 50;
+
+	/**
+	 * max time in milliseconds an event is delayed
+	 */
+	private static final long MAX_DELAY = 250;
+
+	/**
+	 * change actions sorted by priority. The action with the highest priority is used for the merged broadcast
+	 */
+	private static final String[] ACTIONS = {
+			META_CHANGED, PLAYSTATE_CHANGED, SHUFFLEMODE_CHANGED, REPEATMODE_CHANGED, REFRESH, QUEUE_CHANGED
+	};
+
+	private final MusicPlaybackService mService;
+	private final WidgetBroadcastReceiver mWidgets;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * sends the pending events
+	 */
+	private final Runnable mFlush = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	/**
+	 * flags of the pending actions, bit index is the index of {@link #ACTIONS}
+	 */
+	private int mPending = 0;
+
+	/**
+	 * time of the first pending event, see {@link SystemClock#uptimeMillis()}
+	 */
+	private long mFirstEvent = 0;
+
+	/**
+	 * playback state of the last widget update or null if the widgets were never updated
+	 */
+	@Nullable
+	private PlaybackState mLastState;
+
+	/**
+	 * statistics
+	 */
+	private int mEventCount = 0;
+	private int mEmitCount = 0;
+
+	/**
+	 * @param service service used to send the broadcasts
+	 * @param widgets receiver used to update the widgets
+	 */
+	public EventDispatcher(MusicPlaybackService service, WidgetBroadcastReceiver widgets) {
+		mService = service;
+		mWidgets = widgets;
+	}
+
+	/**
+	 * add a change event. The event is sent with all other events arriving within the delay
+	 *
+	 * @param what change action, see {@link #ACTIONS}
+	 */
+	public synchronized void dispatch(String what) {
+		int flag = 0;
+		for (int i = 0; i < ACTIONS.length; i++) {
+			if (ACTIONS[i].equals(what)) {
+				flag = 1 << i;
+				break;
+			}
+		}
+		if (flag == 0)
+			return;
+		long now = SystemClock.uptimeMillis();
+		if (mPending == 0) {
+			mFirstEvent = now;
+		}
+		mPending |= flag;
+		mEventCount++;
+		mHandler.removeCallbacks(mFlush);
+		mHandler.postAtTime(mFlush, Math.min(now + DELAY, mFirstEvent + MAX_DELAY));
+	}
+
+	/**
+	 * remove all pending events
+	 */
+	public synchronized void release() {
+		mHandler.removeCallbacks(mFlush);
+		mPending = 0;
+	}
+
+	/**
+	 * @return number of sent broadcasts
+	 */
+	public synchronized int getEmitCount() {
+		return mEmitCount;
+	}
+
+	/**
+	 * @return number of events merged into another broadcast
+	 */
+	public synchronized int getSuppressedCount() {
+		return mEventCount - mEmitCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@NonNull
+	@Override
+	public synchronized String toString() {
+		return "EventDispatcher{events=" + mEventCount + ", emitted=" + mEmitCount + ", suppressed=" + (mEventCount - mEmitCount) + "}";
+	}
+
+	/**
+	 * send the merged broadcast of all pending events and update the widgets
+	 */
+	private void flush() {
+		int pending;
+		synchronized (this) {
+			pending = mPending;
+			mPending = 0;
+			if (pending == 0)
+				return;
+			mEmitCount++;
+		}
+		String[] changes = new String[Integer.bitCount(pending)];
+		for (int i = 0, pos = 0; i < ACTIONS.length; i++) {
+			if ((pending & (1 << i)) != 0) {
+				changes[pos++] = ACTIONS[i];
+			}
+		}
+		PlaybackState state = mService.getPlaybackState();
+		Intent intent = new Intent(changes[0]);
+		intent.putExtra("id", state.getAudioId());
+		intent.putExtra("artist", state.getArtistName());
+		intent.putExtra("album", state.getAlbumName());
+		intent.putExtra("track", state.getTrackName());
+		intent.putExtra("playing", state.isPlaying());
+		intent.putExtra("isfavorite", state.isFavorite());
+		intent.putExtra(EXTRA_CHANGES, changes);
+		mService.sendBroadcast(intent);
+
+		Intent musicIntent = new Intent(intent);
+		musicIntent.setAction(changes[0].replace(APOLLO_PACKAGE_NAME, MUSIC_PACKAGE_NAME));
+		mService.sendBroadcast(musicIntent);
+
+		int widgetChanges = getChanges(mLastState, state);
+		mLastState = state;
+		if (widgetChanges != 0) {
+			mWidgets.updateWidgets(mService, widgetChanges);
+		}
+	}
+
+	/**
+	 * compare two playback states
+	 *
+	 * @param old     last playback state or null to update everything
+	 * @param current current playback state
+	 * @return widget change flags, see {@link AppWidgetBase#CHANGED_TRACK}
+	 */
+	private static int getChanges(@Nullable PlaybackState old, PlaybackState current) {
+		if (old == null) {
+			return AppWidgetBase.CHANGED_TRACK | AppWidgetBase.CHANGED_PLAYSTATE | AppWidgetBase.CHANGED_MODE;
+		}
+		int changes = 0;
+		if (old.getAudioId() != current.getAudioId() || old.getAlbumId() != current.getAlbumId()
+				|| !TextUtils.equals(old.getTrackName(), current.getTrackName())
+				|| !TextUtils.equals(old.getArtistName(), current.getArtistName())
+				|| !TextUtils.equals(old.getAlbumName(), current.getAlbumName())) {
+			changes |= AppWidgetBase.CHANGED_TRACK;
+		}
+		if (old.isPlaying() != current.isPlaying()) {
+			changes |= AppWidgetBase.CHANGED_PLAYSTATE;
+		}
+		if (old.getShuffleMode() != current.getShuffleMode() || old.getRepeatMode() != current.getRepeatMode()) {
+			changes |= AppWidgetBase.CHANGED_MODE;
+		}
+		return changes;
+	}
+}
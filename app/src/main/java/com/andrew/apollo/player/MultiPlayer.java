@@ -7,34 +7,77 @@ import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.media.MediaPlayer.OnCompletionListener;
 import android.media.MediaPlayer.OnErrorListener;
+import android.media.MediaPlayer.OnPreparedListener;
 import android.media.audiofx.AudioEffect;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
 import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.andrew.apollo.MusicPlaybackService;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * custom MediaPlayer implementation containing two MediaPlayer to switch fast tracks
+ * custom MediaPlayer implementation containing a MediaPlayer for the current track
+ * and a pipeline of MediaPlayers preparing the next tracks in the background.
+ * The first prepared player of the pipeline is attached with {@link MediaPlayer#setNextMediaPlayer}
+ * for gapless playback, tracks which can't be prepared are skipped.
  */
-public class MultiPlayer implements OnErrorListener, OnCompletionListener {
+public class MultiPlayer implements OnErrorListener, OnCompletionListener, OnPreparedListener {
+
+	/**
+	 * default number of tracks to prepare ahead
+	 */
+	public static final int DEFAULT_LOOK_AHEAD = 2;
+
+	/**
+	 * states of a prepared player
+	 */
+	private static final int STATE_PREPARING = 0;
+	private static final int STATE_PREPARED = 1;
+	private static final int STATE_FAILED = 2;
 
 	private final WeakReference<MusicPlaybackService> mService;
 
 	private Handler mHandler;
 
-	private MediaPlayer mCurrentMediaPlayer;
+	private volatile MediaPlayer mCurrentMediaPlayer;
+
+	/**
+	 * players of the next tracks in playback order
+	 */
+	private List<NextPlayer> mNextPlayers = new ArrayList<>();
 
+	/**
+	 * player attached to the current player as next player
+	 */
 	@Nullable
-	private MediaPlayer mNextMediaPlayer;
+	private NextPlayer mAttachedPlayer;
+
+	/**
+	 * number of tracks to prepare ahead
+	 */
+	private int mLookAhead = DEFAULT_LOOK_AHEAD;
+
+	/**
+	 * prepare latency statistics, see {@link #dump(PrintWriter)}
+	 */
+	private int mPrepareCount = 0;
+	private long mPrepareTime = 0;
+	private long mMaxPrepareTime = 0;
+	private int mPrepareFailures = 0;
 
-	private boolean mIsInitialized = false;
+	private volatile boolean mIsInitialized = false;
 
 	/**
 	 * Constructor of <code>MultiPlayer</code>
@@ -50,7 +93,15 @@ public class MultiPlayer implements OnErrorListener, OnCompletionListener {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public boolean onError(MediaPlayer mp, int what, int extra) {
+	public synchronized boolean onError(MediaPlayer mp, int what, int extra) {
+		NextPlayer next = findNextPlayer(mp);
+		if (next != null) {
+			// next track can't be played, skip it
+			next.fail();
+			mPrepareFailures++;
+			attachNextPlayer();
+			return true;
+		}
 		if (what == MediaPlayer.MEDIA_ERROR_SERVER_DIED) {
 			mIsInitialized = false;
 			mCurrentMediaPlayer.reset();
@@ -64,65 +115,170 @@ public class MultiPlayer implements OnErrorListener, OnCompletionListener {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void onCompletion(MediaPlayer mp) {
-		if (mp == mCurrentMediaPlayer && mNextMediaPlayer != null) {
-			// switch to next player
+	public synchronized void onCompletion(MediaPlayer mp) {
+		if (mp == mCurrentMediaPlayer && mAttachedPlayer != null) {
+			// switch to next player, skipped tracks are removed from the pipeline
+			NextPlayer attached = mAttachedPlayer;
+			int index = mNextPlayers.indexOf(attached);
 			mCurrentMediaPlayer.release();
-			mCurrentMediaPlayer = mNextMediaPlayer;
-			mNextMediaPlayer = null;
-			//
-			mHandler.sendEmptyMessage(MusicPlaybackService.TRACK_WENT_TO_NEXT);
-		} else {
+			mCurrentMediaPlayer = attached.player;
+			attached.player = null;
+			mAttachedPlayer = null;
+			for (int i = 0; i <= index; i++) {
+				mNextPlayers.remove(0).release();
+			}
+			attachNextPlayer();
+			// send the number of skipped tracks
+			mHandler.sendMessage(mHandler.obtainMessage(MusicPlaybackService.TRACK_WENT_TO_NEXT, index, 0));
+		} else if (mp == mCurrentMediaPlayer) {
 			mHandler.sendEmptyMessage(MusicPlaybackService.TRACK_ENDED);
 		}
 	}
 
 	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void onPrepared(MediaPlayer mp) {
+		NextPlayer next = findNextPlayer(mp);
+		if (next != null) {
+			next.state = STATE_PREPARED;
+			addLatency(SystemClock.elapsedRealtime() - next.startTime);
+			attachNextPlayer();
+		}
+	}
+
+	/**
+	 * open a track for playback. If the track is already prepared by the pipeline, the prepared player is used
+	 *
 	 * @param path The path of the file, or the http/rtsp URL of the stream
 	 *             you want to play
 	 */
 	public void setDataSource(String path) {
-		mIsInitialized = setDataSourceImpl(mCurrentMediaPlayer, path);
-		if (mIsInitialized) {
-			resetNextPlayer();
+		MediaPlayer player;
+		synchronized (this) {
+			detachNextPlayer();
+			for (NextPlayer next : mNextPlayers) {
+				if (next.path.equals(path) && next.state == STATE_PREPARED) {
+					// use prepared player
+					mNextPlayers.remove(next);
+					mCurrentMediaPlayer.release();
+					mCurrentMediaPlayer = next.player;
+					next.player = null;
+					mIsInitialized = true;
+					attachNextPlayer();
+					return;
+				}
+			}
+			mIsInitialized = false;
+			player = mCurrentMediaPlayer;
+		}
+		// prepare without holding the lock, so the callbacks of the next players are not blocked
+		long startTime = SystemClock.elapsedRealtime();
+		boolean prepared = setDataSourceImpl(player, path);
+		synchronized (this) {
+			if (player == mCurrentMediaPlayer) {
+				mIsInitialized = prepared;
+			}
+			if (prepared) {
+				addLatency(SystemClock.elapsedRealtime() - startTime);
+				attachNextPlayer();
+			} else {
+				mPrepareFailures++;
+			}
 		}
 	}
 
 	/**
-	 * Set the MediaPlayer to start when this MediaPlayer finishes playback.
+	 * set the next tracks to prepare in playback order. The first track is the next track to play,
+	 * if a track can't be prepared, the following track is played instead.
+	 * Players of tracks not contained anymore are released.
 	 *
-	 * @param path The path of the file, or the http/rtsp URL of the stream
-	 *             you want to play
+	 * @param paths paths of the next tracks
 	 */
-	public void setNextDataSource(@NonNull String path) {
-		try {
-			mNextMediaPlayer = createPlayer();
-			mNextMediaPlayer.setAudioSessionId(getAudioSessionId());
-			if (setDataSourceImpl(mNextMediaPlayer, path)) {
-				// prepare next player
-				mCurrentMediaPlayer.setNextMediaPlayer(mNextMediaPlayer);
+	public synchronized void setNextDataSources(@NonNull String[] paths) {
+		List<NextPlayer> nextPlayers = new ArrayList<>(mLookAhead);
+		for (int i = 0; i < paths.length && i < mLookAhead; i++) {
+			NextPlayer next = null;
+			// reuse player of the previous pipeline
+			for (NextPlayer player : mNextPlayers) {
+				if (player.path.equals(paths[i])) {
+					next = player;
+					break;
+				}
+			}
+			if (next != null) {
+				mNextPlayers.remove(next);
 			} else {
-				// an error occured, reset next player
-				resetNextPlayer();
+				next = new NextPlayer(paths[i]);
+				prepareAsync(next);
 			}
-		} catch (Exception err) {
-			err.printStackTrace();
+			nextPlayers.add(next);
 		}
+		// release remaining players
+		for (NextPlayer next : mNextPlayers) {
+			if (next == mAttachedPlayer) {
+				detachNextPlayer();
+			}
+			next.release();
+		}
+		mNextPlayers = nextPlayers;
+		attachNextPlayer();
 	}
 
 	/**
-	 * remove next player
+	 * remove all next players
 	 */
-	public void resetNextPlayer() {
-		try {
-			mCurrentMediaPlayer.setNextMediaPlayer(null);
-			if (mNextMediaPlayer != null) {
-				mNextMediaPlayer.release();
-				mNextMediaPlayer = null;
+	public synchronized void resetNextPlayer() {
+		detachNextPlayer();
+		for (NextPlayer next : mNextPlayers) {
+			next.release();
+		}
+		mNextPlayers.clear();
+	}
+
+	/**
+	 * set the number of tracks to prepare ahead
+	 *
+	 * @param count number of tracks, at least 1
+	 */
+	public synchronized void setLookAhead(int count) {
+		mLookAhead = Math.max(count, 1);
+	}
+
+	/**
+	 * @return number of tracks to prepare ahead
+	 */
+	public synchronized int getLookAhead() {
+		return mLookAhead;
+	}
+
+	/**
+	 * print the prepare latency statistics, used by the service dump
+	 *
+	 * @param writer writer of the dump
+	 */
+	public synchronized void dump(PrintWriter writer) {
+		writer.println("look ahead: " + mLookAhead);
+		writer.println("prepared tracks: " + mPrepareCount + ", failed: " + mPrepareFailures);
+		if (mPrepareCount > 0) {
+			writer.println("prepare latency: avg " + mPrepareTime / mPrepareCount + "ms, max " + mMaxPrepareTime + "ms");
+		}
+	}
+
+	/**
+	 * check if a track can be played
+	 *
+	 * @param path path of the track
+	 * @return false if the pipeline failed to prepare this track
+	 */
+	public synchronized boolean isPlayable(String path) {
+		for (NextPlayer next : mNextPlayers) {
+			if (next.path.equals(path)) {
+				return next.state != STATE_FAILED;
 			}
-		} catch (Exception err) {
-			err.printStackTrace();
 		}
+		return true;
 	}
 
 	/**
@@ -150,8 +306,10 @@ public class MultiPlayer implements OnErrorListener, OnCompletionListener {
 
 	/**
 	 * Resets the MediaPlayer to its uninitialized state.
+	 * Prepared next tracks are kept, so they can be opened without delay
 	 */
-	public void stop() {
+	public synchronized void stop() {
+		detachNextPlayer();
 		mCurrentMediaPlayer.reset();
 		mIsInitialized = false;
 	}
@@ -159,8 +317,9 @@ public class MultiPlayer implements OnErrorListener, OnCompletionListener {
 	/**
 	 * Releases resources associated with this MediaPlayer object.
 	 */
-	public void release() {
+	public synchronized void release() {
 		stop();
+		resetNextPlayer();
 		mCurrentMediaPlayer.release();
 	}
 
@@ -232,6 +391,95 @@ public class MultiPlayer implements OnErrorListener, OnCompletionListener {
 		return player;
 	}
 
+	/**
+	 * start preparing a next track in the background
+	 */
+	private void prepareAsync(NextPlayer next) {
+		MusicPlaybackService musicService = mService.get();
+		if (musicService == null) {
+			next.fail();
+			return;
+		}
+		try {
+			next.player = createPlayer();
+			next.player.setAudioSessionId(getAudioSessionId());
+			setDataSourceInternal(musicService, next.player, next.path);
+			next.player.setOnPreparedListener(this);
+			next.player.setOnCompletionListener(this);
+			next.player.setOnErrorListener(this);
+			next.player.prepareAsync();
+		} catch (Exception err) {
+			// file is missing or not readable
+			err.printStackTrace();
+			next.fail();
+			mPrepareFailures++;
+		}
+	}
+
+	/**
+	 * attach the first playable next player to the current player
+	 */
+	private void attachNextPlayer() {
+		if (!mIsInitialized) {
+			return;
+		}
+		NextPlayer attach = null;
+		for (NextPlayer next : mNextPlayers) {
+			if (next.state != STATE_FAILED) {
+				if (next.state == STATE_PREPARED) {
+					attach = next;
+				}
+				// wait until the first playable track is prepared
+				break;
+			}
+		}
+		if (attach != mAttachedPlayer) {
+			try {
+				mCurrentMediaPlayer.setNextMediaPlayer(attach != null ? attach.player : null);
+				mAttachedPlayer = attach;
+			} catch (Exception err) {
+				err.printStackTrace();
+				mAttachedPlayer = null;
+			}
+		}
+	}
+
+	/**
+	 * remove the next player from the current player
+	 */
+	private void detachNextPlayer() {
+		if (mAttachedPlayer != null) {
+			try {
+				mCurrentMediaPlayer.setNextMediaPlayer(null);
+			} catch (Exception err) {
+				err.printStackTrace();
+			}
+			mAttachedPlayer = null;
+		}
+	}
+
+	/**
+	 * find the next player using a MediaPlayer instance
+	 */
+	@Nullable
+	private NextPlayer findNextPlayer(MediaPlayer mp) {
+		for (NextPlayer next : mNextPlayers) {
+			if (next.player == mp) {
+				return next;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * add the prepare latency of a track to the statistics
+	 */
+	private void addLatency(long latency) {
+		mPrepareCount++;
+		mPrepareTime += latency;
+		mMaxPrepareTime = Math.max(mMaxPrepareTime, latency);
+	}
+
 	/**
 	 * @param player The {@link MediaPlayer} to use
 	 * @param path   The path of the file, or the http/rtsp URL of the stream
@@ -245,15 +493,7 @@ public class MultiPlayer implements OnErrorListener, OnCompletionListener {
 			try {
 				player.reset();
 				player.setOnPreparedListener(null);
-				if (path.startsWith("content://")) {
-					ContentResolver resolver = musicService.getApplicationContext().getContentResolver();
-					ParcelFileDescriptor pfd = resolver.openFileDescriptor(Uri.parse(path), "r");
-					player.setDataSource(pfd.getFileDescriptor(), 0, pfd.getStatSize());
-					pfd.close();
-				} else {
-					player.setDataSource(path);
-					player.setAudioStreamType(AudioManager.STREAM_MUSIC);
-				}
+				setDataSourceInternal(musicService, player, path);
 				player.prepare();
 			} catch (Exception err) {
 				err.printStackTrace();
@@ -269,4 +509,60 @@ public class MultiPlayer implements OnErrorListener, OnCompletionListener {
 		}
 		return false;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * set the data source of a player
+	 *
+	 * @param player The {@link MediaPlayer} to use
+	 * @param path   The path of the file, or the http/rtsp URL of the stream
+	 */
+	private void setDataSourceInternal(MusicPlaybackService musicService, MediaPlayer player, @NonNull String path) throws IOException {
+		if (path.startsWith("content://")) {
+			ContentResolver resolver = musicService.getApplicationContext().getContentResolver();
+			ParcelFileDescriptor pfd = resolver.openFileDescriptor(Uri.parse(path), "r");
+			if (pfd == null) {
+				throw new FileNotFoundException(path);
+			}
+			player.setDataSource(pfd.getFileDescriptor(), 0, pfd.getStatSize());
+			pfd.close();
+		} else {
+			player.setDataSource(path);
+			player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+		}
+	}
+
+	/**
+	 * player of an upcoming track
+	 */
+	private static final class NextPlayer {
+
+		final String path;
+		final long startTime;
+		@Nullable
+		MediaPlayer player;
+		int state = STATE_PREPARING;
+
+		NextPlayer(String path) {
+			this.path = path;
+			this.startTime = SystemClock.elapsedRealtime();
+		}
+
+		/**
+		 * mark track as not playable and release the player
+		 */
+		void fail() {
+			state = STATE_FAILED;
+			release();
+		}
+
+		/**
+		 * release player
+		 */
+		void release() {
+			if (player != null) {
+				player.release();
+				player = null;
+			}
+		}
+	}
+}
@@ -77,7 +77,7 @@ public class MusicPlayerHandler extends Handler {
 				break;
 
 			case TRACK_WENT_TO_NEXT:
-				service.onWentToNext();
+				service.onWentToNext(msg.arg1);
 				break;
 
 			case TRACK_ENDED:
@@ -0,0 +1,161 @@
+package com.andrew.apollo.player;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * selects random tracks of the library for the party shuffle mode.
+ * Recently selected tracks are excluded until they leave the history. The history is a ring buffer,
+ * the library positions are partitioned into available and recently selected tracks,
+ * so selecting a track, checking the history and expiring old entries takes constant time.
+ */
+public class PartyShuffle {
+
+	/**
+	 * IDs of all library tracks
+	 */
+	private long[] mTracks = new long[0];
+
+	/**
+	 * permutation of all library positions. The first {@link #mAvailable} positions can be selected,
+	 * the other positions are in the history
+	 */
+	private int[] mOrder = new int[0];
+
+	/**
+	 * index of every library position in {@link #mOrder}
+	 */
+	private int[] mIndex = new int[0];
+
+	/**
+	 * ring buffer with the library positions of the recently selected tracks
+	 */
+	private int[] mHistory = new int[0];
+
+	/**
+	 * position of the oldest history entry
+	 */
+	private int mHistoryStart = 0;
+
+	/**
+	 * number of history entries
+	 */
+	private int mHistorySize = 0;
+
+	/**
+	 * number of tracks which can be selected
+	 */
+	private int mAvailable = 0;
+
+	/**
+	 * max number of history entries
+	 */
+	private final int mMaxHistory;
+
+	private final Random mRandom;
+
+	/**
+	 * @param maxHistory max number of recently selected tracks to exclude
+	 */
+	public PartyShuffle(int maxHistory) {
+		this(maxHistory, new Random());
+	}
+
+	/**
+	 * @param maxHistory max number of recently selected tracks to exclude
+	 * @param random     random generator used to select the tracks
+	 */
+	public PartyShuffle(int maxHistory, Random random) {
+		mMaxHistory = maxHistory;
+		mRandom = random;
+	}
+
+	/**
+	 * set the tracks to select from. The history is kept if the tracks didn't change
+	 *
+	 * @param tracks IDs of all library tracks
+	 */
+	public synchronized void setTracks(@NonNull long[] tracks) {
+		if (Arrays.equals(mTracks, tracks))
+			return;
+		int size = tracks.length;
+		mTracks = tracks;
+		mOrder = new int[size];
+		mIndex = new int[size];
+		for (int i = 0; i < size; i++) {
+			mOrder[i] = i;
+			mIndex[i] = i;
+		}
+		// keep at least half of the library selectable
+		mHistory = new int[Math.min(mMaxHistory, size / 2)];
+		mHistoryStart = 0;
+		mHistorySize = 0;
+		mAvailable = size;
+	}
+
+	/**
+	 * select a random track which isn't in the history
+	 *
+	 * @return track ID or -1 if there are no tracks
+	 */
+	public synchronized long next() {
+		if (mAvailable == 0)
+			return -1;
+		int pos = mOrder[mRandom.nextInt(mAvailable)];
+		// move the selected track behind the available tracks
+		swap(pos, mOrder[--mAvailable]);
+		if (mHistory.length > 0) {
+			if (mHistorySize == mHistory.length) {
+				// make the oldest track selectable again
+				int oldest = mHistory[mHistoryStart];
+				swap(oldest, mOrder[mAvailable++]);
+				mHistory[mHistoryStart] = pos;
+				mHistoryStart = (mHistoryStart + 1) % mHistory.length;
+			} else {
+				mHistory[(mHistoryStart + mHistorySize) % mHistory.length] = pos;
+				mHistorySize++;
+			}
+		} else {
+			mAvailable++;
+		}
+		return mTracks[pos];
+	}
+
+	/**
+	 * check if a library track was selected recently
+	 *
+	 * @param pos library position of the track
+	 * @return true if the track is in the history
+	 */
+	public synchronized boolean isRecent(int pos) {
+		return pos >= 0 && pos < mIndex.length && mIndex[pos] >= mAvailable;
+	}
+
+	/**
+	 * @return number of library tracks
+	 */
+	public synchronized int size() {
+		return mTracks.length;
+	}
+
+	/**
+	 * remove all tracks and the history
+	 */
+	public synchronized void clear() {
+		setTracks(new long[0]);
+	}
+
+	/**
+	 * swap two library positions in {@link #mOrder}
+	 */
+	private void swap(int pos1, int pos2) {
+		int index1 = mIndex[pos1];
+		int index2 = mIndex[pos2];
+		mOrder[index1] = pos2;
+		mOrder[index2] = pos1;
+		mIndex[pos1] = index2;
+		mIndex[pos2] = index1;
+	}
+}
@@ -0,0 +1,280 @@
+package com.andrew.apollo.player;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * growable list of primitive longs used as queue for track IDs and track positions.
+ * Indexed access is O(1), inserts and removals are done with bulk array copies
+ */
+public class PlayQueue {
+
+	/**
+	 * initial capacity of a new queue
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * queue items, only the first {@link #mSize} entries are valid
+	 */
+	private long[] mItems;
+
+	/**
+	 * number of items in the queue
+	 */
+	private int mSize = 0;
+
+	/**
+	 * Constructor of <code>PlayQueue</code>
+	 */
+	public PlayQueue() {
+		mItems = new long[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Constructor of <code>PlayQueue</code>
+	 *
+	 * @param items initial items of the queue
+	 */
+	public PlayQueue(@NonNull long[] items) {
+		mItems = Arrays.copyOf(items, Math.max(items.length, DEFAULT_CAPACITY));
+		mSize = items.length;
+	}
+
+	/**
+	 * @return number of items in the queue
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * @return true if the queue has no items
+	 */
+	public boolean isEmpty() {
+		return mSize == 0;
+	}
+
+	/**
+	 * get item at position
+	 *
+	 * @param index position of the item
+	 * @return item value
+	 */
+	public long get(int index) {
+		checkIndex(index);
+		return mItems[index];
+	}
+
+	/**
+	 * replace item at position
+	 *
+	 * @param index position of the item
+	 * @param value new value
+	 */
+	public void set(int index, long value) {
+		checkIndex(index);
+		mItems[index] = value;
+	}
+
+	/**
+	 * append an item at the end of the queue
+	 *
+	 * @param value item to add
+	 */
+	public void add(long value) {
+		ensureCapacity(mSize + 1);
+		mItems[mSize++] = value;
+	}
+
+	/**
+	 * insert an item at a position
+	 *
+	 * @param index position to insert the item, existing items will be shifted
+	 * @param value item to add
+	 */
+	public void add(int index, long value) {
+		if (index < 0 || index > mSize)
+			throw new IndexOutOfBoundsException("index=" + index + " size=" + mSize);
+		ensureCapacity(mSize + 1);
+		System.arraycopy(mItems, index, mItems, index + 1, mSize - index);
+		mItems[index] = value;
+		mSize++;
+	}
+
+	/**
+	 * append items at the end of the queue
+	 *
+	 * @param values items to add
+	 */
+	public void addAll(@NonNull long[] values) {
+		addAll(mSize, values);
+	}
+
+	/**
+	 * insert items at a position
+	 *
+	 * @param index  position to insert the items, existing items will be shifted
+	 * @param values items to add
+	 */
+	public void addAll(int index, @NonNull long[] values) {
+		if (index < 0 || index > mSize)
+			throw new IndexOutOfBoundsException("index=" + index + " size=" + mSize);
+		ensureCapacity(mSize + values.length);
+		System.arraycopy(mItems, index, mItems, index + values.length, mSize - index);
+		System.arraycopy(values, 0, mItems, index, values.length);
+		mSize += values.length;
+	}
+
+	/**
+	 * replace all items of the queue
+	 *
+	 * @param values new items
+	 */
+	public void setAll(@NonNull long[] values) {
+		mSize = 0;
+		addAll(values);
+	}
+
+	/**
+	 * remove item at position
+	 *
+	 * @param index position of the item
+	 * @return removed item
+	 */
+	public long remove(int index) {
+		checkIndex(index);
+		long value = mItems[index];
+		removeRange(index, index);
+		return value;
+	}
+
+	/**
+	 * remove a range of items
+	 *
+	 * @param first position of the first item to remove
+	 * @param last  position of the last item to remove (inclusive)
+	 */
+	public void removeRange(int first, int last) {
+		if (first < 0 || last >= mSize || first > last)
+			throw new IndexOutOfBoundsException("first=" + first + " last=" + last + " size=" + mSize);
+		System.arraycopy(mItems, last + 1, mItems, first, mSize - last - 1);
+		mSize -= last - first + 1;
+	}
+
+	/**
+	 * remove the first items of the queue
+	 *
+	 * @param count number of items to remove from the head
+	 */
+	public void removeFirst(int count) {
+		if (count > 0) {
+			removeRange(0, Math.min(count, mSize) - 1);
+		}
+	}
+
+	/**
+	 * remove all items with the given value
+	 *
+	 * @param value item value to remove
+	 * @return number of removed items
+	 */
+	public int removeAll(long value) {
+		int dst = 0;
+		for (int src = 0; src < mSize; src++) {
+			if (mItems[src] != value) {
+				mItems[dst++] = mItems[src];
+			}
+		}
+		int removed = mSize - dst;
+		mSize = dst;
+		return removed;
+	}
+
+	/**
+	 * move a single item to a new position. Only the items between both positions are shifted
+	 *
+	 * @param from current position of the item
+	 * @param to   new position of the item
+	 */
+	public void move(int from, int to) {
+		checkIndex(from);
+		checkIndex(to);
+		long value = mItems[from];
+		if (from < to) {
+			System.arraycopy(mItems, from + 1, mItems, from, to - from);
+		} else if (from > to) {
+			System.arraycopy(mItems, to, mItems, to + 1, from - to);
+		}
+		mItems[to] = value;
+	}
+
+	/**
+	 * search for the first position of an item
+	 *
+	 * @param value item value
+	 * @return position of the item or -1 if not found
+	 */
+	public int indexOf(long value) {
+		for (int i = 0; i < mSize; i++) {
+			if (mItems[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * check if this queue equals an array
+	 *
+	 * @param values array to compare
+	 * @return true if the queue contains exactly the same items
+	 */
+	public boolean contentEquals(@NonNull long[] values) {
+		if (values.length != mSize)
+			return false;
+		for (int i = 0; i < mSize; i++) {
+			if (mItems[i] != values[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * remove all items
+	 */
+	public void clear() {
+		mSize = 0;
+	}
+
+	/**
+	 * @return a copy of the queue items
+	 */
+	@NonNull
+	public long[] toArray() {
+		return Arrays.copyOf(mItems, mSize);
+	}
+
+	/**
+	 * grow internal array if needed
+	 *
+	 * @param capacity minimum capacity
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > mItems.length) {
+			int newCapacity = Math.max(capacity, mItems.length + (mItems.length >> 1));
+			mItems = Arrays.copyOf(mItems, newCapacity);
+		}
+	}
+
+	/**
+	 * check if index is inside of the queue range
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= mSize) {
+			throw new IndexOutOfBoundsException("index=" + index + " size=" + mSize);
+		}
+	}
+}
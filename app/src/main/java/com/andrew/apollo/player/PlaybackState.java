@@ -0,0 +1,275 @@
+package com.andrew.apollo.player;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+/**
+ * immutable snapshot of the playback state, published by the playback service on every state change.
+ * The playback position is stored as an anchor with the time it was read,
+ * so the current position can be calculated without asking the player.
+ */
+public final class PlaybackState implements Parcelable {
+
+	/**
+	 * state used if nothing is loaded
+	 */
+	public static final PlaybackState EMPTY = new PlaybackState(-1, -1, -1, "", "", "", "", -1, -1, 0, false, false, 0, 0, -1, 0);
+
+	/**
+	 *
+	 */
+	public static final Creator<PlaybackState> CREATOR = new Creator<PlaybackState>() {
+
+		@Override
+		public PlaybackState createFromParcel(Parcel in) {
+			return new PlaybackState(in);
+		}
+
+		@Override
+		public PlaybackState[] newArray(int size) {
+			return new PlaybackState[size];
+		}
+	};
+
+	private final long audioId;
+	private final long artistId;
+	private final long albumId;
+	private final String trackName;
+	private final String artistName;
+	private final String albumName;
+	private final String path;
+	private final long duration;
+	private final int queuePosition;
+	private final int queueVersion;
+	private final boolean playing;
+	private final boolean favorite;
+	private final int shuffleMode;
+	private final int repeatMode;
+
+	/**
+	 * playback position in milliseconds at {@link #anchorTime}
+	 */
+	private final long anchorPosition;
+
+	/**
+	 * time the position was read, see {@link SystemClock#elapsedRealtime()}
+	 */
+	private final long anchorTime;
+
+	/**
+	 * @param audioId        ID of the current track or -1 if nothing is loaded
+	 * @param artistId       artist ID of the current track
+	 * @param albumId        album ID of the current track
+	 * @param trackName      name of the current track
+	 * @param artistName     artist name of the current track
+	 * @param albumName      album name of the current track
+	 * @param path           file path of the current track
+	 * @param duration       duration of the current track in milliseconds
+	 * @param queuePosition  position of the current track in the queue
+	 * @param queueVersion   version of the queue, changed every time the queue is modified
+	 * @param playing        true if the player is playing
+	 * @param favorite       true if the current track is a favorite
+	 * @param shuffleMode    current shuffle mode
+	 * @param repeatMode     current repeat mode
+	 * @param anchorPosition playback position in milliseconds
+	 * @param anchorTime     time the position was read
+	 */
+	public PlaybackState(long audioId, long artistId, long albumId, String trackName, String artistName, String albumName, String path, long duration,
+	                     int queuePosition, int queueVersion, boolean playing, boolean favorite, int shuffleMode, int repeatMode, long anchorPosition, long anchorTime) {
+		this.audioId = audioId;
+		this.artistId = artistId;
+		this.albumId = albumId;
+		this.trackName = trackName;
+		this.artistName = artistName;
+		this.albumName = albumName;
+		this.path = path;
+		this.duration = duration;
+		this.queuePosition = queuePosition;
+		this.queueVersion = queueVersion;
+		this.playing = playing;
+		this.favorite = favorite;
+		this.shuffleMode = shuffleMode;
+		this.repeatMode = repeatMode;
+		this.anchorPosition = anchorPosition;
+		this.anchorTime = anchorTime;
+	}
+
+	/**
+	 *
+	 */
+	private PlaybackState(Parcel in) {
+		audioId = in.readLong();
+		artistId = in.readLong();
+		albumId = in.readLong();
+		trackName = in.readString();
+		artistName = in.readString();
+		albumName = in.readString();
+		path = in.readString();
+		duration = in.readLong();
+		queuePosition = in.readInt();
+		queueVersion = in.readInt();
+		playing = in.readInt() != 0;
+		favorite = in.readInt() != 0;
+		shuffleMode = in.readInt();
+		repeatMode = in.readInt();
+		anchorPosition = in.readLong();
+		anchorTime = in.readLong();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeToParcel(Parcel dest, int flags) {
+		dest.writeLong(audioId);
+		dest.writeLong(artistId);
+		dest.writeLong(albumId);
+		dest.writeString(trackName);
+		dest.writeString(artistName);
+		dest.writeString(albumName);
+		dest.writeString(path);
+		dest.writeLong(duration);
+		dest.writeInt(queuePosition);
+		dest.writeInt(queueVersion);
+		dest.writeInt(playing ? 1 : 0);
+		dest.writeInt(favorite ? 1 : 0);
+		dest.writeInt(shuffleMode);
+		dest.writeInt(repeatMode);
+		dest.writeLong(anchorPosition);
+		dest.writeLong(anchorTime);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int describeContents() {
+		return 0;
+	}
+
+	/**
+	 * @return ID of the current track or -1 if nothing is loaded
+	 */
+	public long getAudioId() {
+		return audioId;
+	}
+
+	/**
+	 * @return artist ID of the current track or -1
+	 */
+	public long getArtistId() {
+		return artistId;
+	}
+
+	/**
+	 * @return album ID of the current track or -1
+	 */
+	public long getAlbumId() {
+		return albumId;
+	}
+
+	/**
+	 * @return name of the current track
+	 */
+	public String getTrackName() {
+		return trackName;
+	}
+
+	/**
+	 * @return artist name of the current track
+	 */
+	public String getArtistName() {
+		return artistName;
+	}
+
+	/**
+	 * @return album name of the current track
+	 */
+	public String getAlbumName() {
+		return albumName;
+	}
+
+	/**
+	 * @return file path of the current track
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return duration of the current track in milliseconds or -1 if nothing is loaded
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return position of the current track in the queue
+	 */
+	public int getQueuePosition() {
+		return queuePosition;
+	}
+
+	/**
+	 * @return version of the queue, changed every time the queue is modified
+	 */
+	public int getQueueVersion() {
+		return queueVersion;
+	}
+
+	/**
+	 * @return true if the player is playing
+	 */
+	public boolean isPlaying() {
+		return playing;
+	}
+
+	/**
+	 * @return true if the current track is a favorite
+	 */
+	public boolean isFavorite() {
+		return favorite;
+	}
+
+	/**
+	 * @return current shuffle mode
+	 */
+	public int getShuffleMode() {
+		return shuffleMode;
+	}
+
+	/**
+	 * @return current repeat mode
+	 */
+	public int getRepeatMode() {
+		return repeatMode;
+	}
+
+	/**
+	 * calculate the current playback position from the position anchor
+	 *
+	 * @return playback position in milliseconds or -1 if nothing is loaded
+	 */
+	public long getPosition() {
+		if (anchorPosition < 0 || !playing) {
+			return anchorPosition;
+		}
+		long position = anchorPosition + SystemClock.elapsedRealtime() - anchorTime;
+		if (duration > 0 && position > duration) {
+			return duration;
+		}
+		return position;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@NonNull
+	@Override
+	public String toString() {
+		return "PlaybackState{id=" + audioId + ", pos=" + queuePosition + ", playing=" + playing + ", position=" + anchorPosition + "}";
+	}
+}
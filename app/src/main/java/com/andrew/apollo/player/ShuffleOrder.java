@@ -0,0 +1,285 @@
+package com.andrew.apollo.player;
+
+import androidx.annotation.NonNull;
+
+import java.util.Random;
+
+/**
+ * lazily evaluated shuffle order of the queue positions.
+ * The order is a keyed Feistel permutation over a power of two range larger than the queue,
+ * so every step is calculated on demand and the order is fully described by a seed and a cursor.
+ * Positions outside of the queue are skipped, so the queue can grow within the range without a reshuffle.
+ */
+public class ShuffleOrder {
+
+	/**
+	 * number of Feistel rounds
+	 */
+	private static final int ROUNDS = 4;
+
+	/**
+	 * min number of bits of the permutation range
+	 */
+	private static final int MIN_BITS = 4;
+
+	/**
+	 * max number of bits of the permutation range
+	 */
+	private static final int MAX_BITS = 30;
+
+	/**
+	 * number of bits the range may be larger than needed for the queue before a new order is started.
+	 * Every step skips the positions outside of the queue, so a large range makes every step slow
+	 */
+	private static final int MAX_UNUSED_BITS = 2;
+
+	private final Random mRandom;
+
+	/**
+	 * key of the current permutation
+	 */
+	private long mSeed;
+
+	/**
+	 * number of bits of the permutation range
+	 */
+	private int mBits;
+
+	/**
+	 * number of bits of the halves used by the Feistel network
+	 */
+	private int mHalfBits;
+
+	/**
+	 * next step of the permutation
+	 */
+	private int mCursor;
+
+	/**
+	 * current queue size
+	 */
+	private int mSize;
+
+	/**
+	 *
+	 */
+	public ShuffleOrder() {
+		this(new Random());
+	}
+
+	/**
+	 * @param random random generator used to create the seeds
+	 */
+	public ShuffleOrder(Random random) {
+		mRandom = random;
+	}
+
+	/**
+	 * start a new shuffle order
+	 *
+	 * @param size queue size
+	 */
+	public void reset(int size) {
+		mSize = size;
+		// reserve space for appended tracks
+		setState(mRandom.nextLong(), getBits(size * 2L), 0);
+	}
+
+	/**
+	 * restore a saved shuffle order
+	 *
+	 * @param size   queue size
+	 * @param seed   saved seed, see {@link #getSeed()}
+	 * @param bits   saved range, see {@link #getBits()}
+	 * @param cursor saved cursor, see {@link #getCursor()}
+	 * @return true if the state is valid for the queue size
+	 */
+	public boolean restore(int size, long seed, int bits, int cursor) {
+		if (bits < MIN_BITS || bits > MAX_BITS || cursor < 0 || cursor > 1L << bits || size > 1L << bits || isOversized(size, bits))
+			return false;
+		mSize = size;
+		setState(seed, bits, cursor);
+		return true;
+	}
+
+	/**
+	 * update the queue size. The order is kept if the new size fits into the range,
+	 * a new order is started if the queue is larger than the range or much smaller
+	 *
+	 * @param size new queue size
+	 */
+	public void setSize(int size) {
+		if (mBits == 0 || size > 1L << mBits || isOversized(size, mBits)) {
+			reset(size);
+		} else {
+			mSize = size;
+		}
+	}
+
+	/**
+	 * @return current queue size
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * get the next queue position without moving the cursor
+	 *
+	 * @return queue position or -1 if all positions were returned
+	 */
+	public int peek() {
+		return peek(0);
+	}
+
+	/**
+	 * get an upcoming queue position without moving the cursor
+	 *
+	 * @param offset number of positions to skip
+	 * @return queue position or -1 if the order has ended before
+	 */
+	public int peek(int offset) {
+		long step = mCursor;
+		long range = 1L << mBits;
+		for (int i = 0; step < range; step++) {
+			int pos = permute((int) step);
+			if (pos < mSize && i++ == offset) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * get the next queue position and move the cursor behind it
+	 *
+	 * @return queue position or -1 if all positions were returned
+	 */
+	public int next() {
+		long range = 1L << mBits;
+		while (mCursor < range) {
+			int pos = permute(mCursor++);
+			if (pos < mSize) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * move the cursor back to the last returned queue position
+	 *
+	 * @return queue position or -1 if there is no previous position
+	 */
+	public int previous() {
+		while (mCursor > 0) {
+			int pos = permute(--mCursor);
+			if (pos < mSize) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return true if all queue positions were returned
+	 */
+	public boolean isFinished() {
+		return peek() < 0;
+	}
+
+	/**
+	 * @return seed of the current order
+	 */
+	public long getSeed() {
+		return mSeed;
+	}
+
+	/**
+	 * @return number of bits of the permutation range
+	 */
+	public int getBits() {
+		return mBits;
+	}
+
+	/**
+	 * @return cursor of the current order
+	 */
+	public int getCursor() {
+		return mCursor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@NonNull
+	@Override
+	public String toString() {
+		return "ShuffleOrder{size=" + mSize + ", bits=" + mBits + ", cursor=" + mCursor + "}";
+	}
+
+	/**
+	 * set the state of the permutation
+	 */
+	private void setState(long seed, int bits, int cursor) {
+		mSeed = seed;
+		mBits = bits;
+		mHalfBits = (bits + 1) / 2;
+		mCursor = cursor;
+	}
+
+	/**
+	 * map a step to a position of the range. The Feistel network permutes a range of 2 * {@link #mHalfBits} bits,
+	 * values outside of the range are permuted again until they fit (cycle walking)
+	 */
+	private int permute(int step) {
+		long value = step;
+		do {
+			value = feistel(value);
+		} while (value >>> mBits != 0);
+		return (int) value;
+	}
+
+	/**
+	 * balanced Feistel network over 2 * {@link #mHalfBits} bits
+	 */
+	private long feistel(long value) {
+		long mask = (1L << mHalfBits) - 1;
+		long left = value >>> mHalfBits;
+		long right = value & mask;
+		for (int round = 0; round < ROUNDS; round++) {
+			long next = left ^ (mix(mSeed + round, right) & mask);
+			left = right;
+			right = next;
+		}
+		return left << mHalfBits | right;
+	}
+
+	/**
+	 * round function, mixes the key and the value (SplitMix64 finalizer)
+	 */
+	private static long mix(long key, long value) {
+		long z = key * 0x9E3779B97F4A7C15L + value;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * check if a range is much larger than needed for a queue size
+	 */
+	private static boolean isOversized(int size, int bits) {
+		return bits - getBits(size * 2L) > MAX_UNUSED_BITS;
+	}
+
+	/**
+	 * get the number of bits of a range containing a size
+	 */
+	private static int getBits(long size) {
+		int bits = MIN_BITS;
+		while (bits < MAX_BITS && 1L << bits < size) {
+			bits++;
+		}
+		return bits;
+	}
+}
@@ -0,0 +1,53 @@
+package com.andrew.apollo.provider;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * removes rows of many IDs from a table in a single transaction with batched IN statements
+ */
+final class BatchDelete {
+
+	/**
+	 * max number of IDs of a single statement
+	 */
+	static final int MAX_IDS = 500;
+
+	private BatchDelete() {
+	}
+
+	/**
+	 * delete all rows matching the IDs
+	 *
+	 * @param database database to delete from
+	 * @param table    table name
+	 * @param column   ID column
+	 * @param ids      IDs of the rows to delete
+	 * @return number of deleted rows
+	 */
+	static int delete(SQLiteDatabase database, String table, String column, long[] ids) {
+		if (ids.length == 0)
+			return 0;
+		int count = 0;
+		StringBuilder where = new StringBuilder();
+		database.beginTransaction();
+		try {
+			for (int start = 0; start < ids.length; start += MAX_IDS) {
+				int end = Math.min(start + MAX_IDS, ids.length);
+				where.setLength(0);
+				where.append(column).append(" IN (");
+				for (int i = start; i < end; i++) {
+					if (i > start) {
+						where.append(',');
+					}
+					where.append(ids[i]);
+				}
+				where.append(')');
+				count += database.delete(table, where.toString(), null);
+			}
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+		}
+		return count;
+	}
+}
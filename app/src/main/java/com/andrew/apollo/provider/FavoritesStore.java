@@ -18,10 +18,14 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import androidx.annotation.NonNull;
 
 import com.andrew.apollo.model.Song;
+import com.andrew.apollo.provider.PlayStatsWriter.TrackPlay;
+
+import java.util.Collection;
 
 /**
  * @author Andrew Neal (andrewdneal@gmail.com)
@@ -55,6 +59,16 @@ public class FavoritesStore extends SQLiteOpenHelper {
 	 */
 	private static final String FAVORITE_SELECT = FavoriteColumns.ID + "=?";
 
+	/**
+	 * statement to increase the play count of an existing favorite track
+	 */
+	private static final String FAVORITE_PLAYCOUNT_UPDATE = "UPDATE " + FavoriteColumns.NAME + " SET "
+			+ FavoriteColumns.PLAYCOUNT + "=" + FavoriteColumns.PLAYCOUNT + "+?,"
+			+ FavoriteColumns.SONGNAME + "=?,"
+			+ FavoriteColumns.ALBUMNAME + "=?,"
+			+ FavoriteColumns.ARTISTNAME + "=?,"
+			+ FavoriteColumns.DURATION + "=? WHERE " + FAVORITE_SELECT;
+
 	/**
 	 * database filename
 	 */
@@ -148,6 +162,33 @@ public class FavoritesStore extends SQLiteOpenHelper {
 		}
 	}
 
+	/**
+	 * increase the play count of favorite tracks in a single transaction.
+	 * Tracks which are not favorites are ignored.
+	 *
+	 * @param tracks played tracks
+	 */
+	void addPlayCounts(Collection<TrackPlay> tracks) {
+		SQLiteDatabase database = getWritableDatabase();
+		SQLiteStatement update = database.compileStatement(FAVORITE_PLAYCOUNT_UPDATE);
+		database.beginTransaction();
+		try {
+			for (TrackPlay track : tracks) {
+				update.bindLong(1, track.playCount);
+				update.bindString(2, track.songName);
+				update.bindString(3, track.albumName);
+				update.bindString(4, track.artistName);
+				update.bindLong(5, track.duration);
+				update.bindLong(6, track.songId);
+				update.executeUpdateDelete();
+			}
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+			update.close();
+		}
+	}
+
 	/**
 	 * check if track exists in favorite table
 	 *
@@ -177,6 +218,16 @@ public class FavoritesStore extends SQLiteOpenHelper {
 		database.delete(FavoriteColumns.NAME, FAVORITE_SELECT, args);
 	}
 
+	/**
+	 * remove many items from favorites in a single transaction
+	 *
+	 * @param ids track IDs to remove
+	 */
+	public void removeItems(long[] ids) {
+		SQLiteDatabase database = getWritableDatabase();
+		BatchDelete.delete(database, FavoriteColumns.NAME, FavoriteColumns.ID, ids);
+	}
+
 	/**
 	 * Used to retrieve how often a favorited track was played
 	 *
@@ -0,0 +1,899 @@
+package com.andrew.apollo.provider;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+import static android.provider.MediaStore.VOLUME_EXTERNAL;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Audio.Media;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.andrew.apollo.model.Album;
+import com.andrew.apollo.model.Artist;
+import com.andrew.apollo.model.Genre;
+import com.andrew.apollo.model.Song;
+import com.andrew.apollo.utils.CursorFactory;
+import com.andrew.apollo.utils.LongIntMap;
+import com.andrew.apollo.utils.PreferenceUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * process-wide in-memory index of the music library.
+ * The songs of the MediaStore are kept in compact column arrays which are built once in the background.
+ * After that, changes of the MediaStore are applied incrementally by comparing the modification
+ * time of every song, so only new and changed songs are queried again.
+ * Every change creates a new immutable snapshot with a new generation number. Sort orders, albums,
+ * artists and genres are cached per snapshot, so loaders don't need to query the MediaStore again.
+ */
+public class LibraryIndex {
+
+	/**
+	 * delay to collect MediaStore changes before syncing the index
+	 */
+	private static final long SYNC_DELAY = 1000;
+
+	/**
+	 * time range of the last added songs in seconds (4 weeks)
+	 */
+	private static final long LAST_ADDED_RANGE = 2419200;
+
+	/**
+	 * regex pattern to split genre group separated by
+	 */
+	private static final Pattern SEPARATOR = Pattern.compile("\\s*[,;|]\\s*");
+
+	/**
+	 * singleton instance
+	 */
+	private static LibraryIndex singleton;
+
+	private final Context mContext;
+	private final Handler mHandler;
+
+	/**
+	 * lock used to build or sync the index on one thread at a time
+	 */
+	private final Object mSyncLock = new Object();
+
+	/**
+	 * current snapshot of the library or null if not built yet
+	 */
+	private volatile Snapshot mSnapshot;
+
+	/**
+	 * true if the MediaStore has changed since the last sync
+	 */
+	private volatile boolean mDirty = false;
+
+	/**
+	 * generation number of the last snapshot
+	 */
+	private int mGeneration = 0;
+
+	/**
+	 * MediaStore version and generation of the last sync (Android 11+)
+	 */
+	private String mStoreVersion = "";
+	private long mStoreGeneration = -1;
+
+	/**
+	 * builds or syncs the index in the background
+	 */
+	private final Runnable mSyncTask = new Runnable() {
+		@Override
+		public void run() {
+			getSnapshot();
+		}
+	};
+
+	/**
+	 * marks the index as out of date if the MediaStore changes
+	 */
+	private final ContentObserver mObserver;
+
+	/**
+	 *
+	 */
+	private LibraryIndex(Context context) {
+		mContext = context;
+		HandlerThread thread = new HandlerThread("LibraryIndex", THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		mHandler = new Handler(thread.getLooper());
+		mObserver = new ContentObserver(mHandler) {
+			@Override
+			public void onChange(boolean selfChange) {
+				mDirty = true;
+				mHandler.removeCallbacks(mSyncTask);
+				mHandler.postDelayed(mSyncTask, SYNC_DELAY);
+			}
+		};
+		context.getContentResolver().registerContentObserver(Media.EXTERNAL_CONTENT_URI, true, mObserver);
+	}
+
+	/**
+	 * create singleton instance
+	 *
+	 * @return singleton instance of this class
+	 */
+	public static synchronized LibraryIndex getInstance(Context context) {
+		if (singleton == null) {
+			singleton = new LibraryIndex(context.getApplicationContext());
+		}
+		return singleton;
+	}
+
+	/**
+	 * start building the index in the background, so the first loader doesn't need to wait
+	 */
+	public void preload() {
+		if (mSnapshot == null) {
+			mHandler.post(mSyncTask);
+		}
+	}
+
+	/**
+	 * get all songs sorted by the song sort order
+	 *
+	 * @return list of songs
+	 */
+	@NonNull
+	public List<Song> getSongs() {
+		Snapshot snapshot = getSnapshot();
+		String sortOrder = PreferenceUtils.getInstance(mContext).getSongSortOrder();
+		int[] rows = snapshot.getSongOrder(mContext, sortOrder);
+		List<Song> result = new ArrayList<>(rows.length);
+		for (int row : rows) {
+			result.add(snapshot.getSong(row));
+		}
+		return result;
+	}
+
+	/**
+	 * get all songs of an album sorted by the album song sort order
+	 *
+	 * @param albumId ID of the album
+	 * @return list of songs
+	 */
+	@NonNull
+	public List<Song> getAlbumSongs(long albumId) {
+		Snapshot snapshot = getSnapshot();
+		String sortOrder = PreferenceUtils.getInstance(mContext).getAlbumSongSortOrder();
+		List<Song> result = new LinkedList<>();
+		for (int row : snapshot.getSongOrder(mContext, sortOrder)) {
+			if (snapshot.mAlbumIds[row] == albumId) {
+				result.add(snapshot.getSong(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * get the album of a song
+	 *
+	 * @param songId ID of the song
+	 * @return album with ID, name and artist, or null if the song isn't in the library
+	 */
+	@Nullable
+	public Album getSongAlbum(long songId) {
+		Snapshot snapshot = getSnapshot();
+		int row = snapshot.mRows.get(songId, -1);
+		if (row < 0)
+			return null;
+		return new Album(snapshot.mAlbumIds[row], snapshot.mAlbums[row], snapshot.mArtists[row], 0, null);
+	}
+
+	/**
+	 * get the artist of a song
+	 *
+	 * @param songId ID of the song
+	 * @return artist with ID and name, or null if the song isn't in the library
+	 */
+	@Nullable
+	public Artist getSongArtist(long songId) {
+		Snapshot snapshot = getSnapshot();
+		int row = snapshot.mRows.get(songId, -1);
+		if (row < 0)
+			return null;
+		return new Artist(snapshot.mArtistIds[row], snapshot.mArtists[row], 0, 0);
+	}
+
+	/**
+	 * get all songs of an artist sorted by the artist song sort order
+	 *
+	 * @param artistId ID of the artist
+	 * @return list of songs
+	 */
+	@NonNull
+	public List<Song> getArtistSongs(long artistId) {
+		Snapshot snapshot = getSnapshot();
+		String sortOrder = PreferenceUtils.getInstance(mContext).getArtistSongSortOrder();
+		List<Song> result = new LinkedList<>();
+		for (int row : snapshot.getSongOrder(mContext, sortOrder)) {
+			if (snapshot.mArtistIds[row] == artistId) {
+				result.add(snapshot.getSong(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * get all songs of a folder without the songs of sub folders
+	 *
+	 * @param folder path of the folder
+	 * @return list of songs
+	 */
+	@NonNull
+	public List<Song> getFolderSongs(@NonNull String folder) {
+		Snapshot snapshot = getSnapshot();
+		List<Song> result = new LinkedList<>();
+		for (int row : snapshot.getSongOrder(mContext, CursorFactory.FOLDER_TRACKS_ORDER)) {
+			if (folder.equals(snapshot.mFolders[row])) {
+				result.add(snapshot.getSong(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * get all songs added in the last four weeks, newest songs first
+	 *
+	 * @return list of songs
+	 */
+	@NonNull
+	public List<Song> getLastAddedSongs() {
+		Snapshot snapshot = getSnapshot();
+		long minTime = System.currentTimeMillis() / 1000 - LAST_ADDED_RANGE;
+		List<Song> result = new LinkedList<>();
+		for (int row : snapshot.getSongOrder(mContext, CursorFactory.ORDER_TIME)) {
+			if (snapshot.mDateAdded[row] > minTime) {
+				result.add(snapshot.getSong(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * get all songs of a genre
+	 *
+	 * @param genreIds IDs of the genres
+	 * @return list of songs, not sorted
+	 */
+	@NonNull
+	public List<Song> getGenreSongs(@NonNull long[] genreIds) {
+		Snapshot snapshot = getSnapshot();
+		List<Song> result = new LinkedList<>();
+		for (long genreId : genreIds) {
+			if (genreId == 0)
+				continue;
+			for (long trackId : snapshot.getGenreMembers(mContext, genreId)) {
+				int row = snapshot.mRows.get(trackId, -1);
+				if (row >= 0) {
+					result.add(snapshot.getSong(row));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * get all albums sorted by the album sort order
+	 *
+	 * @return list of albums
+	 */
+	@NonNull
+	public List<Album> getAlbums() {
+		Snapshot snapshot = getSnapshot();
+		String sortOrder = PreferenceUtils.getInstance(mContext).getAlbumSortOrder();
+		AlbumTable albums = snapshot.getAlbums(mContext, sortOrder);
+		List<Album> result = new ArrayList<>(albums.size);
+		for (int i = 0; i < albums.size; i++) {
+			result.add(albums.getAlbum(i));
+		}
+		return result;
+	}
+
+	/**
+	 * get all albums with songs of an artist, sorted by the artist album sort order
+	 *
+	 * @param artistId ID of the artist
+	 * @return list of albums
+	 */
+	@NonNull
+	public List<Album> getArtistAlbums(long artistId) {
+		Snapshot snapshot = getSnapshot();
+		LongIntMap albumIds = new LongIntMap(16);
+		for (int row = 0; row < snapshot.mSize; row++) {
+			if (snapshot.mArtistIds[row] == artistId) {
+				albumIds.put(snapshot.mAlbumIds[row], row);
+			}
+		}
+		String sortOrder = PreferenceUtils.getInstance(mContext).getArtistAlbumSortOrder();
+		AlbumTable albums = snapshot.getAlbums(mContext, sortOrder);
+		List<Album> result = new LinkedList<>();
+		for (int i = 0; i < albums.size && result.size() < albumIds.size(); i++) {
+			if (albumIds.containsKey(albums.ids[i])) {
+				result.add(albums.getAlbum(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * get all artists sorted by the artist sort order
+	 *
+	 * @return list of artists
+	 */
+	@NonNull
+	public List<Artist> getArtists() {
+		Snapshot snapshot = getSnapshot();
+		ArtistTable artists = snapshot.getArtists(mContext);
+		List<Artist> result = new ArrayList<>(artists.size);
+		for (int i = 0; i < artists.size; i++) {
+			result.add(new Artist(artists.ids[i], artists.names[i], artists.songCounts[i], artists.albumCounts[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * get all genres sorted by name. Genre groups are split into single genres
+	 *
+	 * @return list of genres
+	 */
+	@NonNull
+	public List<Genre> getGenres() {
+		return new ArrayList<>(getSnapshot().getGenres(mContext));
+	}
+
+	/**
+	 * get the paths of all folders containing songs
+	 *
+	 * @return array of folder paths
+	 */
+	@NonNull
+	public String[] getFolders() {
+		return getSnapshot().getFolders();
+	}
+
+	/**
+	 * get the generation of the current snapshot without building or syncing the index.
+	 * The generation changes every time the index is synced with the MediaStore
+	 *
+	 * @return generation number or -1 if the index isn't built yet or out of date
+	 */
+	public int getGeneration() {
+		Snapshot snapshot = mSnapshot;
+		if (snapshot == null || mDirty)
+			return -1;
+		return snapshot.mGeneration;
+	}
+
+	/**
+	 * get the current snapshot. Builds the index first if it doesn't exist
+	 * or syncs the index if the MediaStore has changed.
+	 *
+	 * @return current snapshot
+	 */
+	@NonNull
+	Snapshot getSnapshot() {
+		Snapshot snapshot = mSnapshot;
+		if (snapshot != null && !mDirty)
+			return snapshot;
+		synchronized (mSyncLock) {
+			try {
+				if (mSnapshot == null) {
+					mDirty = false;
+					mSnapshot = build();
+				} else if (mDirty) {
+					mDirty = false;
+					mSnapshot = sync(mSnapshot);
+				}
+			} catch (SecurityException e) {
+				// missing storage permission, try again with the next call
+				e.printStackTrace();
+			}
+			snapshot = mSnapshot;
+		}
+		if (snapshot == null) {
+			return new Snapshot(0, 0);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * build a new snapshot from all songs of the MediaStore
+	 *
+	 * @return new snapshot or null if the MediaStore isn't available
+	 */
+	private Snapshot build() {
+		updateStoreGeneration();
+		Cursor cursor = CursorFactory.makeLibraryCursor(mContext);
+		if (cursor == null)
+			return null;
+		Snapshot snapshot = new Snapshot(++mGeneration, cursor.getCount());
+		Map<String, String> pool = new HashMap<>();
+		if (cursor.moveToFirst()) {
+			do {
+				snapshot.addRow(cursor, pool);
+			} while (cursor.moveToNext());
+		}
+		cursor.close();
+		return snapshot;
+	}
+
+	/**
+	 * apply the changes of the MediaStore to a snapshot.
+	 * Only new songs and songs with a new modification time are queried,
+	 * rows of unchanged songs are copied from the old snapshot.
+	 *
+	 * @param old current snapshot
+	 * @return new snapshot or the old snapshot if nothing has changed
+	 */
+	private Snapshot sync(Snapshot old) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+			String version = MediaStore.getVersion(mContext, VOLUME_EXTERNAL);
+			if (!version.equals(mStoreVersion)) {
+				// MediaStore was rebuilt, IDs and generations are not valid anymore
+				return build();
+			}
+			if (MediaStore.getGeneration(mContext, VOLUME_EXTERNAL) == mStoreGeneration) {
+				return old;
+			}
+			updateStoreGeneration();
+		}
+		Cursor cursor = CursorFactory.makeLibraryScanCursor(mContext);
+		if (cursor == null)
+			return old;
+		// compare ID and modification time of every song with the old snapshot
+		int count = cursor.getCount();
+		long[] ids = new long[count];
+		int[] oldRows = new int[count];
+		long[] changedIds = new long[count];
+		int changedCount = 0;
+		int size = 0;
+		if (cursor.moveToFirst()) {
+			do {
+				long id = cursor.getLong(0);
+				int row = old.mRows.get(id, -1);
+				if (row >= 0 && old.mDateModified[row] != cursor.getLong(1)) {
+					row = -1;
+				}
+				if (row < 0) {
+					changedIds[changedCount++] = id;
+				}
+				ids[size] = id;
+				oldRows[size] = row;
+				size++;
+			} while (cursor.moveToNext() && size < count);
+		}
+		cursor.close();
+		if (changedCount == 0 && size == old.mSize) {
+			return old;
+		}
+		// query new and changed songs
+		Snapshot changed = new Snapshot(0, changedCount);
+		if (changedCount > 0) {
+			long[] query = new long[changedCount];
+			System.arraycopy(changedIds, 0, query, 0, changedCount);
+			cursor = CursorFactory.makeLibraryCursor(mContext, query);
+			if (cursor != null) {
+				Map<String, String> pool = new HashMap<>();
+				if (cursor.moveToFirst()) {
+					do {
+						changed.addRow(cursor, pool);
+					} while (cursor.moveToNext() && changed.mSize < changedCount);
+				}
+				cursor.close();
+			}
+		}
+		Snapshot snapshot = new Snapshot(++mGeneration, size);
+		for (int i = 0; i < size; i++) {
+			if (oldRows[i] >= 0) {
+				snapshot.copyRow(old, oldRows[i]);
+			} else {
+				int row = changed.mRows.get(ids[i], -1);
+				// skip songs removed while syncing
+				if (row >= 0) {
+					snapshot.copyRow(changed, row);
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * store current MediaStore version and generation (Android 11+)
+	 */
+	private void updateStoreGeneration() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+			mStoreVersion = MediaStore.getVersion(mContext, VOLUME_EXTERNAL);
+			mStoreGeneration = MediaStore.getGeneration(mContext, VOLUME_EXTERNAL);
+		}
+	}
+
+	/**
+	 * get a shared instance of a string to avoid duplicate strings of artist and album names
+	 */
+	private static String intern(Map<String, String> pool, String value) {
+		if (value == null)
+			return null;
+		String shared = pool.get(value);
+		if (shared == null) {
+			pool.put(value, value);
+			return value;
+		}
+		return shared;
+	}
+
+	/**
+	 * immutable song table of the library with caches for sort orders, albums, artists and genres.
+	 * Rows are only added while the snapshot is built.
+	 */
+	static final class Snapshot {
+
+		final int mGeneration;
+
+		final long[] mIds;
+		final String[] mTitles;
+		final String[] mArtists;
+		final String[] mAlbums;
+		final String[] mFolders;
+		final long[] mDurations;
+		final long[] mAlbumIds;
+		final long[] mArtistIds;
+		final long[] mDateAdded;
+		final long[] mDateModified;
+
+		/**
+		 * row positions mapped by song ID
+		 */
+		final LongIntMap mRows;
+
+		/**
+		 * number of rows
+		 */
+		int mSize = 0;
+
+		/**
+		 * cached song rows mapped by sort order
+		 */
+		private final Map<String, int[]> mSongOrders = new HashMap<>();
+
+		/**
+		 * cached album tables mapped by sort order
+		 */
+		private final Map<String, AlbumTable> mAlbumTables = new HashMap<>();
+
+		/**
+		 * cached genre members mapped by genre ID
+		 */
+		private final Map<Long, long[]> mGenreMembers = new HashMap<>();
+
+		private ArtistTable mArtistTable;
+		private String mArtistOrder;
+		private TreeSet<Genre> mGenres;
+		private String[] mFolderList;
+
+		/**
+		 * @param generation generation number of the snapshot
+		 * @param capacity   max number of rows
+		 */
+		Snapshot(int generation, int capacity) {
+			mGeneration = generation;
+			mIds = new long[capacity];
+			mTitles = new String[capacity];
+			mArtists = new String[capacity];
+			mAlbums = new String[capacity];
+			mFolders = new String[capacity];
+			mDurations = new long[capacity];
+			mAlbumIds = new long[capacity];
+			mArtistIds = new long[capacity];
+			mDateAdded = new long[capacity];
+			mDateModified = new long[capacity];
+			mRows = new LongIntMap(capacity);
+		}
+
+		/**
+		 * add a row from a cursor with the column order of {@link CursorFactory#LIBRARY_COLUMNS}
+		 */
+		void addRow(Cursor cursor, Map<String, String> pool) {
+			if (mSize == mIds.length)
+				return;
+			String path = cursor.getString(5);
+			String folder = null;
+			if (path != null) {
+				int end = path.lastIndexOf('/');
+				if (end > 0) {
+					folder = intern(pool, path.substring(0, end));
+				}
+			}
+			mIds[mSize] = cursor.getLong(0);
+			mTitles[mSize] = cursor.getString(1);
+			mArtists[mSize] = intern(pool, cursor.getString(2));
+			mAlbums[mSize] = intern(pool, cursor.getString(3));
+			mDurations[mSize] = cursor.getLong(4);
+			mFolders[mSize] = folder;
+			mAlbumIds[mSize] = cursor.getLong(6);
+			mArtistIds[mSize] = cursor.getLong(7);
+			mDateAdded[mSize] = cursor.getLong(8);
+			mDateModified[mSize] = cursor.getLong(9);
+			mRows.put(mIds[mSize], mSize);
+			mSize++;
+		}
+
+		/**
+		 * add a row from another snapshot
+		 */
+		void copyRow(Snapshot src, int row) {
+			mIds[mSize] = src.mIds[row];
+			mTitles[mSize] = src.mTitles[row];
+			mArtists[mSize] = src.mArtists[row];
+			mAlbums[mSize] = src.mAlbums[row];
+			mDurations[mSize] = src.mDurations[row];
+			mFolders[mSize] = src.mFolders[row];
+			mAlbumIds[mSize] = src.mAlbumIds[row];
+			mArtistIds[mSize] = src.mArtistIds[row];
+			mDateAdded[mSize] = src.mDateAdded[row];
+			mDateModified[mSize] = src.mDateModified[row];
+			mRows.put(mIds[mSize], mSize);
+			mSize++;
+		}
+
+		/**
+		 * create a song model of a row
+		 */
+		Song getSong(int row) {
+			return new Song(mIds[row], mTitles[row], mArtists[row], mAlbums[row], mDurations[row]);
+		}
+
+		/**
+		 * get the rows of all songs in a specific order.
+		 * Only the IDs are queried once per sort order and snapshot.
+		 *
+		 * @param sortOrder SQL sort order of the songs
+		 * @return song rows in order
+		 */
+		synchronized int[] getSongOrder(Context context, String sortOrder) {
+			int[] result = mSongOrders.get(sortOrder);
+			if (result == null) {
+				if (mGeneration == 0)
+					return new int[0];
+				int[] rows = new int[mSize];
+				int count = 0;
+				Cursor cursor = CursorFactory.makeTrackOrderCursor(context, sortOrder);
+				if (cursor != null) {
+					if (cursor.moveToFirst()) {
+						do {
+							int row = mRows.get(cursor.getLong(0), -1);
+							// skip songs added after this snapshot
+							if (row >= 0 && count < rows.length) {
+								rows[count++] = row;
+							}
+						} while (cursor.moveToNext());
+					}
+					cursor.close();
+				}
+				result = new int[count];
+				System.arraycopy(rows, 0, result, 0, count);
+				mSongOrders.put(sortOrder, result);
+			}
+			return result;
+		}
+
+		/**
+		 * get the album table in a specific order
+		 *
+		 * @param sortOrder SQL sort order of the albums
+		 * @return album table
+		 */
+		synchronized AlbumTable getAlbums(Context context, String sortOrder) {
+			AlbumTable result = mAlbumTables.get(sortOrder);
+			if (result == null) {
+				if (mGeneration == 0)
+					return new AlbumTable(0);
+				Cursor cursor = CursorFactory.makeSortedAlbumCursor(context, sortOrder);
+				if (cursor == null)
+					return new AlbumTable(0);
+				result = new AlbumTable(cursor.getCount());
+				Map<String, String> pool = new HashMap<>();
+				if (cursor.moveToFirst()) {
+					do {
+						result.addRow(cursor, pool);
+					} while (cursor.moveToNext());
+				}
+				cursor.close();
+				mAlbumTables.put(sortOrder, result);
+			}
+			return result;
+		}
+
+		/**
+		 * get the artist table sorted by the artist sort order
+		 *
+		 * @return artist table
+		 */
+		synchronized ArtistTable getArtists(Context context) {
+			String sortOrder = PreferenceUtils.getInstance(context).getArtistSortOrder();
+			if (mArtistTable == null || !sortOrder.equals(mArtistOrder)) {
+				if (mGeneration == 0)
+					return new ArtistTable(0);
+				Cursor cursor = CursorFactory.makeArtistCursor(context);
+				if (cursor == null)
+					return new ArtistTable(0);
+				ArtistTable result = new ArtistTable(cursor.getCount());
+				if (cursor.moveToFirst()) {
+					do {
+						result.addRow(cursor);
+					} while (cursor.moveToNext());
+				}
+				cursor.close();
+				mArtistTable = result;
+				mArtistOrder = sortOrder;
+			}
+			return mArtistTable;
+		}
+
+		/**
+		 * get all genres sorted by name
+		 *
+		 * @return sorted genres
+		 */
+		synchronized TreeSet<Genre> getGenres(Context context) {
+			if (mGenres == null) {
+				TreeSet<Genre> result = new TreeSet<>();
+				if (mGeneration == 0)
+					return result;
+				Cursor cursor = CursorFactory.makeGenreCursor(context);
+				if (cursor == null)
+					return result;
+				if (cursor.moveToFirst()) {
+					Map<String, List<Long>> group = new HashMap<>();
+					do {
+						long id = cursor.getLong(0);
+						// Split genre groups into single genre names
+						String[] genres = SEPARATOR.split(cursor.getString(1));
+						// solve conflicts. add multiple genre IDs for the same genre name.
+						for (String genre : genres) {
+							List<Long> ids = group.get(genre);
+							if (ids == null) {
+								ids = new LinkedList<>();
+								group.put(genre, ids);
+							}
+							ids.add(id);
+						}
+					} while (cursor.moveToNext());
+					for (Map.Entry<String, List<Long>> entry : group.entrySet()) {
+						result.add(new Genre(entry.getValue(), entry.getKey()));
+					}
+				}
+				cursor.close();
+				mGenres = result;
+			}
+			return mGenres;
+		}
+
+		/**
+		 * get the song IDs of a genre
+		 *
+		 * @param genreId ID of the genre
+		 * @return song IDs
+		 */
+		synchronized long[] getGenreMembers(Context context, long genreId) {
+			long[] result = mGenreMembers.get(genreId);
+			if (result == null) {
+				if (mGeneration == 0)
+					return new long[0];
+				Cursor cursor = CursorFactory.makeGenreSongCursor(context, genreId);
+				if (cursor == null)
+					return new long[0];
+				result = new long[cursor.getCount()];
+				int count = 0;
+				if (cursor.moveToFirst()) {
+					do {
+						result[count++] = cursor.getLong(0);
+					} while (cursor.moveToNext() && count < result.length);
+				}
+				cursor.close();
+				mGenreMembers.put(genreId, result);
+			}
+			return result;
+		}
+
+		/**
+		 * get the paths of all folders containing songs
+		 *
+		 * @return folder paths
+		 */
+		synchronized String[] getFolders() {
+			if (mFolderList == null) {
+				Map<String, String> folders = new LinkedHashMap<>();
+				for (int row = 0; row < mSize; row++) {
+					if (mFolders[row] != null) {
+						folders.put(mFolders[row], mFolders[row]);
+					}
+				}
+				mFolderList = folders.keySet().toArray(new String[0]);
+			}
+			return mFolderList.clone();
+		}
+	}
+
+	/**
+	 * album table with the column order of {@link CursorFactory#ALBUM_COLUMN}
+	 */
+	static final class AlbumTable {
+
+		final long[] ids;
+		final String[] names;
+		final String[] artists;
+		final int[] songCounts;
+		final String[] years;
+		int size = 0;
+
+		AlbumTable(int capacity) {
+			ids = new long[capacity];
+			names = new String[capacity];
+			artists = new String[capacity];
+			songCounts = new int[capacity];
+			years = new String[capacity];
+		}
+
+		void addRow(Cursor cursor, Map<String, String> pool) {
+			if (size == ids.length)
+				return;
+			ids[size] = cursor.getLong(0);
+			names[size] = cursor.getString(1);
+			artists[size] = intern(pool, cursor.getString(2));
+			songCounts[size] = cursor.getInt(3);
+			years[size] = intern(pool, cursor.getString(4));
+			size++;
+		}
+
+		Album getAlbum(int row) {
+			return new Album(ids[row], names[row], artists[row], songCounts[row], years[row]);
+		}
+	}
+
+	/**
+	 * artist table with the column order of {@link CursorFactory#ARTIST_COLUMNS}
+	 */
+	static final class ArtistTable {
+
+		final long[] ids;
+		final String[] names;
+		final int[] albumCounts;
+		final int[] songCounts;
+		int size = 0;
+
+		ArtistTable(int capacity) {
+			ids = new long[capacity];
+			names = new String[capacity];
+			albumCounts = new int[capacity];
+			songCounts = new int[capacity];
+		}
+
+		void addRow(Cursor cursor) {
+			if (size == ids.length)
+				return;
+			ids[size] = cursor.getLong(0);
+			names[size] = cursor.getString(1);
+			albumCounts[size] = cursor.getInt(2);
+			songCounts[size] = cursor.getInt(3);
+			size++;
+		}
+	}
+}
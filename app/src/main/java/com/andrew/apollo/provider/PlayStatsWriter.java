@@ -0,0 +1,204 @@
+package com.andrew.apollo.provider;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.andrew.apollo.utils.CursorFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * background writer for play statistics (favorite and popular play counts, recent albums).
+ * Played tracks are collected and written in batches by a single thread, so the player thread
+ * never waits for the databases. Repeated plays of the same track are merged into one update.
+ */
+public class PlayStatsWriter {
+
+	/**
+	 * delay to collect events before writing them
+	 */
+	private static final long FLUSH_DELAY = 2000;
+
+	/**
+	 * singleton instance
+	 */
+	private static PlayStatsWriter singleton;
+
+	private final Context mContext;
+	private final Handler mHandler;
+
+	/**
+	 * lock used to write only one batch at a time
+	 */
+	private final Object mWriteLock = new Object();
+
+	/**
+	 * played tracks not written yet, mapped by track ID
+	 */
+	private Map<Long, TrackPlay> mPendingTracks = new LinkedHashMap<>();
+
+	/**
+	 * played albums not written yet, mapped by album ID
+	 */
+	private Map<Long, AlbumPlay> mPendingAlbums = new LinkedHashMap<>();
+
+	/**
+	 * true if a flush is already scheduled
+	 */
+	private boolean mFlushScheduled = false;
+
+	/**
+	 * writes all pending events
+	 */
+	private final Runnable mFlushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	/**
+	 *
+	 */
+	private PlayStatsWriter(Context context) {
+		mContext = context;
+		HandlerThread thread = new HandlerThread("PlayStatsWriter", THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		mHandler = new Handler(thread.getLooper());
+	}
+
+	/**
+	 * create singleton instance
+	 *
+	 * @return singleton instance of this class
+	 */
+	public static synchronized PlayStatsWriter getInstance(Context context) {
+		if (singleton == null) {
+			singleton = new PlayStatsWriter(context.getApplicationContext());
+		}
+		return singleton;
+	}
+
+	/**
+	 * add a played track to the statistics
+	 *
+	 * @param songId     ID of the track
+	 * @param songName   name of the track
+	 * @param albumName  album name of the track
+	 * @param artistName artist name of the track
+	 * @param duration   track duration in milliseconds
+	 * @param albumId    album ID of the track
+	 */
+	public void trackPlayed(long songId, String songName, String albumName, String artistName, long duration, long albumId) {
+		synchronized (this) {
+			if (songId > 0 && songName != null && albumName != null && artistName != null) {
+				TrackPlay track = mPendingTracks.get(songId);
+				if (track != null) {
+					track.playCount++;
+				} else {
+					mPendingTracks.put(songId, new TrackPlay(songId, songName, albumName, artistName, duration));
+				}
+			}
+			if (albumId > 0 && albumName != null && artistName != null) {
+				mPendingAlbums.put(albumId, new AlbumPlay(albumId, albumName, artistName, System.currentTimeMillis()));
+			}
+			if (!mFlushScheduled) {
+				mFlushScheduled = true;
+				mHandler.postDelayed(mFlushTask, FLUSH_DELAY);
+			}
+		}
+	}
+
+	/**
+	 * write all pending events immediately. Called on shutdown to avoid losing statistics
+	 */
+	public void flush() {
+		Map<Long, TrackPlay> tracks;
+		Map<Long, AlbumPlay> albums;
+		synchronized (this) {
+			mHandler.removeCallbacks(mFlushTask);
+			mFlushScheduled = false;
+			tracks = mPendingTracks;
+			albums = mPendingAlbums;
+			mPendingTracks = new LinkedHashMap<>();
+			mPendingAlbums = new LinkedHashMap<>();
+		}
+		writeBatch(tracks, albums);
+	}
+
+	/**
+	 * write a batch of events, one transaction per database
+	 */
+	private void writeBatch(Map<Long, TrackPlay> tracks, Map<Long, AlbumPlay> albums) {
+		synchronized (mWriteLock) {
+			try {
+				if (!tracks.isEmpty()) {
+					FavoritesStore.getInstance(mContext).addPlayCounts(tracks.values());
+					PopularStore.getInstance(mContext).addPlayCounts(tracks.values());
+				}
+				if (!albums.isEmpty()) {
+					// get song count and release date with a single query per album
+					for (AlbumPlay album : albums.values()) {
+						Cursor cursor = CursorFactory.makeAlbumCursor(mContext, album.albumId);
+						if (cursor != null) {
+							if (cursor.moveToFirst()) {
+								album.songCount = cursor.getString(3);
+								album.albumYear = cursor.getString(4);
+							}
+							cursor.close();
+						}
+					}
+					RecentStore.getInstance(mContext).addAlbums(albums.values());
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * played track information
+	 */
+	static final class TrackPlay {
+
+		final long songId;
+		final String songName;
+		final String albumName;
+		final String artistName;
+		final long duration;
+		int playCount = 1;
+
+		TrackPlay(long songId, String songName, String albumName, String artistName, long duration) {
+			this.songId = songId;
+			this.songName = songName;
+			this.albumName = albumName;
+			this.artistName = artistName;
+			this.duration = duration;
+		}
+	}
+
+	/**
+	 * played album information
+	 */
+	static final class AlbumPlay {
+
+		final long albumId;
+		final String albumName;
+		final String artistName;
+		final long timePlayed;
+		String songCount;
+		String albumYear;
+
+		AlbumPlay(long albumId, String albumName, String artistName, long timePlayed) {
+			this.albumId = albumId;
+			this.albumName = albumName;
+			this.artistName = artistName;
+			this.timePlayed = timePlayed;
+		}
+	}
+}
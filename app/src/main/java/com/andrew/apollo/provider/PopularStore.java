@@ -7,6 +7,11 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.andrew.apollo.provider.PlayStatsWriter.TrackPlay;
+
+import java.util.Collection;
 
 /**
  * database for popular tracks with the information how often a track was played
@@ -42,6 +47,27 @@ public class PopularStore extends SQLiteOpenHelper {
 	 */
 	private static final String TRACK_SELECT = PopularColumns.ID + "=?";
 
+	/**
+	 * statement to increase the play count of an existing track
+	 */
+	private static final String PLAYCOUNT_UPDATE = "UPDATE " + PopularColumns.NAME + " SET "
+			+ PopularColumns.PLAYCOUNT + "=" + PopularColumns.PLAYCOUNT + "+?,"
+			+ PopularColumns.SONGNAME + "=?,"
+			+ PopularColumns.ALBUMNAME + "=?,"
+			+ PopularColumns.ARTISTNAME + "=?,"
+			+ PopularColumns.DURATION + "=? WHERE " + TRACK_SELECT;
+
+	/**
+	 * statement to add a new track
+	 */
+	private static final String TRACK_INSERT = "INSERT INTO " + PopularColumns.NAME + " ("
+			+ PopularColumns.PLAYCOUNT + ","
+			+ PopularColumns.SONGNAME + ","
+			+ PopularColumns.ALBUMNAME + ","
+			+ PopularColumns.ARTISTNAME + ","
+			+ PopularColumns.DURATION + ","
+			+ PopularColumns.ID + ") VALUES (?,?,?,?,?,?)";
+
 	/**
 	 * database filename
 	 */
@@ -119,6 +145,45 @@ public class PopularStore extends SQLiteOpenHelper {
 		}
 	}
 
+	/**
+	 * increase the play count of tracks in a single transaction.
+	 * Tracks which don't exist will be added
+	 *
+	 * @param tracks played tracks
+	 */
+	void addPlayCounts(Collection<TrackPlay> tracks) {
+		SQLiteDatabase database = getWritableDatabase();
+		SQLiteStatement update = database.compileStatement(PLAYCOUNT_UPDATE);
+		SQLiteStatement insert = database.compileStatement(TRACK_INSERT);
+		database.beginTransaction();
+		try {
+			for (TrackPlay track : tracks) {
+				// both statements use the same argument order
+				SQLiteStatement statement = update;
+				for (int i = 0; i < 2; i++) {
+					statement.bindLong(1, track.playCount);
+					statement.bindString(2, track.songName);
+					statement.bindString(3, track.albumName);
+					statement.bindString(4, track.artistName);
+					statement.bindLong(5, track.duration);
+					statement.bindLong(6, track.songId);
+					if (statement == insert) {
+						statement.executeInsert();
+					} else if (statement.executeUpdateDelete() == 0) {
+						statement = insert;
+						continue;
+					}
+					break;
+				}
+			}
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+			update.close();
+			insert.close();
+		}
+	}
+
 	/**
 	 * remove track from most played databse
 	 *
@@ -130,6 +195,16 @@ public class PopularStore extends SQLiteOpenHelper {
 		database.delete(PopularColumns.NAME, TRACK_SELECT, args);
 	}
 
+	/**
+	 * remove many items from the most played list in a single transaction
+	 *
+	 * @param ids track IDs to remove
+	 */
+	public void removeItems(long[] ids) {
+		SQLiteDatabase database = getWritableDatabase();
+		BatchDelete.delete(database, PopularColumns.NAME, PopularColumns.ID, ids);
+	}
+
 	/**
 	 * remove all popular tracks from playlist
 	 */
@@ -0,0 +1,595 @@
+package com.andrew.apollo.provider;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.andrew.apollo.player.PlayQueue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * binary storage for the playback queue and the track history.
+ * The queue is saved as a snapshot file of delta encoded varints. Changes of the queue are appended
+ * as small records to a journal file, so the snapshot doesn't need to be rewritten on every change.
+ */
+public class QueueStore {
+
+	/**
+	 * snapshot filename
+	 */
+	private static final String SNAPSHOT_NAME = "queue.dat";
+
+	/**
+	 * journal filename
+	 */
+	private static final String JOURNAL_NAME = "queue.journal";
+
+	/**
+	 * file header
+	 */
+	private static final int MAGIC = 0x41515545;
+
+	/**
+	 * max journal size in bytes before the snapshot should be rewritten
+	 */
+	private static final int MAX_JOURNAL_SIZE = 64 * 1024;
+
+	/**
+	 * journal record: tracks were inserted
+	 */
+	private static final int OP_ADD = 1;
+
+	/**
+	 * journal record: a range of tracks was removed
+	 */
+	private static final int OP_REMOVE = 2;
+
+	/**
+	 * journal record: a track was moved
+	 */
+	private static final int OP_MOVE = 3;
+
+	/**
+	 * journal record: track history was replaced
+	 */
+	private static final int OP_HISTORY = 4;
+
+	/**
+	 * singleton instance
+	 */
+	private static QueueStore singleton;
+
+	private final File mSnapshotFile;
+	private final File mJournalFile;
+
+	/**
+	 * open journal stream, null if not opened yet
+	 */
+	private FileOutputStream mJournal;
+
+	/**
+	 * buffer used to encode records
+	 */
+	private byte[] mBuffer = new byte[256];
+	private int mBufferSize = 0;
+
+	/**
+	 * generation of the current snapshot. journal records are only valid for the same generation
+	 */
+	private int mGeneration = 0;
+	private long mJournalSize = 0;
+
+	/**
+	 * true if journal records can be written
+	 */
+	private boolean mWritable = true;
+
+	/**
+	 * true if the journal doesn't match the queue anymore and a new snapshot is required
+	 */
+	private boolean mOutOfSync = false;
+
+	/**
+	 * incremented on every change of the queue, used to detect changes while a snapshot is written
+	 */
+	private int mRevision = 0;
+
+	/**
+	 *
+	 */
+	private QueueStore(Context context) {
+		mSnapshotFile = new File(context.getFilesDir(), SNAPSHOT_NAME);
+		mJournalFile = new File(context.getFilesDir(), JOURNAL_NAME);
+	}
+
+	/**
+	 * create singleton instance
+	 *
+	 * @return singleton instance of this class
+	 */
+	public static QueueStore getInstance(Context context) {
+		if (singleton == null) {
+			singleton = new QueueStore(context.getApplicationContext());
+		}
+		return singleton;
+	}
+
+	/**
+	 * @return true if a saved queue exists
+	 */
+	public boolean exists() {
+		return mSnapshotFile.exists();
+	}
+
+	/**
+	 * load saved queue and history and replay all journal records
+	 *
+	 * @param queue   queue to load the track IDs into
+	 * @param history history to load the track positions into
+	 * @param cardId  ID of the current card. If the queue was saved for a different card, nothing will be loaded
+	 * @return true if the queue was loaded
+	 */
+	public synchronized boolean load(@NonNull PlayQueue queue, @NonNull PlayQueue history, int cardId) {
+		// queue in memory doesn't match the storage until a snapshot is saved or loaded successfully
+		mOutOfSync = true;
+		mRevision++;
+		if (!mSnapshotFile.exists())
+			return false;
+		try {
+			Reader snapshot = new Reader(readFile(mSnapshotFile));
+			if (snapshot.readInt() != MAGIC)
+				return false;
+			int generation = snapshot.readInt();
+			mGeneration = generation;
+			if (snapshot.readInt() != cardId)
+				return false;
+			long[] tracks = snapshot.readDeltas((int) snapshot.readVarint());
+			long[] positions = snapshot.readValues((int) snapshot.readVarint());
+			queue.setAll(tracks);
+			history.setAll(positions);
+			replayJournal(queue, history);
+			mOutOfSync = false;
+			return true;
+		} catch (IOException | IndexOutOfBoundsException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 * write a new snapshot of the queue and reset the journal
+	 *
+	 * @param queue   queue with track IDs
+	 * @param history track history
+	 * @param cardId  ID of the current card
+	 */
+	public void save(@NonNull PlayQueue queue, @NonNull PlayQueue history, int cardId) {
+		save(queue.toArray(), history.toArray(), cardId, getRevision());
+	}
+
+	/**
+	 * write a new snapshot of the queue and reset the journal. The file is written without blocking
+	 * new journal records. If the queue was changed after the copy was made, the snapshot is dropped
+	 *
+	 * @param tracks    copy of the queue
+	 * @param positions copy of the track history
+	 * @param cardId    ID of the current card
+	 * @param revision  revision of the queue when the copy was made, see {@link #getRevision()}
+	 * @return true if the snapshot was saved, false if the queue has changed and must be saved again
+	 */
+	public boolean save(@NonNull long[] tracks, @NonNull long[] positions, int cardId, int revision) {
+		byte[] data;
+		int generation;
+		synchronized (this) {
+			if (!mWritable)
+				return true;
+			if (revision != mRevision)
+				return false;
+			generation = mGeneration + 1;
+			mBufferSize = 0;
+			writeInt(MAGIC);
+			writeInt(generation);
+			writeInt(cardId);
+			writeVarint(tracks.length);
+			writeDeltas(tracks);
+			writeVarint(positions.length);
+			writeValues(positions);
+			data = Arrays.copyOf(mBuffer, mBufferSize);
+			// don't keep a large buffer after saving a large queue
+			if (mBuffer.length > 4096) {
+				mBuffer = new byte[256];
+			}
+		}
+		File tmp = new File(mSnapshotFile.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tmp)) {
+			out.write(data);
+			out.getFD().sync();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return true;
+		}
+		synchronized (this) {
+			if (revision != mRevision || generation != mGeneration + 1) {
+				// queue has changed while writing, keep the current snapshot and journal
+				tmp.delete();
+				return false;
+			}
+			closeJournal();
+			if (tmp.renameTo(mSnapshotFile)) {
+				mGeneration = generation;
+				mOutOfSync = false;
+				mJournalFile.delete();
+				mJournalSize = 0;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return current revision of the queue
+	 */
+	public synchronized int getRevision() {
+		return mRevision;
+	}
+
+	/**
+	 * mark the journal as outdated after the whole queue was replaced.
+	 * No journal records are written until a new snapshot was saved
+	 */
+	public synchronized void invalidate() {
+		mRevision++;
+		mOutOfSync = true;
+		closeJournal();
+	}
+
+	/**
+	 * enable or disable writing to the storage. If changes are made while writing is disabled,
+	 * no journal records will be written until a new snapshot was saved or loaded
+	 *
+	 * @param writable true to enable writing
+	 */
+	public synchronized void setWritable(boolean writable) {
+		mWritable = writable;
+		if (!writable) {
+			closeJournal();
+		}
+	}
+
+	/**
+	 * @return true if the journal grew too large and a new snapshot should be saved
+	 */
+	public synchronized boolean isJournalFull() {
+		return mOutOfSync || mJournalSize > MAX_JOURNAL_SIZE;
+	}
+
+	/**
+	 * add journal record for inserted tracks
+	 *
+	 * @param position position of the first inserted track
+	 * @param tracks   inserted track IDs
+	 */
+	public synchronized void add(int position, @NonNull long[] tracks) {
+		if (beginRecord(OP_ADD)) {
+			writeVarint(position);
+			writeVarint(tracks.length);
+			writeDeltas(tracks);
+			commitRecord();
+		}
+	}
+
+	/**
+	 * add journal record for a single inserted track
+	 *
+	 * @param position position of the inserted track
+	 * @param track    inserted track ID
+	 */
+	public void add(int position, long track) {
+		add(position, new long[]{track});
+	}
+
+	/**
+	 * add journal record for removed tracks
+	 *
+	 * @param first position of the first removed track
+	 * @param last  position of the last removed track
+	 */
+	public synchronized void remove(int first, int last) {
+		if (beginRecord(OP_REMOVE)) {
+			writeVarint(first);
+			writeVarint(last);
+			commitRecord();
+		}
+	}
+
+	/**
+	 * add journal record for a moved track
+	 *
+	 * @param from old position of the track
+	 * @param to   new position of the track
+	 */
+	public synchronized void move(int from, int to) {
+		if (beginRecord(OP_MOVE)) {
+			writeVarint(from);
+			writeVarint(to);
+			commitRecord();
+		}
+	}
+
+	/**
+	 * add journal record for the track history
+	 *
+	 * @param history track history
+	 */
+	public synchronized void setHistory(@NonNull PlayQueue history) {
+		if (beginRecord(OP_HISTORY)) {
+			long[] positions = history.toArray();
+			writeVarint(positions.length);
+			writeValues(positions);
+			commitRecord();
+		}
+	}
+
+	/**
+	 * apply all journal records of the current generation
+	 */
+	private void replayJournal(PlayQueue queue, PlayQueue history) throws IOException {
+		if (!mJournalFile.exists()) {
+			mJournalSize = 0;
+			return;
+		}
+		byte[] data = readFile(mJournalFile);
+		Reader journal = new Reader(data);
+		if (data.length < 8 || journal.readInt() != MAGIC || journal.readInt() != mGeneration) {
+			// journal belongs to an older snapshot
+			mJournalFile.delete();
+			mJournalSize = 0;
+			return;
+		}
+		int valid = journal.pos;
+		try {
+			while (journal.pos < data.length) {
+				int op = journal.data[journal.pos++];
+				switch (op) {
+					case OP_ADD:
+						int position = (int) journal.readVarint();
+						long[] tracks = journal.readDeltas((int) journal.readVarint());
+						queue.addAll(position, tracks);
+						break;
+
+					case OP_REMOVE:
+						int first = (int) journal.readVarint();
+						int last = (int) journal.readVarint();
+						queue.removeRange(first, last);
+						break;
+
+					case OP_MOVE:
+						int from = (int) journal.readVarint();
+						int to = (int) journal.readVarint();
+						queue.move(from, to);
+						break;
+
+					case OP_HISTORY:
+						history.setAll(journal.readValues((int) journal.readVarint()));
+						break;
+
+					default:
+						throw new IOException("invalid journal record: " + op);
+				}
+				valid = journal.pos;
+			}
+		} catch (IOException | IndexOutOfBoundsException e) {
+			// last record was not completely written, ignore it
+			e.printStackTrace();
+		}
+		mJournalSize = valid;
+		if (valid < data.length) {
+			// drop broken records so new records can be appended
+			try (FileOutputStream out = new FileOutputStream(mJournalFile)) {
+				out.write(data, 0, valid);
+			}
+		}
+	}
+
+	/**
+	 * start encoding a new journal record
+	 *
+	 * @return true if the record can be written
+	 */
+	private boolean beginRecord(int op) {
+		mRevision++;
+		if (!mWritable) {
+			mOutOfSync = true;
+			return false;
+		}
+		if (mOutOfSync)
+			return false;
+		mBufferSize = 0;
+		mBuffer[mBufferSize++] = (byte) op;
+		return true;
+	}
+
+	/**
+	 * append encoded record to the journal file
+	 */
+	private void commitRecord() {
+		try {
+			if (mJournal == null) {
+				boolean exists = mJournalFile.exists() && mJournalSize > 0;
+				mJournal = new FileOutputStream(mJournalFile, exists);
+				if (!exists) {
+					byte[] header = new byte[8];
+					putInt(header, 0, MAGIC);
+					putInt(header, 4, mGeneration);
+					mJournal.write(header);
+					mJournalSize = header.length;
+				}
+			}
+			mJournal.write(mBuffer, 0, mBufferSize);
+			mJournalSize += mBufferSize;
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeJournal();
+			mOutOfSync = true;
+		}
+	}
+
+	/**
+	 * close journal stream if open
+	 */
+	private void closeJournal() {
+		if (mJournal != null) {
+			try {
+				mJournal.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			mJournal = null;
+		}
+	}
+
+	/**
+	 * write track IDs as zigzag encoded differences to the previous ID
+	 */
+	private void writeDeltas(long[] values) {
+		long previous = 0;
+		for (long value : values) {
+			writeVarint(zigzag(value - previous));
+			previous = value;
+		}
+	}
+
+	/**
+	 * write values as zigzag encoded varints
+	 */
+	private void writeValues(long[] values) {
+		for (long value : values) {
+			writeVarint(zigzag(value));
+		}
+	}
+
+	/**
+	 * write unsigned varint into the buffer
+	 */
+	private void writeVarint(long value) {
+		ensureBuffer(10);
+		while ((value & ~0x7FL) != 0) {
+			mBuffer[mBufferSize++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		mBuffer[mBufferSize++] = (byte) value;
+	}
+
+	/**
+	 * write fixed size int into the buffer
+	 */
+	private void writeInt(int value) {
+		ensureBuffer(4);
+		putInt(mBuffer, mBufferSize, value);
+		mBufferSize += 4;
+	}
+
+	/**
+	 * grow buffer if needed
+	 */
+	private void ensureBuffer(int length) {
+		if (mBufferSize + length > mBuffer.length) {
+			mBuffer = Arrays.copyOf(mBuffer, Math.max(mBufferSize + length, mBuffer.length * 2));
+		}
+	}
+
+	/**
+	 * read a complete file into memory
+	 */
+	private static byte[] readFile(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] data = new byte[(int) file.length()];
+			int offset = 0;
+			while (offset < data.length) {
+				int read = in.read(data, offset, data.length - offset);
+				if (read < 0)
+					return Arrays.copyOf(data, offset);
+				offset += read;
+			}
+			return data;
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static void putInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+	/**
+	 *
+	 */
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 *
+	 */
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * decoder for snapshot and journal data
+	 */
+	private static final class Reader {
+
+		final byte[] data;
+		int pos = 0;
+
+		Reader(byte[] data) {
+			this.data = data;
+		}
+
+		int readInt() {
+			int value = (data[pos] & 0xFF) << 24 | (data[pos + 1] & 0xFF) << 16 | (data[pos + 2] & 0xFF) << 8 | (data[pos + 3] & 0xFF);
+			pos += 4;
+			return value;
+		}
+
+		long readVarint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = data[pos++];
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("malformed varint");
+		}
+
+		long[] readDeltas(int count) throws IOException {
+			long[] values = readValues(count);
+			for (int i = 1; i < count; i++) {
+				values[i] += values[i - 1];
+			}
+			return values;
+		}
+
+		long[] readValues(int count) throws IOException {
+			if (count < 0 || count > data.length - pos)
+				throw new IOException("invalid length: " + count);
+			long[] values = new long[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = unzigzag(readVarint());
+			}
+			return values;
+		}
+	}
+}
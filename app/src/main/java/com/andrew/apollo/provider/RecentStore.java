@@ -16,10 +16,15 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 
 import androidx.annotation.Nullable;
 
+import com.andrew.apollo.provider.PlayStatsWriter.AlbumPlay;
+
+import java.util.Collection;
+
 /**
  * The {@link RecentStore} is used to display a a grid or list of
  * recently listened to albums. In order to populate the this grid or list with
@@ -61,6 +66,17 @@ public class RecentStore extends SQLiteOpenHelper {
 	 */
 	private static final String RECENT_SELECT_ID = RecentStoreColumns.ID + "=?";
 
+	/**
+	 * statement to add or replace a recent album
+	 */
+	private static final String RECENT_INSERT = "INSERT OR REPLACE INTO " + RecentStoreColumns.NAME + " ("
+			+ RecentStoreColumns.ID + ","
+			+ RecentStoreColumns.ALBUMNAME + ","
+			+ RecentStoreColumns.ARTISTNAME + ","
+			+ RecentStoreColumns.ALBUMSONGCOUNT + ","
+			+ RecentStoreColumns.ALBUMYEAR + ","
+			+ RecentStoreColumns.TIMEPLAYED + ") VALUES (?,?,?,?,?,?)";
+
 	/**
 	 * select recent album by name
 	 */
@@ -151,6 +167,38 @@ public class RecentStore extends SQLiteOpenHelper {
 		}
 	}
 
+	/**
+	 * add or update recently played albums in a single transaction
+	 *
+	 * @param albums played albums
+	 */
+	void addAlbums(Collection<AlbumPlay> albums) {
+		SQLiteDatabase database = getWritableDatabase();
+		SQLiteStatement insert = database.compileStatement(RECENT_INSERT);
+		database.beginTransaction();
+		try {
+			for (AlbumPlay album : albums) {
+				if (album.songCount != null) {
+					insert.bindLong(1, album.albumId);
+					insert.bindString(2, album.albumName);
+					insert.bindString(3, album.artistName);
+					insert.bindString(4, album.songCount);
+					if (album.albumYear != null) {
+						insert.bindString(5, album.albumYear);
+					} else {
+						insert.bindNull(5);
+					}
+					insert.bindLong(6, album.timePlayed);
+					insert.executeInsert();
+				}
+			}
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+			insert.close();
+		}
+	}
+
 	/**
 	 * Used to retrieve the most recently listened album for an artist.
 	 *
@@ -186,6 +234,16 @@ public class RecentStore extends SQLiteOpenHelper {
 		database.delete(RecentStoreColumns.NAME, RECENT_SELECT_ID, args);
 	}
 
+	/**
+	 * remove many items from the recently played albums in a single transaction
+	 *
+	 * @param ids album IDs to remove
+	 */
+	public void removeItems(long[] ids) {
+		SQLiteDatabase database = getWritableDatabase();
+		BatchDelete.delete(database, RecentStoreColumns.NAME, RecentStoreColumns.ID, ids);
+	}
+
 
 	public interface RecentStoreColumns {
 
@@ -0,0 +1,181 @@
+package com.andrew.apollo.provider;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.andrew.apollo.player.PlaybackState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * small snapshot file of the last playback state, used to show the last track right after the service started,
+ * before the queue and the track information are loaded from the storage and the MediaStore
+ */
+public class ResumeStore {
+
+	/**
+	 * snapshot filename
+	 */
+	private static final String FILE_NAME = "resume.dat";
+
+	/**
+	 * file header
+	 */
+	private static final int MAGIC = 0x41524553;
+
+	/**
+	 * singleton instance
+	 */
+	private static ResumeStore singleton;
+
+	private final File mFile;
+
+	/**
+	 * last saved state, used to skip unchanged writes
+	 */
+	@Nullable
+	private Resume mLast;
+
+	/**
+	 *
+	 */
+	private ResumeStore(Context context) {
+		mFile = new File(context.getFilesDir(), FILE_NAME);
+	}
+
+	/**
+	 * create singleton instance
+	 *
+	 * @return singleton instance of this class
+	 */
+	public static synchronized ResumeStore getInstance(Context context) {
+		if (singleton == null) {
+			singleton = new ResumeStore(context.getApplicationContext());
+		}
+		return singleton;
+	}
+
+	/**
+	 * load the last saved state
+	 *
+	 * @return saved state or null if there is no valid snapshot
+	 */
+	@Nullable
+	public synchronized Resume load() {
+		if (!mFile.exists())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)))) {
+			if (in.readInt() != MAGIC)
+				return null;
+			int cardId = in.readInt();
+			long audioId = in.readLong();
+			long artistId = in.readLong();
+			long albumId = in.readLong();
+			String trackName = in.readUTF();
+			String artistName = in.readUTF();
+			String albumName = in.readUTF();
+			String path = in.readUTF();
+			long duration = in.readLong();
+			int queuePosition = in.readInt();
+			boolean favorite = in.readBoolean();
+			int shuffleMode = in.readInt();
+			int repeatMode = in.readInt();
+			long position = in.readLong();
+			PlaybackState state = new PlaybackState(audioId, artistId, albumId, trackName, artistName, albumName, path, duration,
+					queuePosition, 0, false, favorite, shuffleMode, repeatMode, position, SystemClock.elapsedRealtime());
+			mLast = new Resume(state, cardId);
+			return mLast;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * save the current state. Nothing is written if the state didn't change
+	 *
+	 * @param state  current playback state
+	 * @param cardId ID of the current card
+	 */
+	public synchronized void save(@NonNull PlaybackState state, int cardId) {
+		if (state.getAudioId() == -1)
+			return;
+		if (mLast != null && mLast.cardId == cardId && isSame(mLast.state, state))
+			return;
+		File tmp = new File(mFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(cardId);
+			out.writeLong(state.getAudioId());
+			out.writeLong(state.getArtistId());
+			out.writeLong(state.getAlbumId());
+			out.writeUTF(nonNull(state.getTrackName()));
+			out.writeUTF(nonNull(state.getArtistName()));
+			out.writeUTF(nonNull(state.getAlbumName()));
+			out.writeUTF(nonNull(state.getPath()));
+			out.writeLong(state.getDuration());
+			out.writeInt(state.getQueuePosition());
+			out.writeBoolean(state.isFavorite());
+			out.writeInt(state.getShuffleMode());
+			out.writeInt(state.getRepeatMode());
+			out.writeLong(state.getPosition());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		if (tmp.renameTo(mFile)) {
+			mLast = new Resume(state, cardId);
+		}
+	}
+
+	/**
+	 * check if two states would produce the same snapshot
+	 */
+	private static boolean isSame(PlaybackState s1, PlaybackState s2) {
+		return s1.getAudioId() == s2.getAudioId() && s1.getQueuePosition() == s2.getQueuePosition()
+				&& s1.isFavorite() == s2.isFavorite() && s1.getShuffleMode() == s2.getShuffleMode()
+				&& s1.getRepeatMode() == s2.getRepeatMode() && s1.getPosition() == s2.getPosition();
+	}
+
+	private static String nonNull(String value) {
+		return value != null ? value : "";
+	}
+
+	/**
+	 * saved playback state with the card it was saved for
+	 */
+	public static final class Resume {
+
+		private final PlaybackState state;
+		private final int cardId;
+
+		Resume(PlaybackState state, int cardId) {
+			this.state = state;
+			this.cardId = cardId;
+		}
+
+		/**
+		 * @return saved playback state, never playing
+		 */
+		public PlaybackState getState() {
+			return state;
+		}
+
+		/**
+		 * @return ID of the card the state was saved for
+		 */
+		public int getCardId() {
+			return cardId;
+		}
+	}
+}
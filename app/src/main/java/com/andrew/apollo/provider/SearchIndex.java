@@ -0,0 +1,632 @@
+package com.andrew.apollo.provider;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+
+import com.andrew.apollo.model.Artist;
+import com.andrew.apollo.model.Music;
+import com.andrew.apollo.provider.LibraryIndex.AlbumTable;
+import com.andrew.apollo.provider.LibraryIndex.ArtistTable;
+import com.andrew.apollo.provider.LibraryIndex.Snapshot;
+import com.andrew.apollo.utils.PreferenceUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * in-memory full text index of artists, albums and songs, built from the snapshots of {@link LibraryIndex}.
+ * Names, artists, albums and folder names are split into words, which are stored in a sorted dictionary
+ * with a posting list per word, so a query term is resolved with a binary search over the dictionary.
+ * Words with a small edit distance to a query term are matched too, so typos are tolerated.
+ * Results are ranked and contain the positions of the matches in the name of the item.
+ * The index is rebuilt in the background if the library changes, words of unchanged texts are reused.
+ */
+public class SearchIndex {
+
+	/**
+	 * item types, also used as rank if two items have the same score
+	 */
+	private static final int TYPE_ARTIST = 0;
+	private static final int TYPE_ALBUM = 1;
+	private static final int TYPE_SONG = 2;
+
+	/**
+	 * indexed fields of an item
+	 */
+	private static final int FIELD_NAME = 0;
+	private static final int FIELD_ARTIST = 1;
+	private static final int FIELD_ALBUM = 2;
+	private static final int FIELD_FOLDER = 3;
+
+	/**
+	 * score weight of the fields
+	 */
+	private static final int[] FIELD_WEIGHT = {3, 2, 2, 1};
+
+	/**
+	 * score of the match types
+	 */
+	private static final int SCORE_EXACT = 4;
+	private static final int SCORE_PREFIX = 3;
+	private static final int SCORE_FUZZY = 1;
+
+	/**
+	 * extra score if the name starts with the query
+	 */
+	private static final int SCORE_START = 2;
+
+	/**
+	 * min term length to allow one or two typos
+	 */
+	private static final int MIN_LENGTH_ONE_TYPO = 4;
+	private static final int MIN_LENGTH_TWO_TYPOS = 8;
+
+	/**
+	 * bits used to store the offset of a word in a posting
+	 */
+	private static final int OFFSET_BITS = 24;
+
+	/**
+	 * singleton instance
+	 */
+	private static SearchIndex singleton;
+
+	private final Context mContext;
+	private final LibraryIndex mLibrary;
+	private final Handler mHandler;
+
+	/**
+	 * current index or null if not built yet
+	 */
+	private Index mIndex;
+
+	/**
+	 * words of all indexed texts, reused by the next build
+	 */
+	private Map<String, Tokens> mTokenCache = new HashMap<>();
+
+	/**
+	 * builds the index in the background
+	 */
+	private final Runnable mBuildTask = new Runnable() {
+		@Override
+		public void run() {
+			getIndex();
+		}
+	};
+
+	/**
+	 *
+	 */
+	private SearchIndex(Context context) {
+		mContext = context;
+		mLibrary = LibraryIndex.getInstance(context);
+		HandlerThread thread = new HandlerThread("SearchIndex", THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		mHandler = new Handler(thread.getLooper());
+	}
+
+	/**
+	 * create singleton instance
+	 *
+	 * @return singleton instance of this class
+	 */
+	public static synchronized SearchIndex getInstance(Context context) {
+		if (singleton == null) {
+			singleton = new SearchIndex(context.getApplicationContext());
+		}
+		return singleton;
+	}
+
+	/**
+	 * start building the index in the background, so the first search doesn't need to wait
+	 */
+	public void preload() {
+		mHandler.post(mBuildTask);
+	}
+
+	/**
+	 * search for artists, albums and songs. Every query word must match a word of the item,
+	 * the last word may be incomplete. Must not be called on the main thread
+	 *
+	 * @param query search query
+	 * @param limit max number of results
+	 * @return matching items, best matches first
+	 */
+	@NonNull
+	public List<Match> search(String query, int limit) {
+		Tokens terms = tokenize(query);
+		if (terms.words.length == 0 || limit <= 0)
+			return Collections.emptyList();
+		Index index = getIndex();
+		synchronized (index) {
+			return index.search(terms.words, limit);
+		}
+	}
+
+	/**
+	 * get the current index. The index is rebuilt if the library has changed
+	 *
+	 * @return current index
+	 */
+	private synchronized Index getIndex() {
+		Snapshot snapshot = mLibrary.getSnapshot();
+		if (mIndex == null || mIndex.snapshot != snapshot) {
+			mIndex = build(snapshot);
+		}
+		return mIndex;
+	}
+
+	/**
+	 * build a new index from a library snapshot
+	 */
+	private Index build(Snapshot snapshot) {
+		ArtistTable artists = snapshot.getArtists(mContext);
+		AlbumTable albums = snapshot.getAlbums(mContext, PreferenceUtils.getInstance(mContext).getAlbumSortOrder());
+		Index index = new Index(snapshot, artists, albums);
+		Map<String, Postings> postings = new HashMap<>();
+		Map<String, Tokens> cache = new HashMap<>();
+		int entry = 0;
+		for (int i = 0; i < artists.size; i++, entry++) {
+			addField(postings, cache, entry, FIELD_NAME, artists.names[i]);
+		}
+		for (int i = 0; i < albums.size; i++, entry++) {
+			addField(postings, cache, entry, FIELD_NAME, albums.names[i]);
+			addField(postings, cache, entry, FIELD_ARTIST, albums.artists[i]);
+		}
+		for (int i = 0; i < snapshot.mSize; i++, entry++) {
+			addField(postings, cache, entry, FIELD_NAME, snapshot.mTitles[i]);
+			addField(postings, cache, entry, FIELD_ARTIST, snapshot.mArtists[i]);
+			addField(postings, cache, entry, FIELD_ALBUM, snapshot.mAlbums[i]);
+			String folder = snapshot.mFolders[i];
+			if (folder != null) {
+				addField(postings, cache, entry, FIELD_FOLDER, folder.substring(folder.lastIndexOf('/') + 1));
+			}
+		}
+		// only keep the words of texts still in the library
+		mTokenCache = cache;
+		index.setDictionary(postings);
+		return index;
+	}
+
+	/**
+	 * add the words of a text to the posting lists
+	 */
+	private void addField(Map<String, Postings> postings, Map<String, Tokens> cache, int entry, int field, String text) {
+		if (text == null || text.isEmpty())
+			return;
+		Tokens tokens = cache.get(text);
+		if (tokens == null) {
+			tokens = mTokenCache.get(text);
+			if (tokens == null) {
+				tokens = tokenize(text);
+			}
+			cache.put(text, tokens);
+		}
+		for (int i = 0; i < tokens.words.length; i++) {
+			Postings list = postings.get(tokens.words[i]);
+			if (list == null) {
+				list = new Postings();
+				postings.put(tokens.words[i], list);
+			}
+			list.add(entry, field << OFFSET_BITS | tokens.offsets[i]);
+		}
+	}
+
+	/**
+	 * split a text into normalized words. Every character of a word matches the character
+	 * at the same position of the text, so the offsets can be used to highlight the text
+	 */
+	private static Tokens tokenize(String text) {
+		List<String> words = new ArrayList<>(4);
+		List<Integer> offsets = new ArrayList<>(4);
+		if (text != null) {
+			StringBuilder word = new StringBuilder();
+			int i = 0;
+			while (i < text.length()) {
+				// Skip non-word characters
+				while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) {
+					i++;
+				}
+				int start = i;
+				while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+					word.append(fold(text.charAt(i)));
+					i++;
+				}
+				if (word.length() > 0) {
+					words.add(word.toString());
+					offsets.add(start);
+					word.setLength(0);
+				}
+			}
+		}
+		Tokens tokens = new Tokens(words.size());
+		for (int i = 0; i < tokens.words.length; i++) {
+			tokens.words[i] = words.get(i);
+			tokens.offsets[i] = offsets.get(i);
+		}
+		return tokens;
+	}
+
+	/**
+	 * convert a character to lower case without accents
+	 */
+	private static char fold(char c) {
+		c = Character.toLowerCase(c);
+		if (c < 0x80)
+			return c;
+		// remove accents by using the base character of the decomposed character
+		return Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+	}
+
+	/**
+	 * calculate the edit distance between a query term and the beginning of a word
+	 *
+	 * @param term    query term
+	 * @param word    indexed word
+	 * @param maxDist max allowed distance
+	 * @return distance or a value greater than maxDist
+	 */
+	private static int prefixDistance(String term, String word, int maxDist, int[] row, int[] prev) {
+		int columns = Math.min(word.length(), term.length() + maxDist);
+		for (int j = 0; j <= columns; j++) {
+			prev[j] = j;
+		}
+		for (int i = 1; i <= term.length(); i++) {
+			row[0] = i;
+			int min = i;
+			for (int j = 1; j <= columns; j++) {
+				int cost = term.charAt(i - 1) == word.charAt(j - 1) ? 0 : 1;
+				row[j] = Math.min(Math.min(row[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+				min = Math.min(min, row[j]);
+			}
+			if (min > maxDist)
+				return min;
+			int[] swap = prev;
+			prev = row;
+			row = swap;
+		}
+		// the word may continue after the matched part
+		int result = Integer.MAX_VALUE;
+		for (int j = Math.max(0, term.length() - maxDist); j <= columns; j++) {
+			result = Math.min(result, prev[j]);
+		}
+		return result;
+	}
+
+	/**
+	 * search result with the positions of the matched words in the name of the item
+	 */
+	public static final class Match {
+
+		private final Music music;
+		private final int[] highlights;
+
+		Match(Music music, int[] highlights) {
+			this.music = music;
+			this.highlights = highlights;
+		}
+
+		/**
+		 * @return matching artist, album or song
+		 */
+		public Music getMusic() {
+			return music;
+		}
+
+		/**
+		 * @return start and end positions of the matched parts of the name, stored in pairs
+		 */
+		public int[] getHighlights() {
+			return highlights;
+		}
+	}
+
+	/**
+	 * words of a text with their positions
+	 */
+	private static final class Tokens {
+
+		final String[] words;
+		final int[] offsets;
+
+		Tokens(int size) {
+			words = new String[size];
+			offsets = new int[size];
+		}
+	}
+
+	/**
+	 * growable posting list, stores pairs of item index and field/offset
+	 */
+	private static final class Postings {
+
+		int[] data = new int[4];
+		int size = 0;
+
+		void add(int entry, int position) {
+			if (size + 2 > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			data[size++] = entry;
+			data[size++] = position;
+		}
+	}
+
+	/**
+	 * immutable dictionary of a library snapshot with buffers used by the search
+	 */
+	private static final class Index {
+
+		final Snapshot snapshot;
+		final ArtistTable artists;
+		final AlbumTable albums;
+		final int size;
+
+		/**
+		 * sorted words and their posting lists
+		 */
+		String[] words;
+		int[][] postings;
+
+		/**
+		 * search buffers per item
+		 */
+		final int[] termCount;
+		final int[] termScore;
+		final int[] score;
+		final int[] highlightHead;
+
+		/**
+		 * items matching the first term
+		 */
+		int[] candidates = new int[64];
+
+		/**
+		 * highlight list nodes, stored as start, end and next node
+		 */
+		int[] highlights = new int[96];
+
+		/**
+		 * buffers for the edit distance
+		 */
+		final int[] row = new int[64];
+		final int[] prev = new int[64];
+
+		Index(Snapshot snapshot, ArtistTable artists, AlbumTable albums) {
+			this.snapshot = snapshot;
+			this.artists = artists;
+			this.albums = albums;
+			size = artists.size + albums.size + snapshot.mSize;
+			termCount = new int[size];
+			termScore = new int[size];
+			score = new int[size];
+			highlightHead = new int[size];
+		}
+
+		/**
+		 * sort the words of the posting lists
+		 */
+		void setDictionary(Map<String, Postings> map) {
+			words = map.keySet().toArray(new String[0]);
+			Arrays.sort(words);
+			postings = new int[words.length][];
+			for (int i = 0; i < words.length; i++) {
+				Postings list = map.get(words[i]);
+				postings[i] = Arrays.copyOf(list.data, list.size);
+			}
+		}
+
+		/**
+		 * search the index for items matching all terms
+		 */
+		List<Match> search(String[] terms, int limit) {
+			int candidateCount = 0;
+			int highlightCount = 3; // node 0 is used as end of list
+			for (int t = 0; t < terms.length; t++) {
+				String term = terms[t];
+				int start = lowerBound(term);
+				int end = start;
+				while (end < words.length && words[end].startsWith(term)) {
+					end++;
+				}
+				// exact and prefix matches first, the dictionary is sorted, so the exact match is the first word
+				for (int w = start; w < end; w++) {
+					int quality = words[w].length() == term.length() ? SCORE_EXACT : SCORE_PREFIX;
+					candidateCount = addMatches(w, t, quality, term.length(), candidateCount);
+				}
+				// words with typos, only words with the same first character are compared
+				int maxDist = term.length() >= MIN_LENGTH_TWO_TYPOS ? 2 : term.length() >= MIN_LENGTH_ONE_TYPO ? 1 : 0;
+				if (maxDist > 0 && term.length() + maxDist < row.length) {
+					int first = lowerBound(term.substring(0, 1));
+					for (int w = first; w < words.length && words[w].charAt(0) == term.charAt(0); w++) {
+						if (w >= start && w < end)
+							continue;
+						if (prefixDistance(term, words[w], maxDist, row, prev) <= maxDist) {
+							candidateCount = addMatches(w, t, SCORE_FUZZY, Math.min(term.length(), words[w].length()), candidateCount);
+						}
+					}
+				}
+				// collect highlights of this term
+				for (int c = 0; c < candidateCount; c++) {
+					int entry = candidates[c];
+					if (termCount[entry] == t + 1) {
+						// the upper bits contain the highlight, not the score
+						score[entry] += termScore[entry] & 0xffff;
+						int hl = termScore[entry] >>> 16;
+						termScore[entry] &= 0xffff;
+						if (hl != 0) {
+							highlightCount = addHighlight(entry, hl, highlightCount);
+						}
+					}
+				}
+			}
+			// sort matching items by score, type and name length
+			long[] keys = new long[candidateCount];
+			int count = 0;
+			for (int c = 0; c < candidateCount; c++) {
+				int entry = candidates[c];
+				if (termCount[entry] == terms.length) {
+					int type = getType(entry);
+					int length = Math.min(getName(entry).length(), 0xffff);
+					keys[count++] = (long) score[entry] << 40 | (long) (TYPE_SONG - type) << 38 | (long) (0xffff - length) << 22 | entry;
+				}
+			}
+			Arrays.sort(keys, 0, count);
+			List<Match> result = new ArrayList<>(Math.min(count, limit));
+			for (int i = count - 1; i >= 0 && result.size() < limit; i--) {
+				int entry = (int) (keys[i] & 0x3fffff);
+				result.add(new Match(createMusic(entry), getHighlights(entry)));
+			}
+			// reset the buffers for the next search
+			for (int c = 0; c < candidateCount; c++) {
+				int entry = candidates[c];
+				termCount[entry] = 0;
+				termScore[entry] = 0;
+				score[entry] = 0;
+				highlightHead[entry] = 0;
+			}
+			return result;
+		}
+
+		/**
+		 * add the items of a matching word. The best score of the term is stored in the lower bits of termScore,
+		 * the highlight of a name as (offset + 1) << 8 | length in the upper 16 bits
+		 *
+		 * @return new number of candidates
+		 */
+		private int addMatches(int word, int term, int quality, int length, int candidateCount) {
+			int[] list = postings[word];
+			for (int p = 0; p < list.length; p += 2) {
+				int entry = list[p];
+				int field = list[p + 1] >>> OFFSET_BITS;
+				int offset = list[p + 1] & ((1 << OFFSET_BITS) - 1);
+				if (termCount[entry] == term) {
+					termCount[entry] = term + 1;
+					termScore[entry] = 0;
+					if (term == 0) {
+						if (candidateCount == candidates.length) {
+							candidates = Arrays.copyOf(candidates, candidateCount * 2);
+						}
+						candidates[candidateCount++] = entry;
+					}
+				} else if (termCount[entry] != term + 1) {
+					// item didn't match a previous term
+					continue;
+				}
+				int value = quality * FIELD_WEIGHT[field];
+				if (field == FIELD_NAME && offset == 0) {
+					value += SCORE_START;
+				}
+				if (value > (termScore[entry] & 0xffff)) {
+					termScore[entry] = value;
+					if (field == FIELD_NAME && offset < 0xfe && length <= 0xff) {
+						termScore[entry] |= ((offset + 1) << 8 | length) << 16;
+					}
+				}
+			}
+			return candidateCount;
+		}
+
+		/**
+		 * add a highlight to the highlight list of an item
+		 *
+		 * @return new size of the highlight buffer
+		 */
+		private int addHighlight(int entry, int highlight, int highlightCount) {
+			if (highlightCount + 3 > highlights.length) {
+				highlights = Arrays.copyOf(highlights, highlights.length * 2);
+			}
+			int start = (highlight >>> 8) - 1;
+			highlights[highlightCount] = start;
+			highlights[highlightCount + 1] = start + (highlight & 0xff);
+			highlights[highlightCount + 2] = highlightHead[entry];
+			highlightHead[entry] = highlightCount;
+			return highlightCount + 3;
+		}
+
+		/**
+		 * get the highlights of an item as start/end pairs
+		 */
+		private int[] getHighlights(int entry) {
+			int count = 0;
+			for (int node = highlightHead[entry]; node != 0; node = highlights[node + 2]) {
+				count++;
+			}
+			int[] result = new int[count * 2];
+			int i = result.length;
+			for (int node = highlightHead[entry]; node != 0; node = highlights[node + 2]) {
+				result[--i] = highlights[node + 1];
+				result[--i] = highlights[node];
+			}
+			// sort by start position
+			for (int j = 2; j < result.length; j += 2) {
+				int start = result[j], end = result[j + 1];
+				int k = j;
+				for (; k > 0 && result[k - 2] > start; k -= 2) {
+					result[k] = result[k - 2];
+					result[k + 1] = result[k - 1];
+				}
+				result[k] = start;
+				result[k + 1] = end;
+			}
+			return result;
+		}
+
+		/**
+		 * find the position of the first word not smaller than the key
+		 */
+		private int lowerBound(String key) {
+			int low = 0, high = words.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (words[mid].compareTo(key) < 0) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private int getType(int entry) {
+			if (entry < artists.size)
+				return TYPE_ARTIST;
+			if (entry < artists.size + albums.size)
+				return TYPE_ALBUM;
+			return TYPE_SONG;
+		}
+
+		private String getName(int entry) {
+			String name;
+			if (entry < artists.size) {
+				name = artists.names[entry];
+			} else if (entry < artists.size + albums.size) {
+				name = albums.names[entry - artists.size];
+			} else {
+				name = snapshot.mTitles[entry - artists.size - albums.size];
+			}
+			return name != null ? name : "";
+		}
+
+		private Music createMusic(int entry) {
+			if (entry < artists.size)
+				return new Artist(artists.ids[entry], artists.names[entry], artists.songCounts[entry], artists.albumCounts[entry]);
+			entry -= artists.size;
+			if (entry < albums.size)
+				return albums.getAlbum(entry);
+			entry -= albums.size;
+			return snapshot.getSong(entry);
+		}
+	}
+}
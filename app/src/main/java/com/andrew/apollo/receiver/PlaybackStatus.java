@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 
 import com.andrew.apollo.MusicPlaybackService;
+import com.andrew.apollo.player.EventDispatcher;
 
 import java.lang.ref.WeakReference;
 
@@ -35,23 +36,34 @@ public class PlaybackStatus extends BroadcastReceiver {
 		PlayStatusListener callback = mReference.get();
 
 		if (action != null && callback != null) {
-			switch (action) {
-				case MusicPlaybackService.META_CHANGED:
-					callback.onMetaChange();
-					break;
-
-				case MusicPlaybackService.PLAYSTATE_CHANGED:
-					callback.onStateChange();
-					break;
-
-				case MusicPlaybackService.REPEATMODE_CHANGED:
-				case MusicPlaybackService.SHUFFLEMODE_CHANGED:
-					callback.onModeChange();
-					break;
-
-				case MusicPlaybackService.REFRESH:
-					callback.refresh();
-					break;
+			// merged broadcasts contain all changed actions
+			String[] changes = intent.getStringArrayExtra(EventDispatcher.EXTRA_CHANGES);
+			if (changes == null) {
+				changes = new String[]{action};
+			}
+			boolean modeChanged = false;
+			for (String change : changes) {
+				switch (change) {
+					case MusicPlaybackService.META_CHANGED:
+						callback.onMetaChange();
+						break;
+
+					case MusicPlaybackService.PLAYSTATE_CHANGED:
+						callback.onStateChange();
+						break;
+
+					case MusicPlaybackService.REPEATMODE_CHANGED:
+					case MusicPlaybackService.SHUFFLEMODE_CHANGED:
+						if (!modeChanged) {
+							modeChanged = true;
+							callback.onModeChange();
+						}
+						break;
+
+					case MusicPlaybackService.REFRESH:
+						callback.refresh();
+						break;
+				}
 			}
 		}
 	}
@@ -57,11 +57,13 @@ public class WidgetBroadcastReceiver extends BroadcastReceiver {
 
 	/**
 	 * update app widgets
+	 *
+	 * @param changes flags of the changed information, see {@link AppWidgetBase#CHANGED_TRACK}
 	 */
-	public void updateWidgets(MusicPlaybackService service, String what) {
-		smallWidget.notifyChange(service, what);
-		largeWidget.notifyChange(service, what);
-		altWidget.notifyChange(service, what);
-		recentWidget.notifyChange(service, what);
+	public void updateWidgets(MusicPlaybackService service, int changes) {
+		smallWidget.notifyChange(service, changes);
+		largeWidget.notifyChange(service, changes);
+		altWidget.notifyChange(service, changes);
+		recentWidget.notifyChange(service, changes);
 	}
 }
\ No newline at end of file
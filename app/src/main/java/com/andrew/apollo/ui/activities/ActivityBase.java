@@ -36,6 +36,7 @@ import androidx.appcompat.widget.SearchView.OnQueryTextListener;
 
 import com.andrew.apollo.MusicPlaybackService;
 import com.andrew.apollo.R;
+import com.andrew.apollo.cache.Prefetcher;
 import com.andrew.apollo.receiver.PlaybackStatus;
 import com.andrew.apollo.receiver.PlaybackStatus.PlayStatusListener;
 import com.andrew.apollo.ui.views.PlayPauseButton;
@@ -185,6 +186,8 @@ public abstract class ActivityBase extends AppCompatActivity implements ServiceC
 		updatePlaybackControls();
 		// Current info
 		updateBottomActionBarInfo();
+		// load artwork of the likely viewed items when idle
+		Prefetcher.getInstance(this).schedule();
 	}
 
 	/**
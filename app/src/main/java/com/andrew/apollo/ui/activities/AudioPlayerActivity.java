@@ -62,6 +62,7 @@ import com.andrew.apollo.R;
 import com.andrew.apollo.adapters.PagerAdapter;
 import com.andrew.apollo.cache.ImageFetcher;
 import com.andrew.apollo.menu.DeleteDialog.DeleteDialogCallback;
+import com.andrew.apollo.player.PlaybackState;
 import com.andrew.apollo.receiver.PlaybackStatus;
 import com.andrew.apollo.receiver.PlaybackStatus.PlayStatusListener;
 import com.andrew.apollo.ui.fragments.FragmentCallback;
@@ -653,12 +654,13 @@ public class AudioPlayerActivity extends AppCompatActivity implements ServiceCon
 	 * Sets the track name, album name, and album art.
 	 */
 	private void updateNowPlayingInfo() {
+		PlaybackState state = MusicUtils.getPlaybackState();
 		// Set the track name
-		mTrackName.setText(MusicUtils.getTrackName());
+		mTrackName.setText(state.getTrackName());
 		// Set the artist name
-		mArtistName.setText(MusicUtils.getArtistName());
+		mArtistName.setText(state.getArtistName());
 		// Set the total time
-		mTotalTime.setText(StringUtils.makeTimeString(this, (int) MusicUtils.duration() / 1000));
+		mTotalTime.setText(StringUtils.makeTimeString(this, (int) state.getDuration() / 1000));
 		// Set the album art
 		mImageFetcher.loadCurrentArtwork(mAlbumArt);
 		// Set the small artwork
@@ -858,15 +860,18 @@ public class AudioPlayerActivity extends AppCompatActivity implements ServiceCon
 			return 500;
 		}
 		try {
-			long pos = mPosOverride < 0 ? MusicUtils.position() : mPosOverride;
-			if (pos >= 0 && MusicUtils.duration() > 0) {
+			// get all values with a single call
+			PlaybackState state = MusicUtils.getPlaybackState();
+			long duration = state.getDuration();
+			long pos = mPosOverride < 0 ? state.getPosition() : mPosOverride;
+			if (pos >= 0 && duration > 0) {
 				refreshCurrentTimeText(pos);
-				int progress = (int) (1000 * pos / MusicUtils.duration());
+				int progress = (int) (1000 * pos / duration);
 				mProgress.setProgress(progress);
 
 				if (mFromTouch) {
 					return 500;
-				} else if (MusicUtils.isPlaying()) {
+				} else if (state.isPlaying()) {
 					mCurrentTime.setVisibility(View.VISIBLE);
 				} else {
 					// blink the counter
@@ -888,7 +893,7 @@ public class AudioPlayerActivity extends AppCompatActivity implements ServiceCon
 			if (width == 0) {
 				width = 320;
 			}
-			long smoothrefreshtime = MusicUtils.duration() / width;
+			long smoothrefreshtime = duration / width;
 			if (smoothrefreshtime > remaining) {
 				return remaining;
 			}
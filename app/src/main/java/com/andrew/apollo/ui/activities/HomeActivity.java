@@ -29,6 +29,7 @@ import androidx.fragment.app.Fragment;
 import androidx.viewpager.widget.ViewPager;
 
 import com.andrew.apollo.R;
+import com.andrew.apollo.provider.LibraryIndex;
 import com.andrew.apollo.ui.fragments.phone.MusicBrowserPhoneFragment;
 import com.andrew.apollo.utils.MusicUtils;
 import com.andrew.apollo.utils.ThemeUtils;
@@ -130,6 +131,8 @@ public class HomeActivity extends ActivityBase {
 	 * initialize fragment
 	 */
 	private void init() {
+		// start building the library index while the UI is created
+		LibraryIndex.getInstance(this).preload();
 		fragment = new MusicBrowserPhoneFragment();
 		getSupportFragmentManager().beginTransaction().replace(R.id.activity_base_content, fragment).commit();
 	}
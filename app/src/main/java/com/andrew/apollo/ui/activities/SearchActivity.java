@@ -40,6 +40,7 @@ import com.andrew.apollo.model.Album;
 import com.andrew.apollo.model.Artist;
 import com.andrew.apollo.model.Music;
 import com.andrew.apollo.model.Song;
+import com.andrew.apollo.provider.SearchIndex;
 import com.andrew.apollo.utils.ApolloUtils;
 import com.andrew.apollo.utils.MusicUtils;
 import com.andrew.apollo.utils.MusicUtils.ServiceToken;
@@ -53,7 +54,7 @@ import java.util.List;
  *
  * @author Andrew Neal (andrewdneal@gmail.com)
  */
-public class SearchActivity extends ActivityBase implements LoaderCallbacks<List<Music>>,
+public class SearchActivity extends ActivityBase implements LoaderCallbacks<List<SearchIndex.Match>>,
 		OnScrollListener, OnQueryTextListener, OnItemClickListener {
 
 	/**
@@ -104,6 +105,8 @@ public class SearchActivity extends ActivityBase implements LoaderCallbacks<List
 		setVolumeControlStream(AudioManager.STREAM_MUSIC);
 		// Bind Apollo's service
 		mToken = MusicUtils.bindToService(this, this);
+		// build the search index while the activity is created
+		SearchIndex.getInstance(this).preload();
 		// Get the query
 		String query = getIntent().getStringExtra(SearchManager.QUERY);
 		mFilterString = !TextUtils.isEmpty(query) ? query : null;
@@ -193,25 +196,25 @@ public class SearchActivity extends ActivityBase implements LoaderCallbacks<List
 	 */
 	@NonNull
 	@Override
-	public Loader<List<Music>> onCreateLoader(int id, Bundle args) {
+	public Loader<List<SearchIndex.Match>> onCreateLoader(int id, Bundle args) {
 		return new MusicSearchLoader(this, mFilterString);
 	}
 
 
 	@Override
-	public void onLoadFinished(@NonNull Loader<List<Music>> loader, List<Music> data) {
+	public void onLoadFinished(@NonNull Loader<List<SearchIndex.Match>> loader, List<SearchIndex.Match> data) {
 		// disable loader until user interaction
 		LoaderManager.getInstance(this).destroyLoader(LOADER_ID);
 		// set data
 		mAdapter.clear();
-		for (Music music : data) {
-			mAdapter.add(music);
+		for (SearchIndex.Match match : data) {
+			mAdapter.add(match.getMusic(), match.getHighlights());
 		}
 	}
 
 
 	@Override
-	public void onLoaderReset(@NonNull androidx.loader.content.Loader<List<Music>> loader) {
+	public void onLoaderReset(@NonNull androidx.loader.content.Loader<List<SearchIndex.Match>> loader) {
 	}
 
 
@@ -40,8 +40,10 @@ import androidx.loader.content.Loader;
 
 import com.andrew.apollo.R;
 import com.andrew.apollo.adapters.AlbumAdapter;
+import com.andrew.apollo.adapters.ChangeSet;
 import com.andrew.apollo.adapters.recycler.RecycleHolder;
 import com.andrew.apollo.loaders.AlbumLoader;
+import com.andrew.apollo.loaders.ChangeSetLoader;
 import com.andrew.apollo.menu.CreateNewPlaylist;
 import com.andrew.apollo.menu.FragmentMenuItems;
 import com.andrew.apollo.model.Album;
@@ -52,14 +54,12 @@ import com.andrew.apollo.utils.MusicUtils;
 import com.andrew.apollo.utils.NavUtils;
 import com.andrew.apollo.utils.PreferenceUtils;
 
-import java.util.List;
-
 /**
  * This class is used to display all of the albums on a user's device.
  *
  * @author Andrew Neal (andrewdneal@gmail.com)
  */
-public class AlbumFragment extends Fragment implements LoaderCallbacks<List<Album>>,
+public class AlbumFragment extends Fragment implements LoaderCallbacks<ChangeSet<Album>>,
 		OnScrollListener, OnItemClickListener, MusicStateListener, FragmentCallback {
 
 	/**
@@ -275,30 +275,26 @@ public class AlbumFragment extends Fragment implements LoaderCallbacks<List<Albu
 	 */
 	@Override
 	@NonNull
-	public Loader<List<Album>> onCreateLoader(int id, @Nullable Bundle args) {
-		return new AlbumLoader(requireContext());
+	public Loader<ChangeSet<Album>> onCreateLoader(int id, @Nullable Bundle args) {
+		return new ChangeSetLoader<>(requireContext(), new AlbumLoader(requireContext()), ChangeSet.getItems(mAdapter));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void onLoadFinished(@NonNull Loader<List<Album>> loader, @NonNull List<Album> data) {
+	public void onLoadFinished(@NonNull Loader<ChangeSet<Album>> loader, @NonNull ChangeSet<Album> data) {
 		// disable loader
 		LoaderManager.getInstance(this).destroyLoader(LOADER_ID);
-		// Start fresh
-		mAdapter.clear();
-		// Add the data to the adapter
-		for (Album album : data) {
-			mAdapter.add(album);
-		}
+		// update only the changed rows
+		data.apply(mAdapter, mList);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void onLoaderReset(@NonNull Loader<List<Album>> loader) {
+	public void onLoaderReset(@NonNull Loader<ChangeSet<Album>> loader) {
 		// Clear the data in the adapter
 		mAdapter.clear();
 	}
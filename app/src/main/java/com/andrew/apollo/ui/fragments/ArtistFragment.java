@@ -40,8 +40,10 @@ import androidx.loader.content.Loader;
 
 import com.andrew.apollo.R;
 import com.andrew.apollo.adapters.ArtistAdapter;
+import com.andrew.apollo.adapters.ChangeSet;
 import com.andrew.apollo.adapters.recycler.RecycleHolder;
 import com.andrew.apollo.loaders.ArtistLoader;
+import com.andrew.apollo.loaders.ChangeSetLoader;
 import com.andrew.apollo.menu.CreateNewPlaylist;
 import com.andrew.apollo.menu.FragmentMenuItems;
 import com.andrew.apollo.model.Artist;
@@ -52,14 +54,12 @@ import com.andrew.apollo.utils.MusicUtils;
 import com.andrew.apollo.utils.NavUtils;
 import com.andrew.apollo.utils.PreferenceUtils;
 
-import java.util.List;
-
 /**
  * This class is used to display all of the artists on a user's device.
  *
  * @author Andrew Neal (andrewdneal@gmail.com)
  */
-public class ArtistFragment extends Fragment implements LoaderCallbacks<List<Artist>>,
+public class ArtistFragment extends Fragment implements LoaderCallbacks<ChangeSet<Artist>>,
 		OnScrollListener, OnItemClickListener, MusicStateListener, FragmentCallback {
 
 	/**
@@ -277,30 +277,26 @@ public class ArtistFragment extends Fragment implements LoaderCallbacks<List<Art
 	 */
 	@NonNull
 	@Override
-	public Loader<List<Artist>> onCreateLoader(int id, Bundle args) {
-		return new ArtistLoader(requireActivity());
+	public Loader<ChangeSet<Artist>> onCreateLoader(int id, Bundle args) {
+		return new ChangeSetLoader<>(requireActivity(), new ArtistLoader(requireActivity()), ChangeSet.getItems(mAdapter));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void onLoadFinished(@NonNull Loader<List<Artist>> loader, @NonNull List<Artist> data) {
+	public void onLoadFinished(@NonNull Loader<ChangeSet<Artist>> loader, @NonNull ChangeSet<Artist> data) {
 		// disable loader
 		LoaderManager.getInstance(this).destroyLoader(LOADER_ID);
-		// Start fresh
-		mAdapter.clear();
-		// Add the data to the adapter
-		for (Artist artist : data) {
-			mAdapter.add(artist);
-		}
+		// update only the changed rows
+		data.apply(mAdapter, mList);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void onLoaderReset(@NonNull Loader<List<Artist>> loader) {
+	public void onLoaderReset(@NonNull Loader<ChangeSet<Artist>> loader) {
 		// Clear the data in the adapter
 		mAdapter.clear();
 	}
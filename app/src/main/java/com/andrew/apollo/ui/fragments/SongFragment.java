@@ -34,8 +34,10 @@ import androidx.loader.app.LoaderManager;
 import androidx.loader.content.Loader;
 
 import com.andrew.apollo.R;
+import com.andrew.apollo.adapters.ChangeSet;
 import com.andrew.apollo.adapters.SongAdapter;
 import com.andrew.apollo.adapters.recycler.RecycleHolder;
+import com.andrew.apollo.loaders.ChangeSetLoader;
 import com.andrew.apollo.loaders.SongLoader;
 import com.andrew.apollo.menu.CreateNewPlaylist;
 import com.andrew.apollo.menu.FragmentMenuItems;
@@ -46,14 +48,12 @@ import com.andrew.apollo.ui.activities.ActivityBase.MusicStateListener;
 import com.andrew.apollo.utils.MusicUtils;
 import com.andrew.apollo.utils.NavUtils;
 
-import java.util.List;
-
 /**
  * This class is used to display all of the songs on a user's device.
  *
  * @author Andrew Neal (andrewdneal@gmail.com)
  */
-public class SongFragment extends Fragment implements LoaderManager.LoaderCallbacks<List<Song>>,
+public class SongFragment extends Fragment implements LoaderManager.LoaderCallbacks<ChangeSet<Song>>,
 		OnItemClickListener, MusicStateListener, FragmentCallback {
 
 	/**
@@ -239,30 +239,26 @@ public class SongFragment extends Fragment implements LoaderManager.LoaderCallba
 	 */
 	@NonNull
 	@Override
-	public Loader<List<Song>> onCreateLoader(int id, Bundle args) {
-		return new SongLoader(requireContext());
+	public Loader<ChangeSet<Song>> onCreateLoader(int id, Bundle args) {
+		return new ChangeSetLoader<>(requireContext(), new SongLoader(requireContext()), ChangeSet.getItems(mAdapter));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void onLoadFinished(@NonNull Loader<List<Song>> loader, @NonNull List<Song> data) {
+	public void onLoadFinished(@NonNull Loader<ChangeSet<Song>> loader, @NonNull ChangeSet<Song> data) {
 		// disable loader
 		LoaderManager.getInstance(this).destroyLoader(LOADER_ID);
-		// Start fresh
-		mAdapter.clear();
-		// Add the data to the adapter
-		for (Song song : data) {
-			mAdapter.add(song);
-		}
+		// update only the changed rows
+		data.apply(mAdapter, mList);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void onLoaderReset(@NonNull Loader<List<Song>> loader) {
+	public void onLoaderReset(@NonNull Loader<ChangeSet<Song>> loader) {
 		// Clear the data in the adapter
 		mAdapter.clear();
 	}
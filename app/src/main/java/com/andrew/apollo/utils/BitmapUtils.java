@@ -22,9 +22,25 @@ import android.graphics.Paint;
  */
 public final class BitmapUtils {
 
-	/* Initial blur radius. */
+	/* Blur radius of a full size image. */
 	private static final int DEFAULT_BLUR_RADIUS = 8;
 
+	/* Min blur radius of the downsampled image. */
+	private static final int MIN_BLUR_RADIUS = 2;
+
+	/* Max width and height of a blurred image. */
+	private static final int BLUR_SIZE = 96;
+
+	/**
+	 * scratch buffers of the blur, one instance per thread
+	 */
+	private static final ThreadLocal<BlurBuffers> BLUR_BUFFERS = new ThreadLocal<BlurBuffers>() {
+		@Override
+		protected BlurBuffers initialValue() {
+			return new BlurBuffers();
+		}
+	};
+
 	/**
 	 * This class is never instantiated
 	 */
@@ -32,16 +48,45 @@ public final class BitmapUtils {
 	}
 
 	/**
-	 * Takes a bitmap and creates a new slightly blurry version of it.
+	 * Takes a bitmap and creates a new blurry version of it. The image is scaled down
+	 * to at most {@link #BLUR_SIZE} pixels before blurring, the image view scales it up again.
 	 *
 	 * @param sentBitmap The {@link Bitmap} to blur.
-	 * @return A blurred version of the given {@link Bitmap}.
+	 * @return A blurred, downsampled version of the given {@link Bitmap}.
 	 */
 	public static Bitmap createBlurredBitmap(Bitmap sentBitmap) {
 		if (sentBitmap == null) {
 			return null;
 		}
+		int srcWidth = sentBitmap.getWidth();
+		int srcHeight = sentBitmap.getHeight();
+		float scale = Math.min(1f, (float) BLUR_SIZE / Math.max(srcWidth, srcHeight));
+		int w = Math.max(1, Math.round(srcWidth * scale));
+		int h = Math.max(1, Math.round(srcHeight * scale));
+		int radius = Math.max(MIN_BLUR_RADIUS, Math.round(DEFAULT_BLUR_RADIUS * scale));
+
+		BlurBuffers buffers = BLUR_BUFFERS.get();
+		buffers.ensure(w, h, radius);
+		Bitmap scaled = Bitmap.createScaledBitmap(sentBitmap, w, h, true);
+		scaled.getPixels(buffers.pix, 0, w, 0, 0, w, h);
+		if (scaled != sentBitmap) {
+			scaled.recycle();
+		}
+		stackBlur(buffers, w, h, radius);
+		Bitmap result = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+		result.setPixels(buffers.pix, 0, w, 0, 0, w, h);
+		return result;
+	}
 
+	/**
+	 * blur the pixels of {@link BlurBuffers#pix} in place
+	 *
+	 * @param buffers scratch buffers prepared for the image size and the radius
+	 * @param w       image width
+	 * @param h       image height
+	 * @param radius  blur radius
+	 */
+	private static void stackBlur(BlurBuffers buffers, int w, int h, int radius) {
 		// Stack Blur v1.0 from
 		// http://www.quasimondo.com/StackBlurForCanvas/StackBlurDemo.html
 		//
@@ -70,48 +115,33 @@ public final class BitmapUtils {
 		//
 		// Stack Blur Algorithm by Mario Klingemann <mario@quasimondo.com>
 
-		Bitmap mBitmap = sentBitmap.copy(sentBitmap.getConfig(), true);
-
-		int w = mBitmap.getWidth();
-		int h = mBitmap.getHeight();
-
-		int[] pix = new int[w * h];
-		mBitmap.getPixels(pix, 0, w, 0, 0, w, h);
+		int[] pix = buffers.pix;
+		int[] r = buffers.r;
+		int[] g = buffers.g;
+		int[] b = buffers.b;
+		int[] vmin = buffers.vmin;
+		int[] dv = buffers.dv;
+		int[][] stack = buffers.stack;
 
 		int wm = w - 1;
 		int hm = h - 1;
-		int wh = w * h;
-		int div = DEFAULT_BLUR_RADIUS + DEFAULT_BLUR_RADIUS + 1;
-
-		int[] r = new int[wh];
-		int[] g = new int[wh];
-		int[] b = new int[wh];
-		int[] vmin = new int[Math.max(w, h)];
+		int div = radius + radius + 1;
 		int rsum, gsum, bsum, x, y, i, p, yp, yi, yw;
 
-		int divsum = div + 1 >> 1;
-		divsum *= divsum;
-		int[] dv = new int[256 * divsum];
-		for (i = 0; i < 256 * divsum; i++) {
-			dv[i] = i / divsum;
-		}
-
 		yw = yi = 0;
 
-		int[][] stack = new int[div][3];
 		int stackpointer;
 		int stackstart;
 		int[] sir;
 		int rbs;
-		int r1 = DEFAULT_BLUR_RADIUS + 1;
+		int r1 = radius + 1;
 		int routsum, goutsum, boutsum;
 		int rinsum, ginsum, binsum;
-
 		for (y = 0; y < h; y++) {
 			rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-			for (i = -DEFAULT_BLUR_RADIUS; i <= DEFAULT_BLUR_RADIUS; i++) {
+			for (i = -radius; i <= radius; i++) {
 				p = pix[yi + Math.min(wm, Math.max(i, 0))];
-				sir = stack[i + DEFAULT_BLUR_RADIUS];
+				sir = stack[i + radius];
 				sir[0] = (p & 0xff0000) >> 16;
 				sir[1] = (p & 0x00ff00) >> 8;
 				sir[2] = p & 0x0000ff;
@@ -129,7 +159,7 @@ public final class BitmapUtils {
 					boutsum += sir[2];
 				}
 			}
-			stackpointer = DEFAULT_BLUR_RADIUS;
+			stackpointer = radius;
 
 			for (x = 0; x < w; x++) {
 
@@ -141,7 +171,7 @@ public final class BitmapUtils {
 				gsum -= goutsum;
 				bsum -= boutsum;
 
-				stackstart = stackpointer - DEFAULT_BLUR_RADIUS + div;
+				stackstart = stackpointer - radius + div;
 				sir = stack[stackstart % div];
 
 				routsum -= sir[0];
@@ -149,7 +179,7 @@ public final class BitmapUtils {
 				boutsum -= sir[2];
 
 				if (y == 0) {
-					vmin[x] = Math.min(x + DEFAULT_BLUR_RADIUS + 1, wm);
+					vmin[x] = Math.min(x + radius + 1, wm);
 				}
 				p = pix[yw + vmin[x]];
 
@@ -182,11 +212,11 @@ public final class BitmapUtils {
 		}
 		for (x = 0; x < w; x++) {
 			rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-			yp = -DEFAULT_BLUR_RADIUS * w;
-			for (i = -DEFAULT_BLUR_RADIUS; i <= DEFAULT_BLUR_RADIUS; i++) {
+			yp = -radius * w;
+			for (i = -radius; i <= radius; i++) {
 				yi = Math.max(0, yp) + x;
 
-				sir = stack[i + DEFAULT_BLUR_RADIUS];
+				sir = stack[i + radius];
 
 				sir[0] = r[yi];
 				sir[1] = g[yi];
@@ -213,7 +243,7 @@ public final class BitmapUtils {
 				}
 			}
 			yi = x;
-			stackpointer = DEFAULT_BLUR_RADIUS;
+			stackpointer = radius;
 			for (y = 0; y < h; y++) {
 				pix[yi] = 0xff000000 | dv[rsum] << 16 | dv[gsum] << 8 | dv[bsum];
 
@@ -221,7 +251,7 @@ public final class BitmapUtils {
 				gsum -= goutsum;
 				bsum -= boutsum;
 
-				stackstart = stackpointer - DEFAULT_BLUR_RADIUS + div;
+				stackstart = stackpointer - radius + div;
 				sir = stack[stackstart % div];
 
 				routsum -= sir[0];
@@ -259,9 +289,6 @@ public final class BitmapUtils {
 				yi += w;
 			}
 		}
-
-		mBitmap.setPixels(pix, 0, w, 0, 0, w, h);
-		return mBitmap;
 	}
 
 	/**
@@ -292,4 +319,46 @@ public final class BitmapUtils {
 		mCanvas.drawBitmap(bitmap, 0, 0, paint);
 		return mTarget;
 	}
+
+	/**
+	 * scratch buffers of the stack blur, reused for every image blurred by the same thread
+	 */
+	private static final class BlurBuffers {
+
+		int[] pix = {};
+		int[] r = {};
+		int[] g = {};
+		int[] b = {};
+		int[] vmin = {};
+		int[] dv = {};
+		int[][] stack = {};
+		int radius = 0;
+
+		/**
+		 * grow the buffers for an image size and update the lookup tables for a radius
+		 */
+		void ensure(int w, int h, int radius) {
+			int wh = w * h;
+			if (pix.length < wh) {
+				pix = new int[wh];
+				r = new int[wh];
+				g = new int[wh];
+				b = new int[wh];
+			}
+			if (vmin.length < Math.max(w, h)) {
+				vmin = new int[Math.max(w, h)];
+			}
+			if (this.radius != radius) {
+				int div = radius + radius + 1;
+				int divsum = div + 1 >> 1;
+				divsum *= divsum;
+				dv = new int[256 * divsum];
+				for (int i = 0; i < dv.length; i++) {
+					dv[i] = i / divsum;
+				}
+				stack = new int[div][3];
+				this.radius = radius;
+			}
+		}
+	}
 }
@@ -8,11 +8,9 @@ import android.annotation.SuppressLint;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
-import android.os.Build;
-import android.provider.BaseColumns;
-import android.provider.MediaStore;
 import android.provider.MediaStore.Audio.Albums;
 import android.provider.MediaStore.Audio.Artists;
 import android.provider.MediaStore.Audio.AudioColumns;
@@ -31,6 +29,7 @@ import com.andrew.apollo.provider.PopularStore.PopularColumns;
 import com.andrew.apollo.provider.RecentStore;
 import com.andrew.apollo.provider.RecentStore.RecentStoreColumns;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -46,10 +45,9 @@ public class CursorFactory {
 	private static final String DEF_SORT = " DESC";
 
 	/**
-	 * custom android version dependent column name
+	 * max number of track IDs used in a single IN clause
 	 */
-	private static final String ALBUM_ID = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ?
-			Artists.Albums.ALBUM_ID : BaseColumns._ID;
+	private static final int MAX_ID_CHUNK = 500;
 
 	/**
 	 * SQL Projection of an album row
@@ -66,30 +64,34 @@ public class CursorFactory {
 	};
 
 	/**
-	 * SQL Projection of an album row
+	 * SQL Projection to get song information in a fixed order
 	 */
 	@SuppressLint("InlinedApi")
-	public static final String[] ARTIST_ALBUM_COLUMN = {
-			ALBUM_ID,
-			Artists.Albums.ALBUM,
-			Artists.Albums.ARTIST,
-			Artists.Albums.NUMBER_OF_SONGS,
-			Artists.Albums.FIRST_YEAR,
-			Artists.Albums.ARTIST_ID
+	public static final String[] TRACK_COLUMNS = {
+			Media._ID,
+			Media.TITLE,
+			Media.ARTIST,
+			Media.ALBUM,
+			Media.DURATION,
+			Media.DATA,
+			Media.MIME_TYPE
 	};
 
 	/**
-	 * SQL Projection to get song information in a fixed order
+	 * projection of the in-memory library index
 	 */
 	@SuppressLint("InlinedApi")
-	public static final String[] TRACK_COLUMNS = {
+	public static final String[] LIBRARY_COLUMNS = {
 			Media._ID,
 			Media.TITLE,
 			Media.ARTIST,
 			Media.ALBUM,
 			Media.DURATION,
 			Media.DATA,
-			Media.MIME_TYPE
+			Media.ALBUM_ID,
+			Media.ARTIST_ID,
+			Media.DATE_ADDED,
+			Media.DATE_MODIFIED
 	};
 
 	/**
@@ -206,10 +208,18 @@ public class CursorFactory {
 	};
 
 	/**
-	 * projection for music folder
+	 * projection to check library tracks for changes
 	 */
-	private static final String[] FOLDER_COLUMNS = {
-			Media.DATA
+	private static final String[] LIBRARY_SCAN_COLUMNS = {
+			Media._ID,
+			Media.DATE_MODIFIED
+	};
+
+	/**
+	 * projection to get the order of the library tracks
+	 */
+	private static final String[] TRACK_ID_COLUMN = {
+			Media._ID
 	};
 
 	/**
@@ -326,7 +336,7 @@ public class CursorFactory {
 	/**
 	 * sort folder tracks
 	 */
-	private static final String FOLDER_TRACKS_ORDER = Media.TRACK + "," + Media.TITLE;
+	public static final String FOLDER_TRACKS_ORDER = Media.TRACK + "," + Media.TITLE;
 
 	/**
 	 * default order to sort last added tracks
@@ -540,20 +550,6 @@ public class CursorFactory {
 		return contentResolver.query(Media.EXTERNAL_CONTENT_URI, TRACK_COLUMNS, FOLDER_TRACK_SELECT, args, FOLDER_TRACKS_ORDER);
 	}
 
-	/**
-	 * create cursor to get all audio files and their paths with fixed column order
-	 * {@link #FOLDER_COLUMNS}
-	 *
-	 * @return cursor with all songs
-	 */
-	@Nullable
-	public static Cursor makeFolderCursor(Context context) {
-		ContentResolver contentResolver = context.getContentResolver();
-
-		String sortOrder = PreferenceUtils.getInstance(context).getSongSortOrder();
-		return contentResolver.query(Media.EXTERNAL_CONTENT_URI, FOLDER_COLUMNS, TRACK_FILTER_SELECT, null, sortOrder);
-	}
-
 	/**
 	 * create a cursor to parse a table with favorite lists with fixed column order
 	 * {@link #FAVORITE_COLUMNS}
@@ -606,23 +602,6 @@ public class CursorFactory {
 		return resolver.query(Artists.EXTERNAL_CONTENT_URI, ARTIST_COLUMNS, ARTIST_SELECT, args, null);
 	}
 
-	/**
-	 * create a cursor to get a table with all albums from an artist with fixed column order
-	 * {@link #ALBUM_COLUMN}
-	 *
-	 * @param artistId ID of the artist
-	 * @return cursor with album information
-	 */
-	@Nullable
-	@SuppressLint("InlinedApi")
-	public static Cursor makeArtistAlbumCursor(Context context, long artistId) {
-		ContentResolver resolver = context.getContentResolver();
-		Uri uri = Artists.Albums.getContentUri(VOLUME_EXTERNAL, artistId);
-
-		String order = PreferenceUtils.getInstance(context).getArtistAlbumSortOrder();
-		return resolver.query(uri, ARTIST_ALBUM_COLUMN, null, null, order);
-	}
-
 	/**
 	 * create a cursor to get all songs from an artist with fixed column order
 	 * {@link #TRACK_COLUMNS}
@@ -639,20 +618,6 @@ public class CursorFactory {
 		return resolver.query(Media.EXTERNAL_CONTENT_URI, TRACK_COLUMNS, ARTIST_SONG_SELECT, args, order);
 	}
 
-	/**
-	 * create a cursor to get all albums with fixed column order
-	 * {@link #ALBUM_COLUMN}
-	 *
-	 * @return cursor with album table
-	 */
-	@Nullable
-	public static Cursor makeAlbumCursor(Context context) {
-		ContentResolver resolver = context.getContentResolver();
-
-		String sortOrder = PreferenceUtils.getInstance(context).getAlbumSortOrder();
-		return resolver.query(Albums.EXTERNAL_CONTENT_URI, ALBUM_COLUMN, null, null, sortOrder);
-	}
-
 	/**
 	 * create a cursor to get all song information from an album with fixed column order
 	 * {@link #TRACK_COLUMNS}
@@ -778,17 +743,7 @@ public class CursorFactory {
 	 */
 	@Nullable
 	public static Cursor makeTrackListCursor(Context context, long[] trackIds) {
-		StringBuilder selection = new StringBuilder();
-		selection.append(Media._ID + " IN (");
-		for (int i = 0; i < trackIds.length; i++) {
-			selection.append(trackIds[i]);
-			if (i < trackIds.length - 1) {
-				selection.append(",");
-			}
-		}
-		selection.append(")");
-		ContentResolver resolver = context.getContentResolver();
-		return resolver.query(Media.EXTERNAL_CONTENT_URI, AUDIO_COLUMNS, selection.toString(), null, null);
+		return makeTrackIdCursor(context, AUDIO_COLUMNS, trackIds, true);
 	}
 
 	/**
@@ -796,20 +751,152 @@ public class CursorFactory {
 	 * {@link #NP_COLUMNS}
 	 *
 	 * @param ids query with track IDs
-	 * @return cursor with track information
+	 * @return cursor with track information, rows are not sorted
 	 */
 	@Nullable
-	public static Cursor makeNowPlayingCursor(Context context, List<Long> ids) {
+	public static Cursor makeNowPlayingCursor(Context context, long[] ids) {
+		return makeTrackIdCursor(context, NP_COLUMNS, ids, false);
+	}
+
+	/**
+	 * create a cursor to get all songs of the library index with fixed column order
+	 * {@link #LIBRARY_COLUMNS}
+	 *
+	 * @return cursor with song information, rows are not sorted
+	 */
+	@Nullable
+	public static Cursor makeLibraryCursor(Context context) {
+		ContentResolver resolver = context.getContentResolver();
+		return resolver.query(Media.EXTERNAL_CONTENT_URI, LIBRARY_COLUMNS, TRACK_FILTER_SELECT, null, null);
+	}
+
+	/**
+	 * create a cursor to get library information of a list of tracks with fixed column order
+	 * {@link #LIBRARY_COLUMNS}
+	 *
+	 * @param ids track IDs to query
+	 * @return cursor with song information, rows are not sorted
+	 */
+	@Nullable
+	public static Cursor makeLibraryCursor(Context context, long[] ids) {
+		return makeTrackIdCursor(context, LIBRARY_COLUMNS, ids, false);
+	}
+
+	/**
+	 * create a cursor to get the ID and the modification time of all songs.
+	 * Used to find new, changed and removed songs of the library index
+	 *
+	 * @return cursor with track ID and modification time, rows are not sorted
+	 */
+	@Nullable
+	public static Cursor makeLibraryScanCursor(Context context) {
+		ContentResolver resolver = context.getContentResolver();
+		return resolver.query(Media.EXTERNAL_CONTENT_URI, LIBRARY_SCAN_COLUMNS, TRACK_FILTER_SELECT, null, null);
+	}
+
+	/**
+	 * create a cursor to get the IDs of all songs in a specific order
+	 *
+	 * @param sortOrder SQL sort order of the songs
+	 * @return cursor with track IDs only
+	 */
+	@Nullable
+	public static Cursor makeTrackOrderCursor(Context context, String sortOrder) {
+		ContentResolver resolver = context.getContentResolver();
+		return resolver.query(Media.EXTERNAL_CONTENT_URI, TRACK_ID_COLUMN, TRACK_FILTER_SELECT, null, sortOrder);
+	}
+
+	/**
+	 * create a cursor to get all albums in a specific order with fixed column order
+	 * {@link #ALBUM_COLUMN}
+	 *
+	 * @param sortOrder SQL sort order of the albums
+	 * @return cursor with album table
+	 */
+	@Nullable
+	public static Cursor makeSortedAlbumCursor(Context context, String sortOrder) {
+		ContentResolver resolver = context.getContentResolver();
+		return resolver.query(Albums.EXTERNAL_CONTENT_URI, ALBUM_COLUMN, null, null, sortOrder);
+	}
+
+	/**
+	 * creates a cursor to get track information of a list of track IDs.
+	 * The IDs are queried in chunks of {@link #MAX_ID_CHUNK} to keep the SQL statements small
+	 * and the results are merged into a single cursor.
+	 *
+	 * @param projection column projection, the first column must be the track ID
+	 * @param trackIds   track IDs to query
+	 * @param keepOrder  true to return the rows in the order of the track IDs
+	 * @return cursor with a single row for every track found
+	 */
+	@Nullable
+	private static Cursor makeTrackIdCursor(Context context, String[] projection, long[] trackIds, boolean keepOrder) {
+		// remove duplicate IDs, so every track is queried only once
+		LongIntMap uniqueIds = new LongIntMap(trackIds.length);
+		long[] ids = new long[trackIds.length];
+		int idCount = 0;
+		for (long trackId : trackIds) {
+			if (!uniqueIds.containsKey(trackId)) {
+				uniqueIds.put(trackId, idCount);
+				ids[idCount++] = trackId;
+			}
+		}
+		if (idCount == 0) {
+			return null;
+		}
+		ContentResolver resolver = context.getContentResolver();
+		List<Cursor> chunks = new ArrayList<>(idCount / MAX_ID_CHUNK + 1);
 		StringBuilder selection = new StringBuilder();
-		selection.append(MediaStore.Audio.Media._ID + " IN (");
-		for (int i = 0; i < ids.size(); i++) {
-			selection.append(ids.get(i));
-			if (i < ids.size() - 1) {
-				selection.append(",");
+		for (int start = 0; start < idCount; start += MAX_ID_CHUNK) {
+			int end = Math.min(start + MAX_ID_CHUNK, idCount);
+			selection.setLength(0);
+			selection.append(Media._ID + " IN (");
+			for (int i = start; i < end; i++) {
+				if (i > start) {
+					selection.append(',');
+				}
+				selection.append(ids[i]);
+			}
+			selection.append(')');
+			Cursor chunk = resolver.query(Media.EXTERNAL_CONTENT_URI, projection, selection.toString(), null, null);
+			if (chunk != null) {
+				chunks.add(chunk);
+			}
+		}
+		if (chunks.isEmpty()) {
+			return null;
+		}
+		Cursor result;
+		if (chunks.size() == 1) {
+			result = chunks.get(0);
+		} else {
+			result = new MergeCursor(chunks.toArray(new Cursor[0]));
+		}
+		if (!keepOrder) {
+			return result;
+		}
+		// sort rows by the position of their ID in the requested list
+		int[] rows = new int[idCount];
+		int[] positions = new int[idCount];
+		int rowCount = 0;
+		if (result.moveToFirst()) {
+			do {
+				int index = uniqueIds.get(result.getLong(0), -1);
+				if (index >= 0) {
+					positions[index] = result.getPosition() + 1;
+					rowCount++;
+				}
+			} while (result.moveToNext());
+		}
+		int i = 0;
+		for (int position : positions) {
+			if (position > 0) {
+				rows[i++] = position - 1;
 			}
 		}
-		selection.append(")");
-		return context.getContentResolver().query(Media.EXTERNAL_CONTENT_URI, NP_COLUMNS, selection.toString(), null, Media._ID);
+		int[] order = new int[rowCount];
+		System.arraycopy(rows, 0, order, 0, rowCount);
+		return new OrderedCursor(result, order);
 	}
 
 	/**
@@ -0,0 +1,189 @@
+package com.andrew.apollo.utils;
+
+import java.util.Arrays;
+
+/**
+ * open addressing hash map with primitive long keys and int values.
+ * Used to map track IDs to positions without boxing.
+ */
+public class LongIntMap {
+
+	/**
+	 * marks an unused slot
+	 */
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	/**
+	 * max fill ratio of the table before it grows
+	 */
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] mKeys;
+	private int[] mValues;
+	private int mSize = 0;
+
+	/**
+	 * value of the key {@link #EMPTY} which can't be stored in the table
+	 */
+	private boolean mHasEmptyKey = false;
+	private int mEmptyKeyValue;
+
+	/**
+	 * Constructor of <code>LongIntMap</code>
+	 *
+	 * @param expectedSize number of entries to reserve space for
+	 */
+	public LongIntMap(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	/**
+	 * @return number of entries
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * @return true if there are no entries
+	 */
+	public boolean isEmpty() {
+		return mSize == 0;
+	}
+
+	/**
+	 * add or replace an entry
+	 *
+	 * @param key   entry key
+	 * @param value entry value
+	 */
+	public void put(long key, int value) {
+		if (key == EMPTY) {
+			if (!mHasEmptyKey) {
+				mHasEmptyKey = true;
+				mSize++;
+			}
+			mEmptyKeyValue = value;
+			return;
+		}
+		int mask = mKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (mKeys[slot] != EMPTY) {
+			if (mKeys[slot] == key) {
+				mValues[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		mKeys[slot] = key;
+		mValues[slot] = value;
+		mSize++;
+		if (mSize > mKeys.length * LOAD_FACTOR) {
+			rehash(mKeys.length * 2);
+		}
+	}
+
+	/**
+	 * get value of an entry
+	 *
+	 * @param key          entry key
+	 * @param defaultValue value to return if there is no entry for the key
+	 * @return entry value or the default value
+	 */
+	public int get(long key, int defaultValue) {
+		if (key == EMPTY) {
+			return mHasEmptyKey ? mEmptyKeyValue : defaultValue;
+		}
+		int mask = mKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (mKeys[slot] != EMPTY) {
+			if (mKeys[slot] == key) {
+				return mValues[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * check if an entry exists
+	 *
+	 * @param key entry key
+	 * @return true if there is an entry for the key
+	 */
+	public boolean containsKey(long key) {
+		if (key == EMPTY) {
+			return mHasEmptyKey;
+		}
+		int mask = mKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (mKeys[slot] != EMPTY) {
+			if (mKeys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * remove all entries
+	 */
+	public void clear() {
+		Arrays.fill(mKeys, EMPTY);
+		mHasEmptyKey = false;
+		mSize = 0;
+	}
+
+	/**
+	 * move all entries into a new table
+	 */
+	private void rehash(int capacity) {
+		long[] keys = mKeys;
+		int[] values = mValues;
+		allocate(capacity);
+		mSize = mHasEmptyKey ? 1 : 0;
+		int mask = capacity - 1;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				int slot = hash(keys[i]) & mask;
+				while (mKeys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				mKeys[slot] = keys[i];
+				mValues[slot] = values[i];
+				mSize++;
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	private void allocate(int capacity) {
+		mKeys = new long[capacity];
+		mValues = new int[capacity];
+		Arrays.fill(mKeys, EMPTY);
+	}
+
+	/**
+	 * @return power of two table size with enough space for the expected entries
+	 */
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = 8;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * spread key bits, so sequential IDs don't end up in neighbouring slots
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -52,15 +52,14 @@ import com.andrew.apollo.menu.CreateNewPlaylist;
 import com.andrew.apollo.menu.DeleteDialog;
 import com.andrew.apollo.menu.FragmentMenuItems;
 import com.andrew.apollo.model.Song;
-import com.andrew.apollo.provider.FavoritesStore;
-import com.andrew.apollo.provider.PopularStore;
+import com.andrew.apollo.player.PlayQueue;
+import com.andrew.apollo.player.PlaybackState;
 import com.andrew.apollo.provider.RecentStore;
 import com.devspark.appmsg.AppMsg;
 
-import java.io.File;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.WeakHashMap;
@@ -79,11 +78,6 @@ public final class MusicUtils {
 	 */
 	private static final String PLAYLIST_REMOVE_TRACK = Playlists.Members.AUDIO_ID + "=?";
 
-	/**
-	 * selection to remove track from database
-	 */
-	private static final String DATABASE_REMOVE_TRACK = AudioColumns._ID + "=?";
-
 	/**
 	 * code to request file deleting
 	 * only for scoped storage
@@ -120,6 +114,12 @@ public final class MusicUtils {
 
 	private static int markedTracks = 0;
 
+	/**
+	 * tracks waiting for the confirmation of the system delete dialog
+	 */
+	@Nullable
+	private static TrackDeleter pendingDelete;
+
 
 	/* This class is never initiated */
 	private MusicUtils() {
@@ -311,6 +311,27 @@ public final class MusicUtils {
 		return false;
 	}
 
+	/**
+	 * get the current playback state with a single call
+	 *
+	 * @return The current playback state
+	 */
+	@NonNull
+	public static PlaybackState getPlaybackState() {
+		IApolloService service = mService;
+		if (service != null) {
+			try {
+				PlaybackState state = service.getPlaybackState();
+				if (state != null) {
+					return state;
+				}
+			} catch (RemoteException err) {
+				err.printStackTrace();
+			}
+		}
+		return PlaybackState.EMPTY;
+	}
+
 	/**
 	 * @return The current shuffle mode.
 	 */
@@ -478,6 +499,24 @@ public final class MusicUtils {
 		return 0;
 	}
 
+	/**
+	 * remove all instances of the tracks from the queue with a single call
+	 *
+	 * @param ids IDs of the tracks to remove
+	 * @return number of removed queue items
+	 */
+	public static int removeTracks(long[] ids) {
+		IApolloService service = mService;
+		if (service != null) {
+			try {
+				return service.removeTrackList(ids);
+			} catch (RemoteException err) {
+				err.printStackTrace();
+			}
+		}
+		return 0;
+	}
+
 	/**
 	 * remove track from the current playlist
 	 *
@@ -803,7 +842,7 @@ public final class MusicUtils {
 		if (cursor != null) {
 			if (cursor.moveToFirst()) {
 				// use dynamic array because the result size differs from cursor size
-				List<Long> ids = new LinkedList<>();
+				PlayQueue ids = new PlayQueue();
 				int idxName = folder.length() + 1;
 				do {
 					String filename = cursor.getString(5);
@@ -812,11 +851,7 @@ public final class MusicUtils {
 						ids.add(cursor.getLong(0));
 					}
 				} while (cursor.moveToNext());
-				// convert to array
-				result = new long[ids.size()];
-				for (int pos = 0; pos < ids.size(); pos++) {
-					result[pos] = ids.get(pos);
-				}
+				result = ids.toArray();
 			}
 			cursor.close();
 		}
@@ -1390,6 +1425,7 @@ public final class MusicUtils {
 			Intent intent = new Intent(context, MusicPlaybackService.class);
 			intent.setAction(MusicPlaybackService.FOREGROUND_STATE_CHANGED);
 			intent.putExtra(MusicPlaybackService.NOW_IN_FOREGROUND, sForegroundActivities != 0);
+			MusicPlaybackService.setSender(context, intent);
 			context.startService(intent);
 		}
 	}
@@ -1412,26 +1448,30 @@ public final class MusicUtils {
 	}
 
 	/**
-	 * Perminately deletes item(s) from the user's device
+	 * Perminately deletes item(s) from the user's device. The tracks are deleted in the background.
 	 *
 	 * @param activity Activity used to access scoped storage. on old android version
 	 *                 otherwise its a context
 	 * @param list     The item(s) to delete.
+	 * @param callback callback to report the progress or null. Not used with scoped storage
+	 * @return delete task, can be used to cancel
 	 */
-	public static void deleteTracks(Activity activity, long[] list) {
+	public static TrackDeleter deleteTracks(Activity activity, long[] list, @Nullable TrackDeleter.Callback callback) {
 		markedTracks = list.length;
-		ContentResolver resolver = activity.getContentResolver();
-		String[] paths = removeTracksFromDatabase(activity.getApplicationContext(), list);
-
+		// look up the tracks while the user confirms
+		TrackDeleter deleter = new TrackDeleter(activity, list);
 		// Use Scoped storage and build in dialog
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
 			try {
-				List<Uri> uris = new LinkedList<>();
+				ContentResolver resolver = activity.getContentResolver();
+				List<Uri> uris = new ArrayList<>(list.length);
 				for (long id : list) {
 					uris.add(Media.getContentUri(MediaStore.VOLUME_EXTERNAL, id));
 				}
 				PendingIntent requestRemove = MediaStore.createDeleteRequest(resolver, uris);
 				activity.startIntentSenderForResult(requestRemove.getIntentSender(), REQUEST_DELETE_FILES, null, 0, 0, 0);
+				// the queue and the databases are cleaned up after the system deleted the tracks, see onPostDelete()
+				pendingDelete = deleter;
 			} catch (Exception err) {
 				// thrown when no audio file were found
 				err.printStackTrace();
@@ -1439,20 +1479,9 @@ public final class MusicUtils {
 		}
 		// remove tracks directly from storage
 		else {
-			for (String filename : paths) {
-				try {
-					File file = new File(filename);
-					// File.delete can throw a security exception
-					if (!file.delete()) {
-						Log.e("MusicUtils", "Failed to delete file " + filename);
-					}
-				} catch (Exception ex) {
-					// catch exception if file was not found
-					ex.printStackTrace();
-				}
-			}
-			onPostDelete(activity);
+			deleter.start(true, callback);
 		}
+		return deleter;
 	}
 
 	/**
@@ -1489,7 +1518,7 @@ public final class MusicUtils {
 	public static void openDeleteDialog(FragmentActivity activity, String title, long[] ids) {
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
 			// Use system Dialog to delete media files
-			deleteTracks(activity, ids);
+			deleteTracks(activity, ids, null);
 		} else {
 			DeleteDialog dialog = DeleteDialog.newInstance(title, ids, null);
 			dialog.show(activity.getSupportFragmentManager(), "DeleteDialog");
@@ -1502,7 +1531,22 @@ public final class MusicUtils {
 	 * @param activity activity context
 	 */
 	public static void onPostDelete(Activity activity) {
-		String message = makeLabel(activity, R.plurals.NNNtracksdeleted, markedTracks);
+		// remove the tracks deleted by the system dialog from the queue and the databases
+		if (pendingDelete != null) {
+			pendingDelete.start(false, null);
+			pendingDelete = null;
+		}
+		onPostDelete(activity, markedTracks);
+	}
+
+	/**
+	 * Action to take after tracks are removed
+	 *
+	 * @param activity activity context
+	 * @param deleted  number of deleted tracks
+	 */
+	public static void onPostDelete(Activity activity, int deleted) {
+		String message = makeLabel(activity, R.plurals.NNNtracksdeleted, deleted);
 		AppMsg.makeText(activity, message, AppMsg.STYLE_CONFIRM).show();
 		// We deleted a number of tracks, which could affect any number of
 		// things in the media content domain, so update everything.
@@ -1511,53 +1555,6 @@ public final class MusicUtils {
 		refresh();
 	}
 
-	/**
-	 * remove tracks from media database
-	 *
-	 * @param context application context
-	 * @param ids     list of track IDs
-	 * @return path to removed entries
-	 */
-	private static String[] removeTracksFromDatabase(Context context, long[] ids) {
-		String[] result = {};
-		// get cursor to fetch track information
-		Cursor cursor = CursorFactory.makeTrackListCursor(context, ids);
-
-		// Step 1: Remove selected tracks from the current playlist, as well
-		// as from the album art cache
-		if (cursor != null) {
-			if (cursor.moveToFirst()) {
-				result = new String[cursor.getCount()];
-				FavoritesStore favStore = FavoritesStore.getInstance(context);
-				RecentStore recents = RecentStore.getInstance(context);
-				PopularStore popular = PopularStore.getInstance(context);
-				ContentResolver resolver = context.getContentResolver();
-				for (int i = 0; i < ids.length; i++) {
-					// Remove from current playlist
-					long trackId = cursor.getLong(0);
-					result[i] = cursor.getString(1);
-					long albumId = cursor.getLong(2);
-					String[] idStr = {Long.toString(trackId)};
-					//
-					removeTrack(trackId);
-					// Remove from the favorites playlist
-					favStore.removeItem(trackId);
-					// Remove any items in the recents database
-					recents.removeItem(albumId);
-					// remove track from most played list
-					popular.removeItem(trackId);
-					// remove track from database
-					resolver.delete(Media.EXTERNAL_CONTENT_URI, DATABASE_REMOVE_TRACK, idStr);
-					// move to next track
-					cursor.moveToNext();
-				}
-			}
-			cursor.close();
-		}
-		// return path to the files
-		return result;
-	}
-
 	/**
 	 *
 	 */
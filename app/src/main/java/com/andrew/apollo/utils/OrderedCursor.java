@@ -0,0 +1,134 @@
+package com.andrew.apollo.utils;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import androidx.annotation.NonNull;
+
+/**
+ * cursor wrapper which returns the rows of a cursor in a custom order.
+ * Used to restore the requested ID order of a query split into multiple chunks
+ */
+final class OrderedCursor extends CursorWrapper {
+
+	/**
+	 * row positions of the wrapped cursor in the new order
+	 */
+	private final int[] mRows;
+
+	private int mPos = -1;
+
+	/**
+	 * @param cursor cursor to wrap
+	 * @param rows   row positions of the wrapped cursor in the new order
+	 */
+	OrderedCursor(@NonNull Cursor cursor, @NonNull int[] rows) {
+		super(cursor);
+		mRows = rows;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getCount() {
+		return mRows.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getPosition() {
+		return mPos;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean moveToPosition(int position) {
+		if (position < 0) {
+			mPos = -1;
+			return false;
+		}
+		if (position >= mRows.length) {
+			mPos = mRows.length;
+			return false;
+		}
+		mPos = position;
+		return super.moveToPosition(mRows[position]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean move(int offset) {
+		return moveToPosition(mPos + offset);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean moveToFirst() {
+		return moveToPosition(0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean moveToLast() {
+		return moveToPosition(mRows.length - 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean moveToNext() {
+		return moveToPosition(mPos + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean moveToPrevious() {
+		return moveToPosition(mPos - 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isFirst() {
+		return mPos == 0 && mRows.length > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isLast() {
+		return mPos == mRows.length - 1 && mRows.length > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isBeforeFirst() {
+		return mRows.length == 0 || mPos < 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isAfterLast() {
+		return mRows.length == 0 || mPos >= mRows.length;
+	}
+}
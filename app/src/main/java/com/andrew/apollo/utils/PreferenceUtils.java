@@ -27,9 +27,6 @@ import com.andrew.apollo.ui.fragments.profile.AlbumSongFragment;
 import com.andrew.apollo.ui.fragments.profile.ArtistAlbumFragment;
 import com.andrew.apollo.ui.fragments.profile.ArtistSongFragment;
 
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * A collection of helpers designed to get and set various preferences across
  * Apollo.
@@ -66,6 +63,14 @@ public final class PreferenceUtils {
 	public static final String DOWNLOAD_MISSING_ARTWORK = "download_missing_artwork";
 	// Key that gives permissions to download missing artist images
 	public static final String DOWNLOAD_MISSING_ARTIST_IMAGES = "download_missing_artist_images";
+	// Key used to enable prefetching of artwork and library information
+	public static final String PREFETCH = "prefetch";
+	// Key used to set the max size in MB of the images loaded by a prefetch
+	public static final String PREFETCH_BUDGET = "prefetch_budget";
+	// Key used to set the min battery level in percent to prefetch while not charging
+	public static final String PREFETCH_MIN_BATTERY = "prefetch_min_battery";
+	// Key used to set the number of tracks prepared ahead for gapless playback
+	public static final String PRELOAD_COUNT = "preload_count";
 	// Key used to set the overall theme color
 	public static final String DEFAULT_THEME_COLOR = "default_theme_color";
 	public static final String LAYOUT_SIMPLE = "simple";
@@ -76,6 +81,9 @@ public final class PreferenceUtils {
 	private static final String MODE_REPEAT = "repeatmode";
 	private static final String POS_SEEK = "seekpos";
 	private static final String POS_CURSOR = "curpos";
+	private static final String SHUFFLE_SEED = "shuffle_seed";
+	private static final String SHUFFLE_BITS = "shuffle_bits";
+	private static final String SHUFFLE_CURSOR = "shuffle_cursor";
 	private static final String HISTORY = "history";
 	private static final String QUEUE = "queue";
 	private static final String ID_CARD = "cardid";
@@ -181,6 +189,45 @@ public final class PreferenceUtils {
 		return mPreferences.getBoolean(DOWNLOAD_MISSING_ARTIST_IMAGES, false);
 	}
 
+	/**
+	 * @return True if artwork and library information of likely viewed items should be loaded in the background
+	 */
+	public boolean prefetchEnabled() {
+		return mPreferences.getBoolean(PREFETCH, true);
+	}
+
+	/**
+	 * @return max size in bytes of the images loaded by a prefetch
+	 */
+	public int getPrefetchBudget() {
+		return parseInt(mPreferences.getString(PREFETCH_BUDGET, "8"), 8) * 1024 * 1024;
+	}
+
+	/**
+	 * @return min battery level in percent to prefetch while the device is not charging
+	 */
+	public int getPrefetchMinBattery() {
+		return parseInt(mPreferences.getString(PREFETCH_MIN_BATTERY, "50"), 50);
+	}
+
+	/**
+	 * @return number of tracks to prepare ahead for gapless playback
+	 */
+	public int getPreloadCount() {
+		return parseInt(mPreferences.getString(PRELOAD_COUNT, "2"), 2);
+	}
+
+	/**
+	 * parse an integer value of a list preference
+	 */
+	private static int parseInt(String value, int defaultValue) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
 	/**
 	 * Saves the sort order for a list.
 	 *
@@ -274,51 +321,26 @@ public final class PreferenceUtils {
 	}
 
 	/**
-	 * get last playlist
+	 * get last playlist saved by older versions.
+	 * The queue is now saved by {@link com.andrew.apollo.provider.QueueStore}
 	 *
 	 * @return playlist
 	 */
-	public List<Long> getPlaylist() {
-		List<Long> playList = new LinkedList<>();
-		String trackQueue = mPreferences.getString(QUEUE, "");
-		if (!trackQueue.isEmpty()) {
-			int separatorPos = trackQueue.indexOf(";");
-			int cut = 0;
-			while (separatorPos != -1) {
-				String part = trackQueue.substring(cut, separatorPos);
-				long trackId = Long.parseLong(part, 16);
-				cut = separatorPos + 1;
-				playList.add(trackId);
-				separatorPos = trackQueue.indexOf(";", cut);
-			}
-		}
-		return playList;
+	public long[] getPlaylist() {
+		return parseHexList(mPreferences.getString(QUEUE, ""));
 	}
 
 	/**
-	 * get track history
+	 * get track history saved by older versions.
 	 *
-	 * @return list of track numbers
+	 * @return array of track numbers
 	 */
-	public List<Integer> getTrackHistory() {
-		List<Integer> history = new LinkedList<>();
-		String trackHistory = mPreferences.getString(HISTORY, "");
-		if (!trackHistory.isEmpty()) {
-			int separatorPos = trackHistory.indexOf(";");
-			int cut = 0;
-			while (separatorPos != -1) {
-				String part = trackHistory.substring(cut, separatorPos);
-				int num = Integer.parseInt(part, 16);
-				cut = separatorPos + 1;
-				history.add(num);
-				separatorPos = trackHistory.indexOf(";", cut);
-			}
-		}
-		return history;
+	public long[] getTrackHistory() {
+		return parseHexList(mPreferences.getString(HISTORY, ""));
 	}
 
 	/**
-	 * get current card ID
+	 * get card ID of the playlist saved by older versions.
 	 *
 	 * @return card ID
 	 */
@@ -378,6 +400,33 @@ public final class PreferenceUtils {
 		return mPreferences.getInt(MODE_SHUFFLE, SHUFFLE_NONE);
 	}
 
+	/**
+	 * get the seed of the saved shuffle order
+	 *
+	 * @return seed used by {@link com.andrew.apollo.player.ShuffleOrder}
+	 */
+	public long getShuffleSeed() {
+		return mPreferences.getLong(SHUFFLE_SEED, 0);
+	}
+
+	/**
+	 * get the range of the saved shuffle order
+	 *
+	 * @return number of bits of the permutation range or 0 if not saved
+	 */
+	public int getShuffleBits() {
+		return mPreferences.getInt(SHUFFLE_BITS, 0);
+	}
+
+	/**
+	 * get the cursor of the saved shuffle order
+	 *
+	 * @return cursor position
+	 */
+	public int getShuffleCursor() {
+		return mPreferences.getInt(SHUFFLE_CURSOR, 0);
+	}
+
 	/**
 	 * Sets the sort order for the song list.
 	 *
@@ -427,36 +476,13 @@ public final class PreferenceUtils {
 	}
 
 	/**
-	 * save current playlist
-	 *
-	 * @param playlist list of tracks
-	 * @param cardId   list id
-	 */
-	public void setPlayList(List<Long> playlist, int cardId) {
-		SharedPreferences.Editor editor = mPreferences.edit();
-		StringBuilder buffer = new StringBuilder();
-		for (long n : playlist) {
-			buffer.append(Long.toHexString(n));
-			buffer.append(";");
-		}
-		editor.putString(QUEUE, buffer.toString());
-		editor.putInt(ID_CARD, cardId);
-		editor.apply();
-	}
-
-	/**
-	 * set track history
-	 *
-	 * @param history list of track history
+	 * remove playlist and history saved by older versions
 	 */
-	public void setHistory(List<Integer> history) {
+	public void removeLegacyQueue() {
 		SharedPreferences.Editor editor = mPreferences.edit();
-		StringBuilder buffer = new StringBuilder();
-		for (long n : history) {
-			buffer.append(Long.toHexString(n));
-			buffer.append(";");
-		}
-		editor.putString(HISTORY, buffer.toString());
+		editor.remove(QUEUE);
+		editor.remove(HISTORY);
+		editor.remove(ID_CARD);
 		editor.apply();
 	}
 
@@ -495,6 +521,21 @@ public final class PreferenceUtils {
 		editor.apply();
 	}
 
+	/**
+	 * save the state of the shuffle order
+	 *
+	 * @param seed   seed of the order
+	 * @param bits   number of bits of the permutation range
+	 * @param cursor cursor position
+	 */
+	public void setShuffleOrder(long seed, int bits, int cursor) {
+		SharedPreferences.Editor editor = mPreferences.edit();
+		editor.putLong(SHUFFLE_SEED, seed);
+		editor.putInt(SHUFFLE_BITS, bits);
+		editor.putInt(SHUFFLE_CURSOR, cursor);
+		editor.apply();
+	}
+
 	/**
 	 * check if page is configured to show a simple layout
 	 *
@@ -618,4 +659,27 @@ public final class PreferenceUtils {
 	public boolean isExternalAudioFxPrefered() {
 		return mPreferences.getBoolean(FX_PREFER_EXT, false);
 	}
+
+	/**
+	 * parse a list of hex numbers separated by ';'
+	 *
+	 * @param serialized serialized list
+	 * @return array of numbers
+	 */
+	private long[] parseHexList(String serialized) {
+		int count = 0;
+		for (int i = 0; i < serialized.length(); i++) {
+			if (serialized.charAt(i) == ';') {
+				count++;
+			}
+		}
+		long[] result = new long[count];
+		int cut = 0;
+		for (int i = 0; i < count; i++) {
+			int separatorPos = serialized.indexOf(';', cut);
+			result[i] = Long.parseLong(serialized.substring(cut, separatorPos), 16);
+			cut = separatorPos + 1;
+		}
+		return result;
+	}
 }
\ No newline at end of file
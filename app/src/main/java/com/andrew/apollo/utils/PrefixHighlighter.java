@@ -49,6 +49,39 @@ public class PrefixHighlighter {
 		view.setText(apply(text, prefix));
 	}
 
+	/**
+	 * Sets the text on the given {@link TextView}, highlighting the given parts of the text.
+	 *
+	 * @param view   The {@link TextView} on which to set the text
+	 * @param text   The string to use as the text
+	 * @param ranges start and end positions of the parts to highlight, stored in pairs
+	 */
+	public void setText(TextView view, String text, int[] ranges) {
+		if (view == null || TextUtils.isEmpty(text) || ranges == null || ranges.length < 2) {
+			return;
+		}
+		view.setText(apply(text, ranges));
+	}
+
+	/**
+	 * Returns a {@link CharSequence} which highlights the given parts of the text.
+	 *
+	 * @param text   the text to which to apply the highlight
+	 * @param ranges start and end positions of the parts to highlight, stored in pairs
+	 */
+	public CharSequence apply(CharSequence text, int[] ranges) {
+		SpannableString mResult = new SpannableString(text);
+		for (int i = 0; i + 1 < ranges.length; i += 2) {
+			int start = Math.max(ranges[i], 0);
+			int end = Math.min(ranges[i + 1], text.length());
+			if (start < end) {
+				// a span object can only be attached once
+				mResult.setSpan(new ForegroundColorSpan(mPrefixHighlightColor), start, end, 0);
+			}
+		}
+		return mResult;
+	}
+
 	/**
 	 * Returns a {@link CharSequence} which highlights the given prefix if found
 	 * in the given text.
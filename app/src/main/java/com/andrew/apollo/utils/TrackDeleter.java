@@ -0,0 +1,247 @@
+package com.andrew.apollo.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore.Audio.AudioColumns;
+import android.provider.MediaStore.Audio.Media;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.andrew.apollo.provider.FavoritesStore;
+import com.andrew.apollo.provider.PopularStore;
+import com.andrew.apollo.provider.RecentStore;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * deletes tracks in the background. The track information is looked up first, then the tracks are removed
+ * from the MediaStore and the storage in chunks, and finally all deleted tracks are removed from the queue
+ * with a single service call and from every local database with a single transaction.
+ */
+public class TrackDeleter {
+
+	private static final String TAG = "TrackDeleter";
+
+	/**
+	 * number of tracks deleted from the MediaStore with a single statement
+	 */
+	private static final int CHUNK_SIZE = 100;
+
+	/**
+	 * runs all delete tasks in order
+	 */
+	private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+	private final Context mContext;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * IDs, file paths and album IDs of the tracks found in the MediaStore
+	 */
+	private long[] mIds = {};
+	private String[] mPaths = {};
+	private long[] mAlbumIds = {};
+
+	/**
+	 * set to stop deleting before the next chunk
+	 */
+	private volatile boolean mCancelled = false;
+
+	/**
+	 * create a new delete task and start looking up the tracks in the background
+	 *
+	 * @param context context used to access the MediaStore and the databases
+	 * @param ids     IDs of the tracks to delete
+	 */
+	public TrackDeleter(Context context, final long[] ids) {
+		mContext = context.getApplicationContext();
+		EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				lookup(ids);
+			}
+		});
+	}
+
+	/**
+	 * start deleting the tracks after the lookup
+	 *
+	 * @param deleteFromStorage true to delete the tracks from the MediaStore and the storage,
+	 *                          false if the tracks were already deleted and only the queue and the databases need to be cleaned up
+	 * @param callback          callback to report progress on the main thread or null
+	 */
+	public void start(final boolean deleteFromStorage, @Nullable final Callback callback) {
+		EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				delete(deleteFromStorage, callback);
+			}
+		});
+	}
+
+	/**
+	 * stop deleting. Tracks which are already deleted from the storage are still removed from the queue and the databases
+	 */
+	public void cancel() {
+		mCancelled = true;
+	}
+
+	/**
+	 * look up the file paths and the albums of the tracks
+	 */
+	private void lookup(long[] ids) {
+		Cursor cursor = CursorFactory.makeTrackListCursor(mContext, ids);
+		if (cursor != null) {
+			int count = cursor.getCount();
+			long[] trackIds = new long[count];
+			String[] paths = new String[count];
+			long[] albumIds = new long[count];
+			int size = 0;
+			if (cursor.moveToFirst()) {
+				do {
+					trackIds[size] = cursor.getLong(0);
+					paths[size] = cursor.getString(1);
+					albumIds[size] = cursor.getLong(2);
+					size++;
+				} while (cursor.moveToNext() && size < count);
+			}
+			cursor.close();
+			mIds = Arrays.copyOf(trackIds, size);
+			mPaths = Arrays.copyOf(paths, size);
+			mAlbumIds = Arrays.copyOf(albumIds, size);
+		}
+	}
+
+	/**
+	 * delete the tracks found by the lookup
+	 */
+	private void delete(boolean deleteFromStorage, @Nullable Callback callback) {
+		int total = mIds.length;
+		int deleted = total;
+		if (deleteFromStorage) {
+			deleted = 0;
+			ContentResolver resolver = mContext.getContentResolver();
+			StringBuilder where = new StringBuilder();
+			while (deleted < total && !mCancelled) {
+				int end = Math.min(deleted + CHUNK_SIZE, total);
+				where.setLength(0);
+				where.append(AudioColumns._ID).append(" IN (");
+				for (int i = deleted; i < end; i++) {
+					if (i > deleted) {
+						where.append(',');
+					}
+					where.append(mIds[i]);
+				}
+				where.append(')');
+				try {
+					resolver.delete(Media.EXTERNAL_CONTENT_URI, where.toString(), null);
+				} catch (RuntimeException e) {
+					// thrown if the app isn't allowed to delete the tracks
+					e.printStackTrace();
+					break;
+				}
+				for (int i = deleted; i < end; i++) {
+					deleteFile(mPaths[i]);
+				}
+				deleted = end;
+				postProgress(callback, deleted, total);
+			}
+		}
+		if (deleted > 0) {
+			long[] ids = Arrays.copyOf(mIds, deleted);
+			// remove the tracks from the queue with a single call
+			MusicUtils.removeTracks(ids);
+			// remove the tracks from the local databases, one transaction per database
+			FavoritesStore.getInstance(mContext).removeItems(ids);
+			PopularStore.getInstance(mContext).removeItems(ids);
+			RecentStore.getInstance(mContext).removeItems(getUniqueIds(Arrays.copyOf(mAlbumIds, deleted)));
+		}
+		postFinished(callback, deleted);
+	}
+
+	/**
+	 * delete a file from the storage
+	 */
+	private void deleteFile(String path) {
+		if (path == null)
+			return;
+		try {
+			File file = new File(path);
+			// File.delete can throw a security exception
+			if (!file.delete()) {
+				Log.e(TAG, "Failed to delete file " + path);
+			}
+		} catch (Exception ex) {
+			// catch exception if file was not found
+			ex.printStackTrace();
+		}
+	}
+
+	private void postProgress(@Nullable final Callback callback, final int deleted, final int total) {
+		if (callback != null) {
+			mHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					callback.onProgress(deleted, total);
+				}
+			});
+		}
+	}
+
+	private void postFinished(@Nullable final Callback callback, final int deleted) {
+		if (callback != null) {
+			mHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					callback.onFinished(deleted);
+				}
+			});
+		}
+	}
+
+	/**
+	 * remove duplicate values
+	 */
+	private static long[] getUniqueIds(long[] ids) {
+		if (ids.length < 2)
+			return ids;
+		long[] sorted = ids.clone();
+		Arrays.sort(sorted);
+		int size = 1;
+		for (int i = 1; i < sorted.length; i++) {
+			if (sorted[i] != sorted[size - 1]) {
+				sorted[size++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, size);
+	}
+
+	/**
+	 * callback used to report the progress on the main thread
+	 */
+	public interface Callback {
+
+		/**
+		 * called after a chunk of tracks was deleted
+		 *
+		 * @param deleted number of deleted tracks
+		 * @param total   number of tracks to delete
+		 */
+		void onProgress(int deleted, int total);
+
+		/**
+		 * called after the queue and the databases were cleaned up
+		 *
+		 * @param deleted number of deleted tracks
+		 */
+		void onFinished(int deleted);
+	}
+}
@@ -13,21 +13,31 @@ package com.andrew.apollo.widgets;
 
 import android.annotation.SuppressLint;
 import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.widget.RemoteViews;
 
 import com.andrew.apollo.MusicPlaybackService;
 
 public abstract class AppWidgetBase extends AppWidgetProvider {
 
+	/**
+	 * flags of the changed playback information, see {@link #notifyChange(MusicPlaybackService, int)}
+	 */
+	public static final int CHANGED_TRACK = 1;
+	public static final int CHANGED_PLAYSTATE = 2;
+	public static final int CHANGED_MODE = 4;
+
 	@SuppressLint("UnspecifiedImmutableFlag")
 	protected PendingIntent buildPendingIntent(Context context, String action, ComponentName serviceName) {
 		Intent intent = new Intent(action);
 		intent.setComponent(serviceName);
 		intent.putExtra(MusicPlaybackService.NOW_IN_FOREGROUND, false);
+		MusicPlaybackService.setSender(context, intent);
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
 			return PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
 		return PendingIntent.getService(context, 0, intent, 0);
@@ -38,9 +48,20 @@ public abstract class AppWidgetBase extends AppWidgetProvider {
 	 */
 	public abstract void performUpdate(MusicPlaybackService service, int[] appWidgetIds);
 
+	/**
+	 * update only the views set in the remote views of all widget instances, other views are kept
+	 */
+	protected void pushPartialUpdate(Context context, RemoteViews views) {
+		AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+		int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, getClass()));
+		appWidgetManager.partiallyUpdateAppWidget(appWidgetIds, views);
+	}
+
 	/**
 	 * Handle a change notification coming over from
 	 * {@link MusicPlaybackService}
+	 *
+	 * @param changes flags of the changed information, see {@link #CHANGED_TRACK}, {@link #CHANGED_PLAYSTATE} and {@link #CHANGED_MODE}
 	 */
-	public abstract void notifyChange(MusicPlaybackService service, String what);
+	public abstract void notifyChange(MusicPlaybackService service, int changes);
 }
\ No newline at end of file
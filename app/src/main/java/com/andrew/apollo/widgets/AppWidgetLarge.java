@@ -53,11 +53,15 @@ public class AppWidgetLarge extends AppWidgetBase {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void notifyChange(MusicPlaybackService service, String what) {
+	public void notifyChange(MusicPlaybackService service, int changes) {
 		if (hasInstances(service)) {
-			if (MusicPlaybackService.META_CHANGED.equals(what)
-					|| MusicPlaybackService.PLAYSTATE_CHANGED.equals(what)) {
+			if ((changes & CHANGED_TRACK) != 0) {
+				// full update, so the widget host caches the new track and artwork
 				performUpdate(service, null);
+			} else if ((changes & CHANGED_PLAYSTATE) != 0) {
+				RemoteViews appWidgetView = new RemoteViews(BuildConfig.APPLICATION_ID, R.layout.app_widget_large);
+				setPlayState(service, appWidgetView);
+				pushPartialUpdate(service, appWidgetView);
 			}
 		}
 	}
@@ -72,7 +76,7 @@ public class AppWidgetLarge extends AppWidgetBase {
 		CharSequence trackName = service.getTrackName();
 		CharSequence artistName = service.getArtistName();
 		CharSequence albumName = service.getAlbumName();
-		Bitmap bitmap = service.getAlbumArt();
+		Bitmap bitmap = service.getAlbumArt(R.dimen.notification_expanded_height);
 
 		// Set the titles and artwork
 		appWidgetView.setTextViewText(R.id.app_widget_large_line_one, trackName);
@@ -80,6 +84,15 @@ public class AppWidgetLarge extends AppWidgetBase {
 		appWidgetView.setTextViewText(R.id.app_widget_large_line_three, albumName);
 		appWidgetView.setImageViewBitmap(R.id.app_widget_large_image, bitmap);
 
+		setPlayState(service, appWidgetView);
+		// Update the app-widget
+		pushUpdate(service, appWidgetIds, appWidgetView);
+	}
+
+	/**
+	 * set the play button and the button actions
+	 */
+	private void setPlayState(MusicPlaybackService service, RemoteViews appWidgetView) {
 		// Set correct drawable for pause state
 		boolean isPlaying = service.isPlaying();
 		if (isPlaying) {
@@ -91,8 +104,6 @@ public class AppWidgetLarge extends AppWidgetBase {
 		}
 		// Link actions buttons to intents
 		linkButtons(service, appWidgetView, isPlaying);
-		// Update the app-widget
-		pushUpdate(service, appWidgetIds, appWidgetView);
 	}
 
 	/**
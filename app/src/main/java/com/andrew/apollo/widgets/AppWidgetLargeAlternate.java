@@ -54,13 +54,20 @@ public class AppWidgetLargeAlternate extends AppWidgetBase {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void notifyChange(MusicPlaybackService service, String what) {
+	public void notifyChange(MusicPlaybackService service, int changes) {
 		if (hasInstances(service)) {
-			if (MusicPlaybackService.META_CHANGED.equals(what)
-					|| MusicPlaybackService.PLAYSTATE_CHANGED.equals(what)
-					|| MusicPlaybackService.REPEATMODE_CHANGED.equals(what)
-					|| MusicPlaybackService.SHUFFLEMODE_CHANGED.equals(what)) {
+			if ((changes & CHANGED_TRACK) != 0) {
+				// full update, so the widget host caches the new track and artwork
 				performUpdate(service, null);
+			} else if ((changes & (CHANGED_PLAYSTATE | CHANGED_MODE)) != 0) {
+				RemoteViews appWidgetView = new RemoteViews(BuildConfig.APPLICATION_ID, R.layout.app_widget_large_alternate);
+				if ((changes & CHANGED_PLAYSTATE) != 0) {
+					setPlayState(service, appWidgetView);
+				}
+				if ((changes & CHANGED_MODE) != 0) {
+					setModes(service, appWidgetView);
+				}
+				pushPartialUpdate(service, appWidgetView);
 			}
 		}
 	}
@@ -75,7 +82,7 @@ public class AppWidgetLargeAlternate extends AppWidgetBase {
 		CharSequence trackName = service.getTrackName();
 		CharSequence artistName = service.getArtistName();
 		CharSequence albumName = service.getAlbumName();
-		Bitmap bitmap = service.getAlbumArt();
+		Bitmap bitmap = service.getAlbumArt(R.dimen.app_widget_large_alternate_artwork_size);
 
 		// Set the titles and artwork
 		appWidgetView.setTextViewText(R.id.app_widget_large_alternate_line_one, trackName);
@@ -83,6 +90,16 @@ public class AppWidgetLargeAlternate extends AppWidgetBase {
 		appWidgetView.setTextViewText(R.id.app_widget_large_alternate_line_three, albumName);
 		appWidgetView.setImageViewBitmap(R.id.app_widget_large_alternate_image, bitmap);
 
+		setPlayState(service, appWidgetView);
+		setModes(service, appWidgetView);
+		// Update the app-widget
+		pushUpdate(service, appWidgetIds, appWidgetView);
+	}
+
+	/**
+	 * set the play button and the button actions
+	 */
+	private void setPlayState(MusicPlaybackService service, RemoteViews appWidgetView) {
 		// Set correct drawable for pause state
 		boolean isPlaying = service.isPlaying();
 		if (isPlaying) {
@@ -92,6 +109,14 @@ public class AppWidgetLargeAlternate extends AppWidgetBase {
 			appWidgetView.setImageViewResource(R.id.app_widget_large_alternate_play, R.drawable.btn_playback_play);
 			appWidgetView.setContentDescription(R.id.app_widget_large_alternate_play, service.getString(R.string.accessibility_play));
 		}
+		// Link actions buttons to intents
+		linkButtons(service, appWidgetView, isPlaying);
+	}
+
+	/**
+	 * set the repeat and shuffle buttons
+	 */
+	private void setModes(MusicPlaybackService service, RemoteViews appWidgetView) {
 		// Set the correct drawable for the repeat state
 		switch (service.getRepeatMode()) {
 			case MusicPlaybackService.REPEAT_ALL:
@@ -116,10 +141,6 @@ public class AppWidgetLargeAlternate extends AppWidgetBase {
 				appWidgetView.setImageViewResource(R.id.app_widget_large_alternate_shuffle, R.drawable.btn_playback_shuffle_all);
 				break;
 		}
-		// Link actions buttons to intents
-		linkButtons(service, appWidgetView, isPlaying);
-		// Update the app-widget
-		pushUpdate(service, appWidgetIds, appWidgetView);
 	}
 
 	/**
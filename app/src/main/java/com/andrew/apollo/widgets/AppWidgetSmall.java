@@ -57,10 +57,15 @@ public class AppWidgetSmall extends AppWidgetBase {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void notifyChange(MusicPlaybackService service, String what) {
+	public void notifyChange(MusicPlaybackService service, int changes) {
 		if (hasInstances(service)) {
-			if (MusicPlaybackService.META_CHANGED.equals(what) || MusicPlaybackService.PLAYSTATE_CHANGED.equals(what)) {
+			if ((changes & CHANGED_TRACK) != 0) {
+				// full update, so the widget host caches the new track and artwork
 				performUpdate(service, null);
+			} else if ((changes & CHANGED_PLAYSTATE) != 0) {
+				RemoteViews appWidgetView = new RemoteViews(BuildConfig.APPLICATION_ID, R.layout.app_widget_small);
+				setPlayState(service, appWidgetView);
+				pushPartialUpdate(service, appWidgetView);
 			}
 		}
 	}
@@ -73,7 +78,7 @@ public class AppWidgetSmall extends AppWidgetBase {
 		RemoteViews appWidgetView = new RemoteViews(BuildConfig.APPLICATION_ID, R.layout.app_widget_small);
 		CharSequence trackName = service.getTrackName();
 		CharSequence artistName = service.getArtistName();
-		Bitmap bitmap = service.getAlbumArt();
+		Bitmap bitmap = service.getAlbumArt(R.dimen.app_widget_small_artwork_size);
 
 		// Set the titles and artwork
 		if (TextUtils.isEmpty(trackName) && TextUtils.isEmpty(artistName)) {
@@ -84,6 +89,15 @@ public class AppWidgetSmall extends AppWidgetBase {
 			appWidgetView.setTextViewText(R.id.app_widget_small_line_two, artistName);
 		}
 		appWidgetView.setImageViewBitmap(R.id.app_widget_small_image, bitmap);
+		setPlayState(service, appWidgetView);
+		// Update the app-widget
+		pushUpdate(service, appWidgetIds, appWidgetView);
+	}
+
+	/**
+	 * set the play button and the button actions
+	 */
+	private void setPlayState(MusicPlaybackService service, RemoteViews appWidgetView) {
 		// Set correct drawable for pause state
 		boolean isPlaying = service.isPlaying();
 		if (isPlaying) {
@@ -95,8 +109,6 @@ public class AppWidgetSmall extends AppWidgetBase {
 		}
 		// Link actions buttons to intents
 		linkButtons(service, appWidgetView, isPlaying);
-		// Update the app-widget
-		pushUpdate(service, appWidgetIds, appWidgetView);
 	}
 
 	/**
@@ -159,11 +159,15 @@ public class RecentWidgetProvider extends AppWidgetBase {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void notifyChange(final MusicPlaybackService service, String what) {
+	public void notifyChange(final MusicPlaybackService service, int changes) {
 		if (hasInstances(service)) {
-			if (MusicPlaybackService.PLAYSTATE_CHANGED.equals(what)) {
-				performUpdate(service, null);
-			} else if (MusicPlaybackService.META_CHANGED.equals(what)) {
+			if ((changes & CHANGED_PLAYSTATE) != 0) {
+				// only the play button changes, the list is kept
+				RemoteViews views = new RemoteViews(BuildConfig.APPLICATION_ID, R.layout.app_widget_recents);
+				setPlayState(service, views);
+				pushPartialUpdate(service, views);
+			}
+			if ((changes & CHANGED_TRACK) != 0) {
 				sWorkerQueue.post(new Updater(service));
 			}
 		}
@@ -175,17 +179,24 @@ public class RecentWidgetProvider extends AppWidgetBase {
 	@Override
 	public void performUpdate(MusicPlaybackService service, int[] appWidgetIds) {
 		mViews = new RemoteViews(BuildConfig.APPLICATION_ID, R.layout.app_widget_recents);
+		setPlayState(service, mViews);
+		// Update the app-widget
+		pushUpdate(service, appWidgetIds, mViews);
+	}
+
+	/**
+	 * set the play button and the button actions
+	 */
+	private void setPlayState(MusicPlaybackService service, RemoteViews views) {
 		/* Set correct drawable for pause state */
 		boolean isPlaying = service.isPlaying();
 		if (isPlaying) {
-			mViews.setImageViewResource(R.id.app_widget_recents_play, R.drawable.btn_playback_pause);
+			views.setImageViewResource(R.id.app_widget_recents_play, R.drawable.btn_playback_pause);
 		} else {
-			mViews.setImageViewResource(R.id.app_widget_recents_play, R.drawable.btn_playback_play);
+			views.setImageViewResource(R.id.app_widget_recents_play, R.drawable.btn_playback_play);
 		}
 		// Link actions buttons to intents
-		linkButtons(service, mViews, isPlaying);
-		// Update the app-widget
-		pushUpdate(service, appWidgetIds, mViews);
+		linkButtons(service, views, isPlaying);
 	}
 
 	/**